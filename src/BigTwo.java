@@ -1,14 +1,14 @@
 import java.util.ArrayList;
 
-import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 /**
  * The BigTwo class implements the CardGame interface and is used to model a Big
- * Two card game. It has private instance variables for storing the number of
- * players, a deck of cards, a list of players, a list of hands played on the
- * table, an index of the current player, and a user interface.
+ * Two card game played through the GUI and the network. The rules and the state
+ * of the game are held by a BigTwoEngine; this class connects the engine to a
+ * BigTwoGUI and a BigTwoClient by listening to the events of the engine.
  */
-public class BigTwo implements CardGame {
+public class BigTwo implements CardGame, BigTwoListener {
 	/**
 	 * The number of player in a Big Two game is 4.
 	 */
@@ -17,28 +17,35 @@ public class BigTwo implements CardGame {
 	 * The number of cards held per player in a Big Two game is 13.
 	 */
 	public final static int MAX_CARD_NUM = 13;
-	private Deck deck;
-	private ArrayList<CardGamePlayer> playerList;
-	private ArrayList<Hand> handsOnTable;
-	private int currentPlayerIdx;
+	private BigTwoEngine engine;
 	private BigTwoGUI gui;
 	private BigTwoClient client;
 
 	/**
-	 * a constructor for creating a Big Two card game. It creates 4 players and add
-	 * them to the player list; and creates a BigTwoUI object for providing the user
-	 * interface.
+	 * a constructor for creating a Big Two card game. It creates the engine
+	 * holding 4 players, and creates a BigTwoGUI object for providing the user
+	 * interface and a BigTwoClient object for connecting to the server. The window
+	 * is shown at once, and the client connects in the background while the
+	 * player is asked for a name. It should be called on the event dispatch
+	 * thread.
 	 */
 	public BigTwo() {
-		playerList = new ArrayList<CardGamePlayer>();
-		handsOnTable = new ArrayList<Hand>();
-		for (int i = 0; i < MAX_PLAYER_NUM; i++) {
-			CardGamePlayer temp = new CardGamePlayer(null);
-			playerList.add(temp);
-		}
+		engine = new BigTwoEngine();
+		engine.addListener(this);
 		gui = new BigTwoGUI(this);
 		client = new BigTwoClient(this, gui);
 		gui.setClient(client);
+		client.start();
+	}
+
+	/**
+	 * a method for retrieving the engine holding the rules and the state of the
+	 * game.
+	 * 
+	 * @return the engine of this game
+	 */
+	public BigTwoEngine getEngine() {
+		return engine;
 	}
 
 	/**
@@ -47,11 +54,7 @@ public class BigTwo implements CardGame {
 	 * @return an int specifying the number of players
 	 */
 	public int getNumOfPlayers() {
-		int count = 0;
-		for (int i = 0; i < MAX_PLAYER_NUM; i++)
-			if (playerList.get(i).getName() != null)
-				count++;
-		return count;
+		return engine.getNumOfPlayers();
 	}
 
 	/**
@@ -60,7 +63,7 @@ public class BigTwo implements CardGame {
 	 * @return a deck of cards
 	 */
 	public Deck getDeck() {
-		return this.deck;
+		return engine.getDeck();
 	}
 
 	/**
@@ -69,7 +72,7 @@ public class BigTwo implements CardGame {
 	 * @return a list of players
 	 */
 	public ArrayList<CardGamePlayer> getPlayerList() {
-		return this.playerList;
+		return engine.getPlayerList();
 	}
 
 	/**
@@ -78,7 +81,7 @@ public class BigTwo implements CardGame {
 	 * @return a list of hands played on the table
 	 */
 	public ArrayList<Hand> getHandsOnTable() {
-		return this.handsOnTable;
+		return engine.getHandsOnTable();
 	}
 
 	/**
@@ -87,40 +90,19 @@ public class BigTwo implements CardGame {
 	 * @return an integer specifying the index of the current player.
 	 */
 	public int getCurrentPlayerIdx() {
-		return this.currentPlayerIdx;
+		return engine.getCurrentPlayerIdx();
 	}
 
 	/**
 	 * a method for starting/restarting the game with a given shuffled deck of
-	 * cards. It (i) remove all the cards from the players as well as from the
-	 * table; (ii) distribute the cards to the players; (iii) identify the player
-	 * who holds the Three of Diamonds; (iv) set both the currentPlayerIdx of the
-	 * BigTwo object and the activePlayer of the BigTwoUI object to the index of the
-	 * player who holds the Three of Diamonds; (v) call the repaint() method of the
-	 * BigTwoUI object to show the cards on the table; and (vi) call the
-	 * promptActivePlayer() method of the BigTwoUI object to prompt user to select
-	 * cards and make his/her move.
+	 * cards. The engine deals the cards and gives the first turn to the player
+	 * holding the Three of Diamonds, and the GUI is then told to prompt that
+	 * player (see turnStarted()).
 	 * 
 	 * @param deck given shuffled deck of cards
 	 */
 	public void start(Deck deck) {
-		// remove all players' cards
-		for (int i = 0; i < BigTwo.MAX_PLAYER_NUM; i++)
-			playerList.get(i).removeAllCards();
-		// remove all cards on table
-		handsOnTable.clear();
-		// distribute deck
-		for (int i = 0; i < deck.size(); i++)
-			playerList.get(i % MAX_PLAYER_NUM).addCard(deck.getCard(i));
-		// identify player with Three of Diamonds and set as current and active
-		for (int i = 0; i < MAX_PLAYER_NUM; i++)
-			playerList.get(i).sortCardsInHand();
-		for (int i = 0; i < MAX_PLAYER_NUM; i++)
-			if (playerList.get(i).getCardsInHand().contains(new BigTwoCard(0, 2))) {
-				currentPlayerIdx = i;
-				gui.setActivePlayer(currentPlayerIdx);
-			}
-		gui.promptActivePlayer();
+		engine.start(deck);
 	}
 
 	/**
@@ -137,71 +119,50 @@ public class BigTwo implements CardGame {
 	}
 
 	/**
-	 * a method for checking a move made by a player. This method should be called
-	 * from the makeMove() method.
+	 * a method for checking a move made by a player. The engine applies the move
+	 * if it is legal, and the GUI is updated through the events of the engine.
 	 * 
 	 * @param playerIdx an integer representing player ID
 	 * @param cardIdx   an array of integers representing the indices of cards
 	 *                  chosen
 	 */
 	public synchronized void checkMove(int playerIdx, int[] cardIdx) {
-		CardList cards = playerList.get(playerIdx).play(cardIdx);
-		// player chose to pass
-		if (cards == null) {
-			// no hands on table: cannot pass
-			if (handsOnTable.isEmpty()) {
-				gui.printMsg("Not a legal move!!!");
-			}
-			// last hand on table is self: cannot pass
-			else if (handsOnTable.get(handsOnTable.size() - 1).getPlayer() == playerList.get(playerIdx)) {
-				gui.printMsg("Not a legal move!!!");
-			}
-			// pass
-			else {
-				currentPlayerIdx = (currentPlayerIdx + 1) % MAX_PLAYER_NUM;
-				gui.setActivePlayer(currentPlayerIdx);
-				gui.printMsg("{Pass}");
-			}
-		}
-		// player chose a hand
-		else {
-			Hand hand = composeHand(playerList.get(playerIdx), cards);
-			// hand is not valid
-			if (hand == null) {
-				gui.printMsg("Not a legal move!!!");
-			}
-			// last hand on table is others: need follow pattern and beat
-			else if (!handsOnTable.isEmpty()
-					&& handsOnTable.get(handsOnTable.size() - 1).getPlayer() != playerList.get(playerIdx)
-					&& (handsOnTable.get(handsOnTable.size() - 1).size() != cards.size()
-							|| !hand.beats(handsOnTable.get(handsOnTable.size() - 1)))) {
-				gui.printMsg("Not a legal move!!!");
-			} else {
-				// remove cards from player
-				playerList.get(playerIdx).removeCards((CardList) hand);
-				// add hand to table
-				handsOnTable.add(hand);
-				currentPlayerIdx = (currentPlayerIdx + 1) % MAX_PLAYER_NUM;
-				gui.setActivePlayer(currentPlayerIdx);
-				gui.printMsg("{" + hand.getType() + "} " + hand.toString());
-			}
-		}
-		gui.repaint();
-		if (endOfGame()) {
-			gui.disable();
-			// end of game msg
-			String eogMsg = "";
-			eogMsg += "Game ends.\n";
-			for (int i = 0; i < MAX_PLAYER_NUM; i++)
-				if (playerList.get(i).getNumOfCards() == 0)
-					eogMsg += playerList.get(i).getName() + " wins the game.\n";
-				else
-					eogMsg += playerList.get(i).getName() + " has "
-							+ Integer.toString(playerList.get(i).getNumOfCards()) + " cards in hand.\n";
-			JOptionPane.showMessageDialog(null, eogMsg);
-			client.sendMessage(new CardGameMessage(CardGameMessage.READY, -1, null));
-		} else
-			gui.promptActivePlayer();
+		engine.checkMove(playerIdx, cardIdx);
+	}
+
+	/**
+	 * a method for applying a move checked by the server, as described by the
+	 * data of a RESULT message (see BigTwoReferee). The move is not checked again.
+	 * 
+	 * @param playerIdx an integer representing player ID
+	 * @param result    the data of the RESULT message
+	 * @return false if the data is not valid, in which case it is ignored
+	 */
+	public synchronized boolean applyResult(int playerIdx, int[] result) {
+		return BigTwoReferee.apply(engine, playerIdx, result);
+	}
+
+	/**
+	 * a method for resuming the game described by the data of a SNAPSHOT message,
+	 * after the client has got its seat back (see BigTwoReferee). The current
+	 * player is then prompted.
+	 * 
+	 * @param snapshot the data of the SNAPSHOT message
+	 * @return false if the snapshot is not valid
+	 */
+	public synchronized boolean resume(int[] snapshot) {
+		return BigTwoReferee.restore(engine, snapshot);
+	}
+
+	/**
+	 * a method for telling the player that the server rejected his/her move, and
+	 * prompting him/her again.
+	 * 
+	 * @param playerIdx an integer representing player ID
+	 */
+	public void rejectMove(int playerIdx) {
+		moveRejected(playerIdx);
+		turnStarted(engine.getCurrentPlayerIdx());
 	}
 
 	/**
@@ -210,31 +171,115 @@ public class BigTwo implements CardGame {
 	 * @return a boolean representing whether the game ends
 	 */
 	public boolean endOfGame() {
-		for (int i = 0; i < MAX_PLAYER_NUM; i++)
-			if (playerList.get(i).getNumOfCards() == 0)
-				return true;
-		return false;
+		return engine.endOfGame();
 	}
 
 	/**
 	 * When a player leaves mid game, the game is sharp cut.
 	 */
 	public void sharpCut() {
-		// remove all players' cards
-		for (int i = 0; i < BigTwo.MAX_PLAYER_NUM; i++)
-			playerList.get(i).removeAllCards();
-		// remove all cards on table
-		handsOnTable.clear();
+		engine.sharpCut();
 		gui.printMsg("Game terminated.");
 	}
 
+	/**
+	 * a method for handling the start of a game. The first player is prompted in
+	 * turnStarted().
+	 * 
+	 * @param firstPlayerIdx the index of the player holding the Three of Diamonds
+	 */
+	@Override
+	public void gameStarted(int firstPlayerIdx) {
+		gui.setActivePlayer(firstPlayerIdx);
+	}
+
+	/**
+	 * a method for showing a hand played by a player.
+	 * 
+	 * @param playerIdx the index of the player
+	 * @param hand      the hand played
+	 */
+	@Override
+	public void handPlayed(int playerIdx, Hand hand) {
+		gui.setActivePlayer(engine.getCurrentPlayerIdx());
+		gui.printMsg("{" + hand.getType() + "} " + hand.toString());
+	}
+
+	/**
+	 * a method for showing that a player passed.
+	 * 
+	 * @param playerIdx the index of the player
+	 */
+	@Override
+	public void passed(int playerIdx) {
+		gui.setActivePlayer(engine.getCurrentPlayerIdx());
+		gui.printMsg("{Pass}");
+	}
+
+	/**
+	 * a method for showing that a move was not legal.
+	 * 
+	 * @param playerIdx the index of the player who made the move
+	 */
+	@Override
+	public void moveRejected(int playerIdx) {
+		gui.printMsg("Not a legal move!!!");
+	}
+
+	/**
+	 * a method for prompting the player to move.
+	 * 
+	 * @param currentPlayerIdx the index of the player to move
+	 */
+	@Override
+	public void turnStarted(int currentPlayerIdx) {
+		gui.setActivePlayer(currentPlayerIdx);
+		gui.repaint();
+		gui.promptActivePlayer();
+	}
+
+	/**
+	 * a method for showing the result of a game and getting ready for the next
+	 * one. The GUI shows the result without holding up the thread reading the
+	 * messages, and tells the server that the player is ready once the player has
+	 * seen it.
+	 * 
+	 * @param winnerIdx the index of the player who won the game
+	 */
+	@Override
+	public void gameEnded(int winnerIdx) {
+		ArrayList<CardGamePlayer> playerList = engine.getPlayerList();
+		gui.repaint();
+		gui.disable();
+		// end of game msg
+		String eogMsg = "";
+		eogMsg += "Game ends.\n";
+		for (int i = 0; i < MAX_PLAYER_NUM; i++)
+			if (playerList.get(i).getNumOfCards() == 0)
+				eogMsg += playerList.get(i).getName() + " wins the game.\n";
+			else
+				eogMsg += playerList.get(i).getName() + " has "
+						+ Integer.toString(playerList.get(i).getNumOfCards()) + " cards in hand.\n";
+		gui.showResult(eogMsg);
+	}
+
 	/**
 	 * a method for starting a Big Two card game. It should (i) create a Big Two
 	 * card game, (ii) create and shuffle a deck of cards, and (iii) start the game
 	 * with the deck of cards.
 	 */
 	public static void main(String[] args) {
-		new BigTwo();
+		// the card images are decoded while the window is being built
+		CardSprites.preload();
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				new BigTwo();
+			}
+		});
+		// and the five-card table is mapped (or generated) meanwhile, before the
+		// first five-card hand needs it
+		FiveCardTable.getInstance();
 	}
 
 	/**
@@ -249,31 +294,7 @@ public class BigTwo implements CardGame {
 	 *         hand
 	 */
 	public static Hand composeHand(CardGamePlayer player, CardList cards) {
-		Single single = new Single(player, cards);
-		if (single.isValid())
-			return single;
-		Pair pair = new Pair(player, cards);
-		if (pair.isValid())
-			return pair;
-		Triple triple = new Triple(player, cards);
-		if (triple.isValid())
-			return triple;
-		StraightFlush straightFlush = new StraightFlush(player, cards);
-		if (straightFlush.isValid())
-			return straightFlush;
-		Quad quad = new Quad(player, cards);
-		if (quad.isValid())
-			return quad;
-		FullHouse fullHouse = new FullHouse(player, cards);
-		if (fullHouse.isValid())
-			return fullHouse;
-		Flush flush = new Flush(player, cards);
-		if (flush.isValid())
-			return flush;
-		Straight straight = new Straight(player, cards);
-		if (straight.isValid())
-			return straight;
-		return null;
+		return BigTwoEngine.composeHand(player, cards);
 	}
 
 }
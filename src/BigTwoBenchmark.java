@@ -0,0 +1,691 @@
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.regex.Pattern;
+
+/**
+ * The BigTwoBenchmark class is used to measure the hot paths of the rules, the
+ * network protocol and the table rendering: BigTwo.composeHand(), Hand.beats(),
+ * Hand.getTopCard(), Deck.shuffle(), CardGamePlayer.removeCards(), the
+ * serialization of CardGameMessage through ObjectOutputStream and through
+ * BinaryCodec, the painting of the table (see BigTwoGUI.TablePainter) into an
+ * offscreen image, both as a whole and after a card has been selected, and the
+ * appending of a batch of messages to a full LogView.
+ * <p>
+ * Every benchmark runs a number of warm-up iterations and then a number of
+ * measured iterations of fixed duration on the calling thread. For each
+ * benchmark it reports the mean time per operation with its standard deviation
+ * over the iterations, the bytes allocated per operation and the allocation
+ * rate (read from the allocation counter of the thread), and the number of
+ * garbage collections during the measured iterations. The inputs are generated
+ * from a fixed seed, so two runs measure exactly the same work.
+ * <p>
+ * The results can be saved to a CSV file and compared with a saved baseline;
+ * the run then fails if any benchmark got slower or allocates more than the
+ * baseline by more than a threshold. For stable numbers, run it with a fixed
+ * heap, e.g. "java -Xms1g -Xmx1g -Djava.awt.headless=true BigTwoBenchmark".
+ */
+public class BigTwoBenchmark {
+	private static final long SEED = 20240601L;
+	// the number of inputs each benchmark cycles through; a power of 2
+	private static final int INPUTS = 1024;
+	// a measured batch of operations should take about this long
+	private static final long BATCH_NANOS = 1000000;
+	// written by every benchmark so that the JIT cannot drop the measured work
+	private static volatile int sink;
+
+	private int warmups = 5;
+	private int iterations = 10;
+	private long iterationMillis = 1000;
+
+	/**
+	 * This class is used to model a benchmark. The operation returns an int
+	 * depending on its work, which the harness consumes.
+	 */
+	private static abstract class Benchmark {
+		private final String name;
+
+		public Benchmark(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public abstract int op() throws Exception;
+	}
+
+	/**
+	 * This class is used to hold the measurement of a benchmark.
+	 */
+	private static class Result {
+		private String name;
+		private double nanosPerOp; // mean over the iterations
+		private double error; // standard deviation over the iterations
+		private double bytesPerOp = -1; // -1 if the JVM cannot count allocations
+		private double allocMBPerSec = -1;
+		private long gcCount;
+		private long gcMillis;
+	}
+
+	/**
+	 * a method for creating all benchmarks.
+	 *
+	 * @return the list of benchmarks
+	 */
+	private static List<Benchmark> createBenchmarks() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		final SplittableRandom random = new SplittableRandom(SEED);
+
+		// valid hands of every type, and selections half of which are valid hands
+		final CardGamePlayer player = new CardGamePlayer("Player 0");
+		final CardList[] selections = new CardList[INPUTS];
+		final Hand[] hands = new Hand[INPUTS];
+		HandType[] types = HandType.values();
+		int[] sizes = { 1, 2, 3, 5 };
+		for (int i = 0; i < INPUTS; i++) {
+			hands[i] = BigTwo.composeHand(player,
+					new CardSet(randomHand(random, types[i % types.length])).toCardList());
+			long cards = i % 2 == 0 ? randomHand(random, types[random.nextInt(types.length)])
+					: randomCards(random, sizes[random.nextInt(sizes.length)]);
+			selections[i] = new CardSet(cards).toCardList();
+		}
+		// pairs of hands of the same size for beats()
+		final Hand[] opponents = new Hand[INPUTS];
+		for (int i = 0; i < INPUTS; i++) {
+			Hand other;
+			do {
+				other = hands[random.nextInt(INPUTS)];
+			} while (other.size() != hands[i].size());
+			opponents[i] = other;
+		}
+
+		benchmarks.add(new Benchmark("rules.composeHand") {
+			private int i = 0;
+
+			@Override
+			public int op() {
+				Hand hand = BigTwo.composeHand(player, selections[i++ & (INPUTS - 1)]);
+				return hand == null ? 0 : hand.size();
+			}
+		});
+		benchmarks.add(new Benchmark("rules.beats") {
+			private int i = 0;
+
+			@Override
+			public int op() {
+				int j = i++ & (INPUTS - 1);
+				return hands[j].beats(opponents[j]) ? 1 : 0;
+			}
+		});
+		benchmarks.add(new Benchmark("rules.getTopCard") {
+			private int i = 0;
+
+			@Override
+			public int op() {
+				return hands[i++ & (INPUTS - 1)].getTopCard().getRank();
+			}
+		});
+		benchmarks.add(new Benchmark("deck.shuffle") {
+			private Deck deck = new BigTwoDeck();
+
+			@Override
+			public int op() {
+				deck.shuffle();
+				return deck.getCard(0).getRank();
+			}
+		});
+		benchmarks.add(new Benchmark("deck.shuffleSeeded") {
+			private Deck deck = new BigTwoDeck();
+			private long seed = SEED;
+
+			@Override
+			public int op() {
+				deck.shuffle(seed++);
+				return deck.getCard(0).getRank();
+			}
+		});
+
+		// the player plays a hand of its 13 cards and gets the cards back
+		final CardGamePlayer holder = new CardGamePlayer("Player 1");
+		final long[] deals = new long[INPUTS];
+		final CardList[] played = new CardList[INPUTS];
+		for (int i = 0; i < INPUTS; i++) {
+			deals[i] = randomCards(random, BigTwo.MAX_CARD_NUM);
+			played[i] = new CardSet(pick(random, deals[i], sizes[i % sizes.length])).toCardList();
+		}
+		benchmarks.add(new Benchmark("player.removeCards") {
+			private int i = 0;
+
+			@Override
+			public int op() {
+				int j = i++ & (INPUTS - 1);
+				holder.removeAllCards();
+				for (long left = deals[j]; left != 0; left &= left - 1)
+					holder.addCard(CardSet.getCard(Long.numberOfTrailingZeros(left)));
+				holder.removeCards(played[j]);
+				return holder.getNumOfCards();
+			}
+		});
+
+		// messages written to one stream, like the server writes to a client
+		final CardGameMessage[] moves = new CardGameMessage[INPUTS];
+		for (int i = 0; i < INPUTS; i++) {
+			int[] cardIdx = new int[sizes[i % sizes.length]];
+			for (int j = 0; j < cardIdx.length; j++)
+				cardIdx[j] = j;
+			moves[i] = new CardGameMessage(CardGameMessage.MOVE, i % BigTwo.MAX_PLAYER_NUM, cardIdx);
+		}
+		benchmarks.add(new MessageBenchmark("message.move") {
+			@Override
+			public CardGameMessage next(int i) {
+				return moves[i & (INPUTS - 1)];
+			}
+		});
+		benchmarks.add(new MessageBenchmark("message.start") {
+			@Override
+			public CardGameMessage next(int i) {
+				// a new deck per game, as the server does
+				Deck deck = new BigTwoDeck();
+				deck.shuffle(SEED + i);
+				return new CardGameMessage(CardGameMessage.START, -1, deck);
+			}
+		});
+		benchmarks.add(new MessageBenchmark("message.chat") {
+			@Override
+			public CardGameMessage next(int i) {
+				return new CardGameMessage(CardGameMessage.MSG, i % BigTwo.MAX_PLAYER_NUM,
+						"Player " + i % BigTwo.MAX_PLAYER_NUM + " (127.0.0.1:50000): hello " + i);
+			}
+		});
+
+		// the same messages as frames in the format of BinaryCodec
+		benchmarks.add(new Benchmark("binary.move") {
+			private int i = 0;
+
+			@Override
+			public int op() throws IOException {
+				return FrameCodec.encode(moves[i++ & (INPUTS - 1)], true).length;
+			}
+		});
+		benchmarks.add(new Benchmark("binary.start") {
+			private int i = 0;
+
+			@Override
+			public int op() throws IOException {
+				Deck deck = new BigTwoDeck();
+				deck.shuffle(SEED + i++);
+				return FrameCodec.encode(new CardGameMessage(CardGameMessage.START, -1, deck), true).length;
+			}
+		});
+		benchmarks.add(new Benchmark("binary.chat") {
+			private int i = 0;
+
+			@Override
+			public int op() throws IOException {
+				i++;
+				return FrameCodec.encode(new CardGameMessage(CardGameMessage.MSG, i % BigTwo.MAX_PLAYER_NUM,
+						"Player " + i % BigTwo.MAX_PLAYER_NUM + " (127.0.0.1:50000): hello " + i), true).length;
+			}
+		});
+		benchmarks.add(new Benchmark("binary.decodeMove") {
+			private byte[][] frames = new byte[INPUTS][];
+			private int i = 0;
+
+			@Override
+			public int op() throws IOException {
+				int j = i++ & (INPUTS - 1);
+				if (frames[j] == null)
+					frames[j] = FrameCodec.encode(moves[j], true);
+				byte[] frame = frames[j];
+				return FrameCodec.decode(frame, FrameCodec.HEADER_SIZE, frame.length - FrameCodec.HEADER_SIZE)
+						.getPlayerID();
+			}
+		});
+
+		// a START broadcast to a table of two binary, one framed and one classic
+		// client; each format is encoded once (compare with binary.start)
+		benchmarks.add(new Benchmark("broadcast.start") {
+			private int i = 0;
+
+			@Override
+			public int op() throws IOException {
+				Deck deck = new BigTwoDeck();
+				deck.shuffle(SEED + i++);
+				EncodedMessage message = new EncodedMessage(new CardGameMessage(CardGameMessage.START, -1, deck));
+				return message.getFrame(true).length + message.getFrame(true).length + message.getFrame(false).length
+						+ message.getStreamBytes().length;
+			}
+		});
+
+		// a game in progress seen by player 0
+		final BigTwoEngine engine = new BigTwoEngine();
+		for (int i = 0; i < BigTwo.MAX_PLAYER_NUM; i++)
+			engine.getPlayerList().get(i).setName("Player " + i);
+		Deck deck = new BigTwoDeck();
+		deck.shuffle(SEED);
+		engine.start(deck);
+		for (int move = 0; move < 8 && !engine.endOfGame(); move++) {
+			int playerIdx = engine.getCurrentPlayerIdx();
+			long cards = new GreedyBot().chooseMove(engine, playerIdx, random);
+			engine.playCards(playerIdx, cards);
+		}
+		benchmarks.add(new Benchmark("gui.paint") {
+			private BigTwoGUI.TablePainter painter = new BigTwoGUI.TablePainter();
+			private TableView view = new TableView(engine, 0, engine.getCurrentPlayerIdx());
+			private BufferedImage image = new BufferedImage(640, 540, BufferedImage.TYPE_INT_RGB);
+			private boolean[] selected = new boolean[BigTwo.MAX_CARD_NUM];
+
+			@Override
+			public int op() {
+				// every layer is drawn again, as when the window is first shown
+				painter.invalidate();
+				Graphics2D g = image.createGraphics();
+				try {
+					painter.paint(g, image.getWidth(), image.getHeight(), view, selected, null);
+				} finally {
+					g.dispose();
+				}
+				return image.getRGB(320, 270);
+			}
+		});
+		// a click on a card: only the regions found dirty are painted, as Swing does
+		benchmarks.add(new Benchmark("gui.select") {
+			private BigTwoGUI.TablePainter painter = new BigTwoGUI.TablePainter();
+			private TableView view = new TableView(engine, 0, engine.getCurrentPlayerIdx());
+			private BufferedImage image = new BufferedImage(640, 540, BufferedImage.TYPE_INT_RGB);
+			private boolean[] selected = new boolean[BigTwo.MAX_CARD_NUM];
+			private int i = 0;
+
+			@Override
+			public int op() {
+				int n = engine.getPlayerList().get(0).getNumOfCards();
+				selected[i++ % n] ^= true;
+				int painted = 0;
+				for (Rectangle region : painter.getDirtyRegions(image.getWidth(), image.getHeight(), view, selected)) {
+					Graphics2D g = image.createGraphics();
+					try {
+						g.setClip(region);
+						painter.paint(g, image.getWidth(), image.getHeight(), view, selected, null);
+					} finally {
+						g.dispose();
+					}
+					painted += region.width * region.height;
+				}
+				return painted;
+			}
+		});
+		// a frame's worth of messages appended to a full message area
+		benchmarks.add(new Benchmark("gui.log") {
+			private LogView view = new LogView(LogView.DEFAULT_CAPACITY, 20, 25);
+			private List<String> batch = new ArrayList<String>();
+
+			{
+				// laid out as in a window, so that each append scrolls to the end
+				view.addNotify();
+				view.setSize(240, 400);
+				for (int i = 0; i < BigTwo.MAX_PLAYER_NUM * 5; i++)
+					batch.add(engine.getPlayerList().get(i % BigTwo.MAX_PLAYER_NUM).getName() + "'s turn: ");
+				for (int i = 0; i < LogView.DEFAULT_CAPACITY; i += batch.size())
+					view.append(batch);
+			}
+
+			@Override
+			public int op() {
+				view.append(batch);
+				return view.getModel().getSize();
+			}
+		});
+		return benchmarks;
+	}
+
+	/**
+	 * This class is used to benchmark writing messages to an ObjectOutputStream
+	 * that stays open, as the server does for each client. The stream is reset
+	 * every RESET_INTERVAL messages, so that its table of written objects does not
+	 * grow without bound during a long measurement.
+	 */
+	private static abstract class MessageBenchmark extends Benchmark {
+		private static final int RESET_INTERVAL = 1024;
+		private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private ObjectOutputStream oos;
+		private int i = 0;
+
+		public MessageBenchmark(String name) {
+			super(name);
+			try {
+				oos = new ObjectOutputStream(bytes);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		public abstract CardGameMessage next(int i);
+
+		@Override
+		public int op() throws IOException {
+			bytes.reset();
+			oos.writeObject(next(i));
+			oos.flush();
+			if (++i % RESET_INTERVAL == 0)
+				oos.reset();
+			return bytes.size();
+		}
+	}
+
+	/**
+	 * a method for drawing the specified number of distinct random cards.
+	 *
+	 * @param random random number generator
+	 * @param n      number of cards
+	 * @return the CardSet mask of the cards
+	 */
+	private static long randomCards(SplittableRandom random, int n) {
+		long cards = 0;
+		while (Long.bitCount(cards) < n)
+			cards |= 1L << random.nextInt(CardSet.DECK_SIZE);
+		return cards;
+	}
+
+	/**
+	 * a method for drawing a random hand of the specified type. A Straight may
+	 * turn out to be a Straight Flush.
+	 *
+	 * @param random random number generator
+	 * @param type   type of the hand
+	 * @return the CardSet mask of the hand
+	 */
+	private static long randomHand(SplittableRandom random, HandType type) {
+		int rank = random.nextInt(13);
+		int suit = random.nextInt(4);
+		int low = random.nextInt(9); // lowest rank of a straight
+		long cards = 0;
+		switch (type) {
+		case SINGLE:
+			return pick(random, CardSet.rankMask(rank), 1);
+		case PAIR:
+			return pick(random, CardSet.rankMask(rank), 2);
+		case TRIPLE:
+			return pick(random, CardSet.rankMask(rank), 3);
+		case STRAIGHT:
+			for (int k = 0; k < 5; k++)
+				cards |= pick(random, CardSet.rankMask(low + k), 1);
+			return cards;
+		case FLUSH:
+			return pick(random, CardSet.suitMask(suit), 5);
+		case FULL_HOUSE:
+			int other = (rank + 1 + random.nextInt(12)) % 13;
+			return pick(random, CardSet.rankMask(rank), 3) | pick(random, CardSet.rankMask(other), 2);
+		case QUAD:
+			return CardSet.rankMask(rank) | pick(random, CardSet.FULL_DECK & ~CardSet.rankMask(rank), 1);
+		default:
+			for (int k = 0; k < 5; k++)
+				cards |= CardSet.rankMask(low + k) & CardSet.suitMask(suit);
+			return cards;
+		}
+	}
+
+	/**
+	 * a method for picking the specified number of distinct random cards from a
+	 * mask.
+	 *
+	 * @param random     random number generator
+	 * @param candidates mask of the cards to pick from
+	 * @param n          number of cards, at most the number of candidates
+	 * @return the CardSet mask of the picked cards
+	 */
+	private static long pick(SplittableRandom random, long candidates, int n) {
+		long cards = 0;
+		while (Long.bitCount(cards) < n) {
+			long left = candidates & ~cards;
+			for (int skip = random.nextInt(Long.bitCount(left)); skip > 0; skip--)
+				left &= left - 1;
+			cards |= Long.lowestOneBit(left);
+		}
+		return cards;
+	}
+
+	/**
+	 * a method for running a batch of operations.
+	 *
+	 * @param benchmark benchmark to run
+	 * @param ops       number of operations
+	 */
+	private static void runBatch(Benchmark benchmark, long ops) throws Exception {
+		int acc = 0;
+		for (long k = 0; k < ops; k++)
+			acc += benchmark.op();
+		sink = acc;
+	}
+
+	/**
+	 * a method for measuring a benchmark.
+	 *
+	 * @param benchmark benchmark to measure
+	 * @return the measurement
+	 */
+	private Result measure(Benchmark benchmark) throws Exception {
+		// grow the batch until it takes about BATCH_NANOS, so that reading the
+		// clock does not distort fast operations
+		long batch = 1;
+		long start = System.nanoTime();
+		runBatch(benchmark, batch);
+		while (System.nanoTime() - start < BATCH_NANOS && batch < (1L << 30)) {
+			batch *= 2;
+			start = System.nanoTime();
+			runBatch(benchmark, batch);
+		}
+		for (int w = 0; w < warmups; w++)
+			runIteration(benchmark, batch);
+
+		double[] samples = new double[iterations];
+		long totalOps = 0;
+		long totalNanos = 0;
+		long bytesBefore = allocatedBytes();
+		long gcCountBefore = gcCount();
+		long gcMillisBefore = gcMillis();
+		for (int it = 0; it < iterations; it++) {
+			long begin = System.nanoTime();
+			long ops = runIteration(benchmark, batch);
+			long nanos = System.nanoTime() - begin;
+			samples[it] = (double) nanos / ops;
+			totalOps += ops;
+			totalNanos += nanos;
+		}
+		long bytesAfter = allocatedBytes();
+
+		Result result = new Result();
+		result.name = benchmark.getName();
+		double sum = 0;
+		for (double sample : samples)
+			sum += sample;
+		result.nanosPerOp = sum / iterations;
+		double squares = 0;
+		for (double sample : samples)
+			squares += (sample - result.nanosPerOp) * (sample - result.nanosPerOp);
+		result.error = iterations > 1 ? Math.sqrt(squares / (iterations - 1)) : 0;
+		if (bytesBefore >= 0 && bytesAfter >= 0) {
+			result.bytesPerOp = (double) (bytesAfter - bytesBefore) / totalOps;
+			result.allocMBPerSec = (bytesAfter - bytesBefore) / (totalNanos / 1e9) / (1 << 20);
+		}
+		result.gcCount = gcCount() - gcCountBefore;
+		result.gcMillis = gcMillis() - gcMillisBefore;
+		return result;
+	}
+
+	/**
+	 * a method for running batches of operations for iterationMillis.
+	 *
+	 * @param benchmark benchmark to run
+	 * @param batch     number of operations per batch
+	 * @return the number of operations run
+	 */
+	private long runIteration(Benchmark benchmark, long batch) throws Exception {
+		long nanos = iterationMillis * 1000000;
+		long ops = 0;
+		long start = System.nanoTime();
+		do {
+			runBatch(benchmark, batch);
+			ops += batch;
+		} while (System.nanoTime() - start < nanos);
+		return ops;
+	}
+
+	/**
+	 * a method for reading the number of bytes allocated by the current thread.
+	 *
+	 * @return the number of bytes, or -1 if the JVM does not count them
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled())
+			return -1;
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			count += Math.max(0, gc.getCollectionCount());
+		return count;
+	}
+
+	private static long gcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			millis += Math.max(0, gc.getCollectionTime());
+		return millis;
+	}
+
+	/**
+	 * a method for saving results to a CSV file.
+	 *
+	 * @param results results to save
+	 * @param file    path of the file
+	 */
+	private static void save(List<Result> results, String file) throws IOException {
+		try (PrintWriter out = new PrintWriter(file)) {
+			out.println("benchmark,ns_per_op,error,bytes_per_op,alloc_mb_per_s,gc_count,gc_ms");
+			for (Result r : results)
+				out.printf("%s,%.3f,%.3f,%.1f,%.1f,%d,%d%n", r.name, r.nanosPerOp, r.error, r.bytesPerOp,
+						r.allocMBPerSec, r.gcCount, r.gcMillis);
+		}
+	}
+
+	/**
+	 * a method for loading results saved by save().
+	 *
+	 * @param file path of the file
+	 * @return the results by benchmark name
+	 */
+	private static Map<String, Result> load(String file) throws IOException {
+		Map<String, Result> results = new HashMap<String, Result>();
+		try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+			in.readLine(); // header
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] fields = line.split(",");
+				if (fields.length < 4)
+					continue;
+				Result r = new Result();
+				r.name = fields[0];
+				r.nanosPerOp = Double.parseDouble(fields[1]);
+				r.error = Double.parseDouble(fields[2]);
+				r.bytesPerOp = Double.parseDouble(fields[3]);
+				results.put(r.name, r);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * main() method for running the benchmarks.
+	 *
+	 * @param args options "-w n" (warm-up iterations, default 5), "-i n" (measured
+	 *             iterations, default 10), "-t ms" (duration of an iteration,
+	 *             default 1000), "-o file" (save the results as CSV), "-c file"
+	 *             (compare with a baseline saved by -o), "-r percent" (allowed
+	 *             regression, default 10), followed by an optional regular
+	 *             expression selecting the benchmarks to run
+	 */
+	public static void main(String[] args) throws Exception {
+		BigTwoBenchmark harness = new BigTwoBenchmark();
+		String output = null;
+		String baseline = null;
+		double threshold = 10;
+		Pattern filter = Pattern.compile(".*");
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-w"))
+				harness.warmups = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-i"))
+				harness.iterations = Math.max(1, Integer.parseInt(args[++i]));
+			else if (args[i].equals("-t"))
+				harness.iterationMillis = Long.parseLong(args[++i]);
+			else if (args[i].equals("-o"))
+				output = args[++i];
+			else if (args[i].equals("-c"))
+				baseline = args[++i];
+			else if (args[i].equals("-r"))
+				threshold = Double.parseDouble(args[++i]);
+			else
+				filter = Pattern.compile(args[i]);
+		}
+		if (System.getProperty("java.awt.headless") == null)
+			System.setProperty("java.awt.headless", "true");
+
+		List<Result> results = new ArrayList<Result>();
+		System.out.printf("%-22s %12s %10s %12s %12s %6s%n", "Benchmark", "ns/op", "error", "B/op", "MB/s", "GCs");
+		for (Benchmark benchmark : createBenchmarks()) {
+			if (!filter.matcher(benchmark.getName()).find())
+				continue;
+			Result r = harness.measure(benchmark);
+			results.add(r);
+			System.out.printf("%-22s %12.1f %10.1f %12s %12s %6d%n", r.name, r.nanosPerOp, r.error,
+					r.bytesPerOp < 0 ? "n/a" : String.format("%.1f", r.bytesPerOp),
+					r.allocMBPerSec < 0 ? "n/a" : String.format("%.1f", r.allocMBPerSec), r.gcCount);
+		}
+		if (output != null)
+			save(results, output);
+		if (baseline != null) {
+			Map<String, Result> before = load(baseline);
+			int regressions = 0;
+			for (Result r : results) {
+				Result b = before.get(r.name);
+				if (b == null)
+					continue;
+				// a slowdown within the noise of both runs is not a regression
+				double slower = r.nanosPerOp - r.error - (b.nanosPerOp + b.error);
+				boolean time = slower > b.nanosPerOp * threshold / 100;
+				// allow a few bytes for objects of which only some ops allocate one
+				boolean alloc = b.bytesPerOp >= 0 && r.bytesPerOp > b.bytesPerOp * (1 + threshold / 100) + 8;
+				if (time || alloc) {
+					regressions++;
+					System.out.printf("REGRESSION %s: %.1f -> %.1f ns/op, %.1f -> %.1f B/op%n", r.name, b.nanosPerOp,
+							r.nanosPerOp, b.bytesPerOp, r.bytesPerOp);
+				}
+			}
+			System.out.println(regressions == 0 ? "No regressions against " + baseline + "."
+					: regressions + " regressions against " + baseline + ".");
+			if (regressions != 0)
+				System.exit(1);
+		}
+	}
+}
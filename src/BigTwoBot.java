@@ -0,0 +1,27 @@
+import java.util.SplittableRandom;
+
+/**
+ * An interface for a computer player (bot policy) of a Big Two card game. A
+ * bot is given the engine of the game and the index of the player to move,
+ * and chooses a legal move. Bots are shared by the threads of a simulation, so
+ * they should keep no state of their own and take all randomness from the
+ * given random number generator.
+ */
+public interface BigTwoBot {
+	/**
+	 * Returns the name of this bot, used in reports.
+	 * 
+	 * @return the name of this bot
+	 */
+	public String getName();
+
+	/**
+	 * Chooses a legal move for the current player of the specified game.
+	 * 
+	 * @param game      the game to move in
+	 * @param playerIdx the index of the player to move
+	 * @param random    the random number generator to use for this game
+	 * @return the CardSet mask of the cards to play, or 0 to pass
+	 */
+	public long chooseMove(BigTwoEngine game, int playerIdx, SplittableRandom random);
+}
@@ -5,6 +5,13 @@
  * Big Two card game.
  */
 public class BigTwoCard extends Card {
+	private static final long serialVersionUID = -6882428045893598171L;
+	private static final BigTwoCard[] CARDS = new BigTwoCard[52]; // canonical cards, indexed by hashCode()
+
+	static {
+		for (int i = 0; i < CARDS.length; i++)
+			CARDS[i] = new BigTwoCard(i / 13, i % 13);
+	}
 
 	/**
 	 * a constructor for building a card with the specified suit and rank. suit is
@@ -17,6 +24,29 @@ public class BigTwoCard extends Card {
 		super(suit, rank);
 	}
 
+	/**
+	 * a method for getting the canonical Big Two card with the specified suit and
+	 * rank. Every call with the same suit and rank returns the same object.
+	 * 
+	 * @param suit suit of the card (0-3)
+	 * @param rank rank of the card (0-12)
+	 * @return the canonical Big Two card with the specified suit and rank
+	 */
+	public static BigTwoCard valueOf(int suit, int rank) {
+		return CARDS[suit * 13 + rank];
+	}
+
+	/**
+	 * a method for replacing a deserialized Big Two card with the canonical
+	 * instance.
+	 * 
+	 * @return the canonical Big Two card
+	 */
+	@Override
+	protected Object readResolve() {
+		return valueOf(suit, rank);
+	}
+
 	/**
 	 * a method for comparing the order of this card with the specified card.
 	 * 
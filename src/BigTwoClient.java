@@ -1,9 +1,14 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
 
 import javax.swing.JOptionPane;
 
@@ -11,22 +16,66 @@ import javax.swing.JOptionPane;
  * The BigTwoClient class implements the NetworkGame interface. It is used to
  * model a Big Two game client that is responsible for establishing a connection
  * and communicating with the Big Two game server.
+ * <p>
+ * The messages are read and applied to the game on a thread of their own, which
+ * never waits for the GUI: after each message the GUI is given a view of the
+ * game (see BigTwoGUI.repaint()) and updates itself on the event dispatch
+ * thread.
+ * <p>
+ * The client connects on a thread of its own too, so the GUI stays usable while
+ * the server is slow to answer: an attempt gives up after CONNECT_TIMEOUT, the
+ * player can cancel it (see cancel()), and its progress is shown in the status
+ * bar of the GUI. At start-up the player is asked for a name while the client
+ * connects, and the client joins the game once it has both.
+ * <p>
+ * When the connection is lost, the client reconnects by itself, waiting longer
+ * after each failed attempt, and sends the session token of the player to get
+ * its seat and the current game back (see CardGameMessage.RESUME).
  */
 public class BigTwoClient implements NetworkGame {
+	/**
+	 * The delay in milliseconds before the first attempt to reconnect; it
+	 * doubles after each failed attempt, up to MAX_RECONNECT_DELAY.
+	 */
+	public static final long MIN_RECONNECT_DELAY = 500;
+	/**
+	 * The longest delay in milliseconds between two attempts to reconnect.
+	 */
+	public static final long MAX_RECONNECT_DELAY = 8000;
+	/**
+	 * How long in milliseconds the client tries to reconnect; about the time
+	 * the server holds the seat of the player.
+	 */
+	public static final long RECONNECT_TIME = 60000;
+	/**
+	 * How long in milliseconds the client waits for the server to accept a
+	 * connection, and then for the first bytes from the server.
+	 */
+	public static final int CONNECT_TIMEOUT = 5000;
 	private BigTwo game;
 	private BigTwoGUI gui;
 	private ArrayList<CardGamePlayer> playerList;
 	private Socket sock;
 	private ObjectInputStream ois;
 	private ObjectOutputStream oos;
+	private DataInputStream frameIn; // set when the server sends frames
+	private DataOutputStream frameOut;
 	private Thread t;
 	private int playerID;
 	private String playerName;
 	private String serverIP;
 	private int serverPort;
+	private String session; // the session token of the player, or null
+	private boolean resuming; // whether a RESUME message awaits its reply
+	private boolean full; // whether the server replied FULL while resuming
+	private volatile boolean reconnect; // whether to reconnect on a loss
+	private Thread connector; // the thread connecting or reconnecting, if any
+	private volatile Socket pending; // the socket being connected, if any
+	private boolean joinPending; // whether JOIN awaits the name of the player
 
 	/**
-	 * a Constructor for creating a Big Two client.
+	 * a Constructor for creating a Big Two client. The client does not connect
+	 * until start() or connect() is called.
 	 * 
 	 * @param game reference to a BigTwo object associated with this client
 	 * @param gui  reference to a BigTwoGUI object associated with the BigTwo object
@@ -35,12 +84,19 @@ public class BigTwoClient implements NetworkGame {
 		this.game = game;
 		this.gui = gui;
 		this.playerList = game.getPlayerList();
-		this.playerName = JOptionPane.showInputDialog("Your name:");
-		if (this.playerName == null || this.playerName.isBlank())
-			this.playerName = "Unnamed";
 		this.serverIP = "127.0.0.1";
 		this.serverPort = 2396;
+	}
+
+	/**
+	 * a method for starting the client: it starts to connect to the game server in
+	 * the background, and meanwhile asks the player for a name. This method should
+	 * be called on the event dispatch thread.
+	 */
+	public void start() {
 		connect();
+		String name = JOptionPane.showInputDialog("Your name:");
+		setPlayerName(name == null || name.isBlank() ? "Unnamed" : name);
 	}
 
 	/**
@@ -74,13 +130,21 @@ public class BigTwoClient implements NetworkGame {
 	}
 
 	/**
-	 * a method for setting the name of the local player.
+	 * a method for setting the name of the local player. If the client has been
+	 * waiting for the name to join the game, it joins now.
 	 * 
 	 * @param playerName name of player
 	 */
 	@Override
 	public void setPlayerName(String playerName) {
-		this.playerName = playerName;
+		boolean join;
+		synchronized (this) {
+			this.playerName = playerName;
+			join = joinPending;
+			joinPending = false;
+		}
+		if (join)
+			sendMessage(new CardGameMessage(CardGameMessage.JOIN, -1, playerName));
 	}
 
 	/**
@@ -127,26 +191,153 @@ public class BigTwoClient implements NetworkGame {
 	 * a method for making a socket connection with the game server. Upon successful
 	 * connection, it should (i) create an ObjectOutputStream for sending messages
 	 * to the game server; (ii) create a new thread for receiving messages from the
-	 * game server.
+	 * game server. A server in non-blocking mode sends frames (see FrameCodec)
+	 * instead of a serialization stream; the first two bytes from the server tell
+	 * which, and the client answers in the same way. With such a server the client
+	 * sends its messages in the compact binary format of BinaryCodec, so that the
+	 * server switches to that format too.
+	 * <p>
+	 * The connection is made on a thread of its own; this method returns at once.
 	 */
 	@Override
-	public void connect() {
-		if (sock == null || sock.isClosed()) {
+	public synchronized void connect() {
+		if (connector != null)
+			gui.printMsg("You are already connecting.");
+		else if (sock != null && !sock.isClosed())
+			gui.printMsg("You are already connected.");
+		else {
+			connector = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					if (open())
+						return;
+					synchronized (BigTwoClient.this) {
+						// not cancelled in the meantime
+						if (connector == Thread.currentThread()) {
+							connector = null;
+							gui.setStatus("Not connected", false);
+						}
+					}
+				}
+			}, "connect");
+			connector.setDaemon(true);
+			connector.start();
+		}
+	}
+
+	/**
+	 * a method for cancelling the connection or the reconnection in progress, if
+	 * any. It returns at once.
+	 */
+	public synchronized void cancel() {
+		if (connector == null)
+			return;
+		connector.interrupt();
+		connector = null;
+		Socket s = pending;
+		if (s != null) {
 			try {
-				sock = new Socket(serverIP, serverPort);
-				ois = new ObjectInputStream(sock.getInputStream());
-				oos = new ObjectOutputStream(sock.getOutputStream());
-				t = new Thread(new ServerHandler());
-				t.start();
-			} catch (UnknownHostException e) {
-				gui.printMsg("Cannot connect to server.");
-				e.printStackTrace();
+				s.close();
 			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		gui.printMsg("Connecting cancelled.");
+		gui.setStatus("Not connected", false);
+	}
+
+	/**
+	 * a method for opening a connection to the game server, which asks for the
+	 * seat of the player back at once if the player has a session token. It gives
+	 * up if the server does not answer within CONNECT_TIMEOUT, or if the calling
+	 * thread is interrupted by cancel().
+	 * 
+	 * @return true if the connection is established
+	 */
+	private boolean open() {
+		gui.setStatus("Connecting to " + serverIP + ':' + serverPort + "...", true);
+		Socket s = new Socket();
+		pending = s;
+		try {
+			if (Thread.currentThread().isInterrupted())
+				return false;
+			s.connect(new InetSocketAddress(serverIP, serverPort), CONNECT_TIMEOUT);
+			// a server that accepts but does not answer is given up too
+			s.setSoTimeout(CONNECT_TIMEOUT);
+			BufferedInputStream in = new BufferedInputStream(s.getInputStream());
+			in.mark(2);
+			boolean stream = FrameCodec.isStreamHeader(in.read(), in.read());
+			in.reset();
+			ObjectInputStream newOis = null;
+			ObjectOutputStream newOos = null;
+			DataInputStream newFrameIn = null;
+			DataOutputStream newFrameOut = null;
+			if (stream) {
+				newOis = new ObjectInputStream(in);
+				newOos = new ObjectOutputStream(s.getOutputStream());
+			} else {
+				newFrameIn = new DataInputStream(in);
+				newFrameOut = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+			}
+			s.setSoTimeout(0);
+			synchronized (this) {
+				if (Thread.currentThread().isInterrupted())
+					return false;
+				sock = s;
+				ois = newOis;
+				oos = newOos;
+				frameIn = newFrameIn;
+				frameOut = newFrameOut;
+				resuming = session != null;
+				full = false;
+				reconnect = true;
+				joinPending = false;
+				// the attempt can no longer be cancelled
+				if (connector == Thread.currentThread())
+					connector = null;
+				gui.setStatus("Connected to " + serverIP + ':' + serverPort, false);
+				t = new Thread(new ServerHandler(sock));
+				t.start();
+			}
+			// the server then sends the results of the moves it checks
+			sendMessage(new CardGameMessage(CardGameMessage.PROTOCOL, CardGameMessage.PROTOCOL_VERSION, null));
+			if (resuming)
+				sendMessage(new CardGameMessage(CardGameMessage.RESUME, -1, session));
+			return true;
+		} catch (IOException e) {
+			// a cancelled attempt fails quietly
+			if (!Thread.currentThread().isInterrupted()) {
 				gui.printMsg("Cannot connect to server.");
 				e.printStackTrace();
 			}
-		} else
-			gui.printMsg("You are already connected.");
+			return false;
+		} finally {
+			synchronized (this) {
+				if (pending == s)
+					pending = null;
+			}
+			if (s != sock) {
+				try {
+					s.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * a method for joining the game with the name of the player, or, if the player
+	 * has not given a name yet, for joining as soon as the name is given.
+	 */
+	private void join() {
+		String name;
+		synchronized (this) {
+			name = playerName;
+			joinPending = name == null;
+		}
+		if (name != null)
+			sendMessage(new CardGameMessage(CardGameMessage.JOIN, -1, name));
 	}
 
 	/**
@@ -154,7 +345,7 @@ public class BigTwoClient implements NetworkGame {
 	 * should be called from the thread responsible for receiving messages from the
 	 * game server. Based on the message type, different actions will be carried out
 	 * (please refer to the general behavior of the client described in the previous
-	 * section).
+	 * section). The GUI is repainted by the caller after each message.
 	 * 
 	 * @param message message from server
 	 */
@@ -166,20 +357,46 @@ public class BigTwoClient implements NetworkGame {
 			String[] playerNames = (String[]) message.getData();
 			for (int i = 0; i < BigTwo.MAX_PLAYER_NUM; i++)
 				playerList.get(i).setName(playerNames[i]);
-			sendMessage(new CardGameMessage(CardGameMessage.JOIN, -1, playerName));
+			// a resuming player has joined already
+			if (!resuming)
+				join();
 		} else if (message.getType() == CardGameMessage.JOIN) {
 			playerList.get(message.getPlayerID()).setName((String) message.getData());
 			if (message.getPlayerID() == playerID)
 				sendMessage(new CardGameMessage(CardGameMessage.READY, -1, null));
 			else
 				gui.printMsg(playerList.get(message.getPlayerID()).getName() + " joined the game.");
-			gui.repaint();
 		} else if (message.getType() == CardGameMessage.FULL) {
 			gui.printMsg("The server is full and cannot join the game");
-			try {
-				sock.close();
-			} catch (IOException e) {
-				e.printStackTrace();
+			// the held seat of a resuming player may still be given back
+			if (resuming)
+				full = true;
+			else
+				disconnect();
+		} else if (message.getType() == CardGameMessage.SESSION) {
+			if (message.getPlayerID() >= 0)
+				session = (String) message.getData();
+			else {
+				// the seat is no longer held: the player joins anew
+				session = null;
+				resuming = false;
+				gui.printMsg("Your seat has been given up.");
+				if (!game.endOfGame())
+					game.sharpCut();
+				if (full)
+					disconnect();
+				else
+					join();
+			}
+		} else if (message.getType() == CardGameMessage.SNAPSHOT) {
+			resuming = false;
+			gui.printMsg("Reconnected to server.");
+			int[] snapshot = (int[]) message.getData();
+			if (snapshot == null || !game.resume(snapshot)) {
+				// no game in progress: gets ready for the next one
+				if (!game.endOfGame())
+					game.sharpCut();
+				sendMessage(new CardGameMessage(CardGameMessage.READY, -1, null));
 			}
 		} else if (message.getType() == CardGameMessage.QUIT) {
 			gui.printMsg(playerList.get(message.getPlayerID()).getName() + " quited the game.");
@@ -189,7 +406,6 @@ public class BigTwoClient implements NetworkGame {
 				game.sharpCut();
 				sendMessage(new CardGameMessage(CardGameMessage.READY, -1, null));
 			}
-			gui.repaint();
 		} else if (message.getType() == CardGameMessage.READY) {
 			gui.printMsg(playerList.get(message.getPlayerID()).getName() + " is ready.");
 		} else if (message.getType() == CardGameMessage.START) {
@@ -197,45 +413,177 @@ public class BigTwoClient implements NetworkGame {
 			game.start((Deck) message.getData());
 		} else if (message.getType() == CardGameMessage.MOVE) {
 			game.checkMove(message.getPlayerID(), (int[]) message.getData());
+		} else if (message.getType() == CardGameMessage.RESULT) {
+			Object result = message.getData();
+			if (!(result instanceof int[]) || !game.applyResult(message.getPlayerID(), (int[]) result))
+				gui.printMsg("Invalid move received from server.");
+		} else if (message.getType() == CardGameMessage.ILLEGAL) {
+			game.rejectMove(message.getPlayerID());
 		} else if (message.getType() == CardGameMessage.MSG) {
 			gui.printChat((String) message.getData());
+		} else if (message.getType() == CardGameMessage.TABLES) {
+			int[] tables = (int[]) message.getData();
+			if (tables.length == 0)
+				gui.printMsg("There is no table with a free seat.");
+			for (int i = 0; i + 1 < tables.length; i += 2)
+				gui.printMsg("Table " + tables[i] + ": " + tables[i + 1] + "/" + BigTwo.MAX_PLAYER_NUM + " players");
 		}
 	}
 
+	/**
+	 * a method for sending a lobby command typed into the chat input. "/tables"
+	 * lists the tables with free seats, "/join n" moves to table n and "/join new"
+	 * moves to a new table.
+	 * 
+	 * @param text text typed into the chat input
+	 * @return true if the text is a lobby command; false otherwise
+	 */
+	public boolean sendCommand(String text) {
+		String[] words = text.trim().split("\\s+");
+		if (words[0].equals("/tables") && words.length == 1) {
+			sendMessage(new CardGameMessage(CardGameMessage.TABLES, -1, null));
+			return true;
+		}
+		if (words[0].equals("/join") && words.length == 2) {
+			int tableId;
+			if (words[1].equals("new"))
+				tableId = -1;
+			else {
+				try {
+					tableId = Integer.parseInt(words[1]);
+				} catch (NumberFormatException e) {
+					return false;
+				}
+			}
+			sendMessage(new CardGameMessage(CardGameMessage.JOIN_TABLE, tableId, null));
+			return true;
+		}
+		return false;
+	}
+
 	/**
 	 * a method for sending the specified message to the game server. This method
 	 * should be called whenever the client wants to communicate with the game
-	 * server or other clients.
+	 * server or other clients. Nothing is sent if the client is not connected,
+	 * e.g. before the first connection is made or after it has failed.
 	 * 
 	 * @param message message to send
 	 */
 	@Override
 	public void sendMessage(GameMessage message) {
+		Socket s;
+		DataOutputStream out;
+		ObjectOutputStream objOut;
+		synchronized (this) {
+			s = sock;
+			out = frameOut;
+			objOut = oos;
+		}
+		if (s == null || s.isClosed() || (out == null && objOut == null)) {
+			gui.printMsg("Not connected to server.");
+			return;
+		}
 		try {
-			oos.writeObject(message);
+			if (out != null) {
+				synchronized (out) {
+					FrameCodec.write(out, message, true);
+				}
+			} else
+				objOut.writeObject(message);
 		} catch (IOException e) {
 			gui.printMsg("Cannot connect to server.");
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * a method for closing the connection for good, without reconnecting.
+	 */
+	private void disconnect() {
+		reconnect = false;
+		try {
+			sock.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * a method for reconnecting to the game server after the specified socket
+	 * lost its connection. The delay between two attempts doubles after each
+	 * failure, with some randomness so that the clients of a restarted server do
+	 * not come back all at once. The player can stop it with cancel().
+	 * 
+	 * @param lost the socket that lost its connection
+	 */
+	private void reconnect(Socket lost) {
+		synchronized (this) {
+			// the player may have connected again in the meantime
+			if (sock != lost || connector != null)
+				return;
+			connector = Thread.currentThread();
+		}
+		gui.disable();
+		long delay = MIN_RECONNECT_DELAY;
+		long deadline = System.currentTimeMillis() + RECONNECT_TIME;
+		while (reconnect && System.currentTimeMillis() < deadline) {
+			long wait = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+			gui.printMsg("Connection lost. Reconnecting in " + wait + " ms...");
+			gui.setStatus("Reconnecting in " + wait + " ms...", true);
+			try {
+				Thread.sleep(wait);
+			} catch (InterruptedException e) {
+				return; // cancelled
+			}
+			if (open())
+				return;
+			if (Thread.currentThread().isInterrupted())
+				return;
+			delay = Math.min(delay * 2, MAX_RECONNECT_DELAY);
+		}
+		synchronized (this) {
+			if (connector != Thread.currentThread())
+				return;
+			connector = null;
+		}
+		gui.printMsg("Cannot reconnect to server.");
+		gui.setStatus("Not connected", false);
+	}
+
 	private class ServerHandler implements Runnable {
+		private final Socket socket; // the socket this handler reads from
+
+		public ServerHandler(Socket socket) {
+			this.socket = socket;
+		}
 
 		@Override
 		public void run() {
 			try {
-				while (sock != null && !sock.isClosed()) {
-					CardGameMessage message = (CardGameMessage) ois.readObject();
-					if (message != null)
+				while (!socket.isClosed()) {
+					CardGameMessage message = frameIn != null ? FrameCodec.read(frameIn)
+							: (CardGameMessage) ois.readObject();
+					if (message != null) {
 						parseMessage(message);
+						gui.repaint();
+					}
 				}
 			} catch (ClassNotFoundException e) {
 				gui.printMsg("Cannot connect to server.");
 				e.printStackTrace();
 			} catch (IOException e) {
-				gui.printMsg("Cannot connect to server.");
+				if (!reconnect) {
+					gui.printMsg("Cannot connect to server.");
+					e.printStackTrace();
+				}
+			}
+			try {
+				socket.close();
+			} catch (IOException e) {
 				e.printStackTrace();
 			}
+			if (reconnect)
+				reconnect(socket);
 		}
 
 	}
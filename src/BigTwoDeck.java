@@ -15,7 +15,7 @@ public class BigTwoDeck extends Deck {
 		removeAllCards();
 		for (int i = 0; i < 4; i++) {
 			for (int j = 0; j < 13; j++) {
-				Card card = new BigTwoCard(i, j);
+				Card card = BigTwoCard.valueOf(i, j);
 				addCard(card);
 			}
 		}
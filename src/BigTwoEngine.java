@@ -0,0 +1,413 @@
+import java.util.ArrayList;
+
+/**
+ * The BigTwoEngine class implements the CardGame interface and holds the rules
+ * of a Big Two card game without any user interface or network connection. It
+ * deals the cards, applies moves and answers queries about the state of the
+ * game, and reports every change to its BigTwoListener objects. The BigTwo
+ * class drives the GUI and the network client on top of it; simulations,
+ * servers and benchmarks can use it directly without loading AWT.
+ */
+public class BigTwoEngine implements CardGame {
+	private Deck deck;
+	private ArrayList<CardGamePlayer> playerList;
+	private ArrayList<Hand> handsOnTable;
+	private int currentPlayerIdx;
+	private ArrayList<BigTwoListener> listeners;
+
+	/**
+	 * a constructor for creating a Big Two engine with 4 players who have not
+	 * joined yet (i.e., whose names are null).
+	 */
+	public BigTwoEngine() {
+		playerList = new ArrayList<CardGamePlayer>();
+		handsOnTable = new ArrayList<Hand>();
+		listeners = new ArrayList<BigTwoListener>();
+		for (int i = 0; i < BigTwo.MAX_PLAYER_NUM; i++)
+			playerList.add(new CardGamePlayer(null));
+	}
+
+	/**
+	 * a method for registering a listener for the events of this engine.
+	 * 
+	 * @param listener listener to register
+	 */
+	public void addListener(BigTwoListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * a method for unregistering a listener.
+	 * 
+	 * @param listener listener to unregister
+	 */
+	public void removeListener(BigTwoListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * a method for getting the number of players who have joined, i.e. whose
+	 * names are not null.
+	 * 
+	 * @return an int specifying the number of players
+	 */
+	@Override
+	public int getNumOfPlayers() {
+		int count = 0;
+		for (int i = 0; i < BigTwo.MAX_PLAYER_NUM; i++)
+			if (playerList.get(i).getName() != null)
+				count++;
+		return count;
+	}
+
+	/**
+	 * a method for retrieving the deck of cards being used.
+	 * 
+	 * @return a deck of cards
+	 */
+	@Override
+	public Deck getDeck() {
+		return deck;
+	}
+
+	/**
+	 * a method for retrieving the list of players.
+	 * 
+	 * @return a list of players
+	 */
+	@Override
+	public ArrayList<CardGamePlayer> getPlayerList() {
+		return playerList;
+	}
+
+	/**
+	 * a method for retrieving the list of hands played on the table.
+	 * 
+	 * @return a list of hands played on the table
+	 */
+	@Override
+	public ArrayList<Hand> getHandsOnTable() {
+		return handsOnTable;
+	}
+
+	/**
+	 * a method for retrieving the index of the current player.
+	 * 
+	 * @return an integer specifying the index of the current player.
+	 */
+	@Override
+	public int getCurrentPlayerIdx() {
+		return currentPlayerIdx;
+	}
+
+	/**
+	 * a method for retrieving the last hand played on the table.
+	 * 
+	 * @return the last hand on the table, or null if the table is empty
+	 */
+	public Hand getLastHand() {
+		return handsOnTable.isEmpty() ? null : handsOnTable.get(handsOnTable.size() - 1);
+	}
+
+	/**
+	 * a method for starting/restarting the game with a given shuffled deck of
+	 * cards. It removes all the cards from the players and the table, deals the
+	 * cards to the players in turn, sorts each player's cards and gives the first
+	 * turn to the player holding the Three of Diamonds.
+	 * 
+	 * @param deck given shuffled deck of cards
+	 */
+	@Override
+	public synchronized void start(Deck deck) {
+		this.deck = deck;
+		for (int i = 0; i < BigTwo.MAX_PLAYER_NUM; i++)
+			playerList.get(i).removeAllCards();
+		handsOnTable.clear();
+		for (int i = 0; i < deck.size(); i++)
+			playerList.get(i % BigTwo.MAX_PLAYER_NUM).addCard(deck.getCard(i));
+		for (int i = 0; i < BigTwo.MAX_PLAYER_NUM; i++)
+			playerList.get(i).sortCardsInHand();
+		firstTurn();
+	}
+
+	/**
+	 * a method for starting/restarting the game with the cards of each player
+	 * given as CardSet masks, e.g. from DealGenerator.deal(). No deck is used.
+	 * 
+	 * @param hands the CardSet mask of the cards of each player
+	 */
+	public synchronized void start(long[] hands) {
+		this.deck = null;
+		handsOnTable.clear();
+		for (int i = 0; i < BigTwo.MAX_PLAYER_NUM; i++) {
+			CardGamePlayer player = playerList.get(i);
+			player.removeAllCards();
+			// cards are added in Big Two order, so no sorting is needed
+			for (long m = hands[i]; m != 0; m &= m - 1)
+				player.addCard(CardSet.getCard(Long.numberOfTrailingZeros(m)));
+		}
+		firstTurn();
+	}
+
+	/**
+	 * a method for resuming a game in progress, e.g. from a snapshot sent by the
+	 * server to a client that lost its connection. Only the last hand is put on
+	 * the table, as it is all the rules look at.
+	 * 
+	 * @param hands            the CardSet mask of the cards of each player
+	 * @param lastPlayerIdx    the index of the player of the last hand on the
+	 *                         table, or -1 if the table is empty
+	 * @param lastCards        CardSet mask of the cards of the last hand
+	 * @param lastType         type of the last hand, or null if the table is empty
+	 * @param currentPlayerIdx the index of the player to move
+	 */
+	public synchronized void restore(long[] hands, int lastPlayerIdx, long lastCards, HandType lastType,
+			int currentPlayerIdx) {
+		this.deck = null;
+		handsOnTable.clear();
+		for (int i = 0; i < BigTwo.MAX_PLAYER_NUM; i++) {
+			CardGamePlayer player = playerList.get(i);
+			player.removeAllCards();
+			for (long m = hands[i]; m != 0; m &= m - 1)
+				player.addCard(CardSet.getCard(Long.numberOfTrailingZeros(m)));
+		}
+		if (lastPlayerIdx >= 0)
+			handsOnTable.add(lastType.newHand(playerList.get(lastPlayerIdx), new CardSet(lastCards)));
+		this.currentPlayerIdx = currentPlayerIdx;
+		for (int i = 0; i < listeners.size(); i++)
+			listeners.get(i).turnStarted(currentPlayerIdx);
+	}
+
+	/**
+	 * a method for giving the first turn to the player holding the Three of
+	 * Diamonds and reporting the start of the game.
+	 */
+	private void firstTurn() {
+		currentPlayerIdx = 0;
+		for (int i = 0; i < BigTwo.MAX_PLAYER_NUM; i++)
+			if (playerList.get(i).getCardsInHand().contains(BigTwoCard.valueOf(0, 2)))
+				currentPlayerIdx = i;
+		for (int i = 0; i < listeners.size(); i++)
+			listeners.get(i).gameStarted(currentPlayerIdx);
+		for (int i = 0; i < listeners.size(); i++)
+			listeners.get(i).turnStarted(currentPlayerIdx);
+	}
+
+	/**
+	 * a method for making a move. Without a network in between, this is the same
+	 * as checking the move.
+	 * 
+	 * @param playerIdx an integer representing player ID
+	 * @param cardIdx   an array of integers representing the indices of cards
+	 *                  chosen, or null to pass
+	 */
+	@Override
+	public void makeMove(int playerIdx, int[] cardIdx) {
+		checkMove(playerIdx, cardIdx);
+	}
+
+	/**
+	 * a method for checking a move made by a player and applying it if it is
+	 * legal.
+	 * 
+	 * @param playerIdx an integer representing player ID
+	 * @param cardIdx   an array of integers representing the indices of cards
+	 *                  chosen, or null to pass
+	 */
+	@Override
+	public synchronized void checkMove(int playerIdx, int[] cardIdx) {
+		CardList cards = playerList.get(playerIdx).play(cardIdx);
+		if (cards != null && Long.bitCount(cards.getMask()) != cards.size())
+			reject(playerIdx);
+		else
+			applyMove(playerIdx, cards == null ? 0L : cards.getMask(), cards);
+	}
+
+	/**
+	 * a method for checking a move given as a CardSet mask and applying it if it
+	 * is legal. This is the fastest way to drive the engine, e.g. from bots.
+	 * 
+	 * @param playerIdx an integer representing player ID
+	 * @param cards     CardSet mask of the cards played, or 0 to pass
+	 * @return true if the move was legal and has been applied
+	 */
+	public synchronized boolean playCards(int playerIdx, long cards) {
+		return applyMove(playerIdx, cards, null);
+	}
+
+	/**
+	 * a method for applying a move that has already been checked, e.g. by the
+	 * server (see BigTwoReferee), without checking it again. The hand is built
+	 * with the given type instead of being classified.
+	 * 
+	 * @param playerIdx     an integer representing player ID
+	 * @param cards         CardSet mask of the cards played, or 0 to pass
+	 * @param type          the type of the hand; ignored for a pass
+	 * @param nextPlayerIdx the index of the player to move next
+	 */
+	public synchronized void playCheckedCards(int playerIdx, long cards, HandType type, int nextPlayerIdx) {
+		commitMove(playerIdx, cards, cards == 0 ? null : type, null, nextPlayerIdx);
+	}
+
+	/**
+	 * a method for checking if a move given as a CardSet mask is legal, without
+	 * applying it.
+	 * 
+	 * @param playerIdx an integer representing player ID
+	 * @param cards     CardSet mask of the cards played, or 0 to pass
+	 * @return true if the move is legal
+	 */
+	public synchronized boolean isLegalMove(int playerIdx, long cards) {
+		return moveStrength(playerIdx, cards) >= 0;
+	}
+
+	/**
+	 * a method for listing the legal moves of the current player.
+	 * 
+	 * @param visitor visitor receiving the moves
+	 * @return false if the visitor stopped the generator, true otherwise
+	 */
+	public synchronized boolean generateMoves(MoveVisitor visitor) {
+		return MoveGenerator.generate(playerList.get(currentPlayerIdx), handsOnTable, visitor);
+	}
+
+	/**
+	 * a method for checking if the game ends.
+	 * 
+	 * @return a boolean representing whether the game ends
+	 */
+	@Override
+	public boolean endOfGame() {
+		return getWinnerIdx() >= 0;
+	}
+
+	/**
+	 * a method for retrieving the index of the player who has no cards left.
+	 * 
+	 * @return the index of the winner, or -1 if the game has not ended
+	 */
+	public int getWinnerIdx() {
+		for (int i = 0; i < BigTwo.MAX_PLAYER_NUM; i++)
+			if (playerList.get(i).getNumOfCards() == 0)
+				return i;
+		return -1;
+	}
+
+	/**
+	 * a method for stopping the current game, e.g. when a player leaves mid game.
+	 * All cards are removed from the players and the table.
+	 */
+	public synchronized void sharpCut() {
+		for (int i = 0; i < BigTwo.MAX_PLAYER_NUM; i++)
+			playerList.get(i).removeAllCards();
+		handsOnTable.clear();
+	}
+
+	/**
+	 * a method for returning a valid hand from the specified list of cards of the
+	 * player. Returns null if no valid hand can be composed from the specified list
+	 * of cards.
+	 * 
+	 * @param player a CardGamePlayer object representing the player who plays the
+	 *               hand
+	 * @param cards  a CardList object representing the cards the player chose
+	 * @return a type of Hand if it falls into any type. null if it is an invalid
+	 *         hand
+	 */
+	public static Hand composeHand(CardGamePlayer player, CardList cards) {
+		long mask = cards.getMask();
+		int strength = Long.bitCount(mask) == cards.size() ? FiveCardTable.classify(mask) : HandClassifier.INVALID;
+		HandType type = HandType.fromStrength(strength);
+		return type == null ? null : type.newHand(player, cards);
+	}
+
+	/**
+	 * a method for computing the strength key of a move, checking that it is the
+	 * player's turn, that the player holds the cards and that the cards may be
+	 * played on the table.
+	 * 
+	 * @return the strength key of the hand, 0 for a legal pass, or -1 if the move
+	 *         is not legal
+	 */
+	private int moveStrength(int playerIdx, long cards) {
+		CardGamePlayer player = playerList.get(playerIdx);
+		if (playerIdx != currentPlayerIdx || endOfGame() || (cards & ~player.getCardMask()) != 0)
+			return -1;
+		Hand lastHand = getLastHand();
+		boolean leading = lastHand == null || lastHand.getPlayer() == player;
+		// player chose to pass: only allowed after another player's hand
+		if (cards == 0)
+			return leading ? -1 : 0;
+		int strength = FiveCardTable.classify(cards);
+		if (strength == HandClassifier.INVALID)
+			return -1;
+		// last hand on table is others: need follow pattern and beat
+		if (!leading && (lastHand.size() != Long.bitCount(cards) || strength <= lastHand.getStrength()))
+			return -1;
+		return strength;
+	}
+
+	/**
+	 * a method for applying a move if it is legal and reporting it to the
+	 * listeners.
+	 * 
+	 * @param playerIdx index of the player
+	 * @param mask      CardSet mask of the cards played, or 0 to pass
+	 * @param cards     the cards played as a list, or null to build the hand from
+	 *                  the mask
+	 * @return true if the move was legal
+	 */
+	private boolean applyMove(int playerIdx, long mask, CardList cards) {
+		int strength = moveStrength(playerIdx, mask);
+		if (strength < 0) {
+			reject(playerIdx);
+			return false;
+		}
+		commitMove(playerIdx, mask, mask == 0 ? null : HandType.fromStrength(strength), cards,
+				(currentPlayerIdx + 1) % BigTwo.MAX_PLAYER_NUM);
+		return true;
+	}
+
+	/**
+	 * a method for applying a legal move and reporting it to the listeners.
+	 * 
+	 * @param playerIdx     index of the player
+	 * @param mask          CardSet mask of the cards played, or 0 to pass
+	 * @param type          type of the hand, or null for a pass
+	 * @param cards         the cards played as a list, or null to build the hand
+	 *                      from the mask
+	 * @param nextPlayerIdx index of the player to move next
+	 */
+	private void commitMove(int playerIdx, long mask, HandType type, CardList cards, int nextPlayerIdx) {
+		CardGamePlayer player = playerList.get(playerIdx);
+		currentPlayerIdx = nextPlayerIdx;
+		if (type == null) {
+			for (int i = 0; i < listeners.size(); i++)
+				listeners.get(i).passed(playerIdx);
+		} else {
+			Hand hand = cards == null ? type.newHand(player, new CardSet(mask)) : type.newHand(player, cards);
+			player.getCardsInHand().removeCards(mask);
+			handsOnTable.add(hand);
+			for (int i = 0; i < listeners.size(); i++)
+				listeners.get(i).handPlayed(playerIdx, hand);
+		}
+		if (player.getNumOfCards() == 0) {
+			for (int i = 0; i < listeners.size(); i++)
+				listeners.get(i).gameEnded(playerIdx);
+		} else {
+			for (int i = 0; i < listeners.size(); i++)
+				listeners.get(i).turnStarted(currentPlayerIdx);
+		}
+	}
+
+	/**
+	 * a method for reporting a rejected move to the listeners.
+	 */
+	private void reject(int playerIdx) {
+		for (int i = 0; i < listeners.size(); i++)
+			listeners.get(i).moveRejected(playerIdx);
+		if (!endOfGame())
+			for (int i = 0; i < listeners.size(); i++)
+				listeners.get(i).turnStarted(currentPlayerIdx);
+	}
+}
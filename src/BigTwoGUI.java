@@ -1,34 +1,53 @@
 import javax.swing.*;
-import javax.swing.text.DefaultCaret;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * The BigTwoGUI class implements the CardGameUI interface. It is used to build
  * a GUI for the Big Two card game and handle all user actions.
+ * <p>
+ * The methods of the CardGameUI interface are called by the thread reading the
+ * messages from the server. They never touch Swing and never wait for it: they
+ * only collect the updates (see Updates), which an EventBridge applies on the
+ * event dispatch thread at most once per frame. The table is drawn from a
+ * TableView, an immutable view of the game taken by repaint(), so the event
+ * dispatch thread never reads the game while it is being changed.
+ * <p>
+ * The window is painted before the card images are decoded: the images still
+ * being decoded are left out, and the table is painted again once they are
+ * ready (see CardSprites.whenLoaded()). A status bar shows the state of the
+ * connection to the server.
  */
 public class BigTwoGUI implements CardGameUI {
 	private BigTwo game = null; // a BigTwo object
 	private BigTwoClient client = null; // a BigTwoClient Object
 	private ArrayList<CardGamePlayer> playerList; // the list of players
-	private ArrayList<Hand> handsOnTable; // the list of hands played on the
-	private int activePlayer = -1; // the index of the active player
+	private volatile int activePlayer = -1; // the index of the active player
 	private boolean[] selected = new boolean[BigTwo.MAX_CARD_NUM]; // selected cards
+	private TableView view; // the view of the game drawn on the table
+	// the updates made since the last frame, applied on the event dispatch thread
+	private final Updates updates = new Updates();
+	private final EventBridge bridge = new EventBridge(updates);
 	// gui elements
 	private JFrame frame;
 	private JMenuBar menuBar;
 	private JMenu menu;
 	private JMenuItem connectMenuItem;
+	private JMenuItem cancelMenuItem;
 	private JMenuItem quitMenuItem;
 	private BigTwoPanel bigTwoPanel;
 	private JButton playButton;
 	private JButton passButton;
-	private JTextArea msgArea;
-	private JScrollPane msgAreaScrollPane;
-	private JTextArea chatArea;
-	private JScrollPane chatAreaScrollPane;
+	private LogView msgArea;
+	private LogView chatArea;
 	private JTextField chatInput;
+	private JLabel statusLabel;
 
 	/**
 	 * a constructor for creating a BigTwoGUI. The parameter game is a reference to
@@ -39,7 +58,9 @@ public class BigTwoGUI implements CardGameUI {
 	public BigTwoGUI(BigTwo game) {
 		this.game = game;
 		playerList = game.getPlayerList();
-		handsOnTable = game.getHandsOnTable();
+		view = new TableView(game, -1, -1);
+		// decodes the card images while the window is being built
+		CardSprites.preload();
 
 		// frame
 		frame = new JFrame("Ng Tsz Hin 3035855571's ASM5");
@@ -55,8 +76,11 @@ public class BigTwoGUI implements CardGameUI {
 		menuBar = new JMenuBar();
 		menu = new JMenu("Game");
 		connectMenuItem = new JMenuItem("Connect");
+		cancelMenuItem = new JMenuItem("Cancel connecting");
+		cancelMenuItem.setEnabled(false);
 		quitMenuItem = new JMenuItem("Quit");
 		menu.add(connectMenuItem);
+		menu.add(cancelMenuItem);
 		menu.add(quitMenuItem);
 		menuBar.add(menu);
 		frame.setJMenuBar(menuBar);
@@ -72,35 +96,23 @@ public class BigTwoGUI implements CardGameUI {
 		c.gridheight = 2;
 		frame.add(bigTwoPanel, c);
 
-		// msgArea
-		msgArea = new JTextArea();
-		msgArea.setEditable(false);
-		msgArea.setColumns(25);
-		msgArea.setRows(1);
-		msgAreaScrollPane = new JScrollPane(msgArea);
-		// scroll to bottom on append
-		((DefaultCaret) msgArea.getCaret()).setUpdatePolicy(DefaultCaret.ALWAYS_UPDATE);
+		// msgArea (keeps the last lines only and follows the end)
+		msgArea = new LogView(LogView.DEFAULT_CAPACITY, 1, 25);
 		c.weightx = 0;
 		c.weighty = 1;
 		c.gridx = 2;
 		c.gridy = 0;
 		c.gridwidth = 1;
 		c.gridheight = 1;
-		frame.add(msgAreaScrollPane, c);
+		frame.add(msgArea, c);
 
 		// chatArea
-		chatArea = new JTextArea();
-		chatArea.setEditable(false);
-		chatArea.setColumns(25);
-		chatArea.setRows(1);
-		chatAreaScrollPane = new JScrollPane(chatArea);
-		// scroll to bottom on append
-		((DefaultCaret) chatArea.getCaret()).setUpdatePolicy(DefaultCaret.ALWAYS_UPDATE);
+		chatArea = new LogView(LogView.DEFAULT_CAPACITY, 1, 25);
 		c.weightx = 0;
 		c.weighty = 1;
 		c.gridx = 2;
 		c.gridy = 1;
-		frame.add(chatAreaScrollPane, c);
+		frame.add(chatArea, c);
 
 		// playButton
 		playButton = new JButton("Play");
@@ -127,6 +139,15 @@ public class BigTwoGUI implements CardGameUI {
 		c.gridy = 2;
 		frame.add(chatInput, c);
 
+		// statusLabel
+		statusLabel = new JLabel("Not connected");
+		c.weightx = 1;
+		c.weighty = 0;
+		c.gridx = 0;
+		c.gridy = 3;
+		c.gridwidth = 3;
+		frame.add(statusLabel, c);
+
 		// add listener for resizing window
 		frame.addComponentListener(new ComponentAdapter() {
 			// fix Java bug: maximize window does not call componentResized
@@ -165,6 +186,14 @@ public class BigTwoGUI implements CardGameUI {
 			}
 		});
 
+		// add listener for cancel menu item
+		cancelMenuItem.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				client.cancel();
+			}
+		});
+
 		// add listener for quit menu item
 		quitMenuItem.addActionListener(new ActionListener() {
 			@Override
@@ -201,7 +230,9 @@ public class BigTwoGUI implements CardGameUI {
 			@Override
 			public void keyPressed(KeyEvent e) {
 				if (e.getKeyCode() == KeyEvent.VK_ENTER) {
-					if (!chatInput.getText().trim().isEmpty()) {
+					if (client.sendCommand(chatInput.getText()))
+						chatInput.setText("");
+					else if (!chatInput.getText().trim().isEmpty()) {
 						client.sendMessage(new CardGameMessage(CardGameMessage.MSG, client.getPlayerID(),
 								chatInput.getText().trim()));
 						chatInput.setText("");
@@ -238,10 +269,13 @@ public class BigTwoGUI implements CardGameUI {
 	}
 
 	/**
-	 * a method for repainting the GUI.
+	 * a method for repainting the GUI with the current state of the game. The view
+	 * of the game is taken at once, so this method must be called by the thread
+	 * that changes the game; the table is repainted at the next frame, and only
+	 * the parts of it whose state has changed are painted again.
 	 */
 	public void repaint() {
-		frame.repaint();
+		updates.setView(new TableView(game, client == null ? -1 : client.getPlayerID(), activePlayer));
 	}
 
 	/**
@@ -250,14 +284,14 @@ public class BigTwoGUI implements CardGameUI {
 	 * @param message to display
 	 */
 	public void printMsg(String msg) {
-		msgArea.append(msg + "\n");
+		updates.addMsg(msg);
 	}
 
 	/**
 	 * a method for clearing the message area of the GUI.
 	 */
 	public void clearMsgArea() {
-		msgArea.setText("");
+		updates.clearMsgs();
 	}
 
 	/**
@@ -266,17 +300,16 @@ public class BigTwoGUI implements CardGameUI {
 	 * @param chat to display
 	 */
 	public void printChat(String msg) {
-		chatArea.append(msg + "\n");
+		updates.addChat(msg);
 	}
 
 	/**
 	 * a method for resetting the GUI. It will (i) reset the list of selected cards;
-	 * (ii) clear the message area; and (iii) enable user interactions.
+	 * and (ii) clear the message area.
 	 */
 	public void reset() {
 		clearMsgArea();
-		resetSelected();
-		repaint();
+		updates.resetSelected();
 	}
 
 	/**
@@ -285,8 +318,7 @@ public class BigTwoGUI implements CardGameUI {
 	 * enable the BigTwoPanel for selection of cards through mouse clicks.
 	 */
 	public void enable() {
-		playButton.setEnabled(true);
-		passButton.setEnabled(true);
+		updates.setEnabled(true);
 	}
 
 	/**
@@ -295,8 +327,30 @@ public class BigTwoGUI implements CardGameUI {
 	 * (ii) disable the BigTwoPanel for selection of cards through mouse clicks.
 	 */
 	public void disable() {
-		playButton.setEnabled(false);
-		passButton.setEnabled(false);
+		updates.setEnabled(false);
+	}
+
+	/**
+	 * a method for showing the state of the connection to the server in the status
+	 * bar. While the client is connecting, the player can cancel it but not
+	 * connect again.
+	 * 
+	 * @param status     the state of the connection
+	 * @param connecting whether the client is connecting
+	 */
+	public void setStatus(String status, boolean connecting) {
+		updates.setStatus(status, connecting);
+	}
+
+	/**
+	 * a method for showing the result of a game in a dialog. The dialog is shown
+	 * on the event dispatch thread, so the caller goes on at once; the server is
+	 * told that the player is ready for the next game when the dialog is closed.
+	 * 
+	 * @param result the result of the game
+	 */
+	public void showResult(String result) {
+		updates.addResult(result);
 	}
 
 	/**
@@ -341,53 +395,253 @@ public class BigTwoGUI implements CardGameUI {
 		}
 	}
 
+	/**
+	 * This class is used to hold the updates of the GUI made since the last frame.
+	 * The threads of the game only add to them, and run() applies them all at once
+	 * on the event dispatch thread: the messages are appended in one go and the
+	 * table is repainted once, with the latest view of the game.
+	 */
+	private class Updates implements Runnable {
+		private List<String> msgs = new ArrayList<String>();
+		private List<String> chats = new ArrayList<String>();
+		private boolean clearMsgs = false;
+		private boolean resetSelected = false;
+		private TableView view = null; // the latest view, or null if unchanged
+		private Boolean enabled = null; // the latest state of the buttons, if any
+		private String status = null; // the latest state of the connection, if any
+		private boolean connecting = false;
+		private List<String> results = new ArrayList<String>();
+
+		public void addMsg(String msg) {
+			synchronized (this) {
+				msgs.add(msg);
+			}
+			bridge.request();
+		}
+
+		public void clearMsgs() {
+			synchronized (this) {
+				msgs.clear();
+				clearMsgs = true;
+			}
+			bridge.request();
+		}
+
+		public void addChat(String msg) {
+			synchronized (this) {
+				chats.add(msg);
+			}
+			bridge.request();
+		}
+
+		public void resetSelected() {
+			synchronized (this) {
+				resetSelected = true;
+			}
+			bridge.request();
+		}
+
+		public void setView(TableView view) {
+			synchronized (this) {
+				this.view = view;
+			}
+			bridge.request();
+		}
+
+		public void setEnabled(boolean enabled) {
+			synchronized (this) {
+				this.enabled = enabled;
+			}
+			bridge.request();
+		}
+
+		public void setStatus(String status, boolean connecting) {
+			synchronized (this) {
+				this.status = status;
+				this.connecting = connecting;
+			}
+			bridge.request();
+		}
+
+		public void addResult(String result) {
+			synchronized (this) {
+				results.add(result);
+			}
+			bridge.request();
+		}
+
+		/**
+		 * a method for applying the updates, which is called on the event dispatch
+		 * thread.
+		 */
+		@Override
+		public void run() {
+			List<String> newMsgs, newChats;
+			boolean clear, reset;
+			TableView newView;
+			Boolean newEnabled;
+			String newStatus;
+			boolean newConnecting;
+			List<String> newResults;
+			synchronized (this) {
+				newMsgs = msgs;
+				newChats = chats;
+				clear = clearMsgs;
+				reset = resetSelected;
+				newView = view;
+				newEnabled = enabled;
+				newStatus = status;
+				newConnecting = connecting;
+				newResults = results;
+				msgs = new ArrayList<String>();
+				chats = new ArrayList<String>();
+				clearMsgs = false;
+				resetSelected = false;
+				view = null;
+				enabled = null;
+				status = null;
+				results = new ArrayList<String>();
+			}
+			if (clear)
+				msgArea.clear();
+			msgArea.append(newMsgs);
+			chatArea.append(newChats);
+			if (reset)
+				resetSelected();
+			if (newView != null)
+				BigTwoGUI.this.view = newView;
+			if (reset || newView != null)
+				bigTwoPanel.repaintChanged();
+			if (newEnabled != null) {
+				playButton.setEnabled(newEnabled);
+				passButton.setEnabled(newEnabled);
+			}
+			if (newStatus != null) {
+				statusLabel.setText(newStatus);
+				connectMenuItem.setEnabled(!newConnecting);
+				cancelMenuItem.setEnabled(newConnecting);
+			}
+			for (final String result : newResults) {
+				// shown after this update, so that the table shows the end of the game
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						JOptionPane.showMessageDialog(frame, result);
+						client.sendMessage(new CardGameMessage(CardGameMessage.READY, -1, null));
+					}
+				});
+			}
+		}
+	}
+
 	private class BigTwoPanel extends JPanel {
-		private int width;
-		private int height;
-		private int imageheight;
-		private int[] playery = new int[4];
-		private int tabley;
-		private Image image;
-		private int cardx;
-		private int cardwidth;
+		private TablePainter painter = new TablePainter();
 
 		public BigTwoPanel() {
+			// the images still being decoded are drawn when they are ready
+			painter.setWaiting(false);
+			CardSprites.whenLoaded(new Runnable() {
+				@Override
+				public void run() {
+					SwingUtilities.invokeLater(new Runnable() {
+						@Override
+						public void run() {
+							painter.invalidate();
+							repaint();
+						}
+					});
+				}
+			});
 			this.addMouseListener(new MouseAdapter() {
 				@Override
 				public void mouseReleased(MouseEvent e) {
-
+					int playerID = view.getPlayerID();
+					if (playerID < 0 || view.getNumOfCards(playerID) == 0)
+						return;
 					int x = e.getX();
 					int y = e.getY();
-					updateValues();
+					painter.updateValues(getWidth(), getHeight());
+					int cardx = painter.cardx;
+					int cardwidth = painter.cardwidth;
+					int top = painter.playery[playerID];
+					int imageheight = painter.imageheight;
 					int i;
 					// detect click on overlapping cards
-					for (i = 0; i < playerList.get(client.getPlayerID()).getCardsInHand().size(); i++) {
-						if (x >= cardx && x < cardx + cardwidth / 2
-								&& y >= (selected[i] ? playery[client.getPlayerID()] + 7
-										: playery[client.getPlayerID()] + 15)
-								&& y < (selected[i] ? playery[client.getPlayerID()] + 7 + imageheight
-										: playery[client.getPlayerID()] + 15 + imageheight)) {
+					for (i = 0; i < view.getNumOfCards(playerID); i++) {
+						if (x >= cardx && x < cardx + cardwidth / 2 && y >= (selected[i] ? top + 7 : top + 15)
+								&& y < (selected[i] ? top + 7 + imageheight : top + 15 + imageheight)) {
 							selected[i] = !selected[i];
 						}
 						cardx += cardwidth / 2;
 					}
 					// detect click on the remaining half of last card
-					if (x >= cardx && x < cardx + cardwidth / 2
-							&& y >= (selected[i - 1] ? playery[client.getPlayerID()] + 7
-									: playery[client.getPlayerID()] + 15)
-							&& y < (selected[i - 1] ? playery[client.getPlayerID()] + 7 + imageheight
-									: playery[client.getPlayerID()] + 15 + imageheight)) {
+					if (x >= cardx && x < cardx + cardwidth / 2 && y >= (selected[i - 1] ? top + 7 : top + 15)
+							&& y < (selected[i - 1] ? top + 7 + imageheight : top + 15 + imageheight)) {
 						selected[i - 1] = !selected[i - 1];
 					}
 
-					repaint();
+					repaintChanged();
 				}
 			});
 		}
 
-		public void updateValues() {
-			width = this.getWidth();
-			height = this.getHeight();
+		/**
+		 * a method for repainting the regions of the table whose state has changed.
+		 */
+		public void repaintChanged() {
+			for (Rectangle region : painter.getDirtyRegions(getWidth(), getHeight(), view, selected))
+				repaint(region);
+		}
+
+		@Override
+		public void paintComponent(Graphics g) {
+			painter.paint(g, getWidth(), getHeight(), view, selected, this);
+		}
+	}
+
+	/**
+	 * This class is used to draw the players and the table of a Big Two game, as
+	 * held by a TableView. It does not depend on a window, so BigTwoBenchmark can
+	 * also use it to draw into an offscreen image. The images are taken from a
+	 * CardSprites, scaled to the current layout.
+	 * <p>
+	 * The area is split into layers: a band for each seat and one for the table.
+	 * Each layer is kept in an image compatible with the screen, together with
+	 * the state it was drawn in (see LayerState), and is drawn again only when
+	 * that state changes; painting an unchanged layer is a single image copy.
+	 * getDirtyRegions() tells which parts of the area have to be painted again,
+	 * down to a single card when only the selection changed. The layers have as
+	 * many pixels as the screen, so they stay sharp on a scaled (HiDPI) display.
+	 */
+	static class TablePainter {
+		private static final Color BACKGROUND = new Color(0, 173, 0);
+		private static final Color TEXT = Color.BLACK;
+		private static final Font PLAIN_FONT = new Font("monospace", Font.PLAIN, 12);
+		private static final Font BOLD_FONT = new Font("monospace", Font.BOLD, 12);
+		// the index of the layer of the table; the seats come first
+		private static final int TABLE = BigTwo.MAX_PLAYER_NUM;
+		private CardSprites sprites = new CardSprites();
+		private BufferedImage[] layers = new BufferedImage[TABLE + 1];
+		// the state each layer was drawn in, or null if it has to be drawn
+		private LayerState[] drawn = new LayerState[TABLE + 1];
+		private double scale = 1; // screen pixels per pixel of the layout
+		private int width;
+		private int height;
+		private int imageheight;
+		private int[] playery = new int[4];
+		private int tabley;
+		private int cardx;
+		private int cardwidth;
+
+		/**
+		 * a method for computing the layout for an area of the specified size.
+		 * 
+		 * @param width  width of the area
+		 * @param height height of the area
+		 */
+		void updateValues(int width, int height) {
+			this.width = width;
+			this.height = height;
 			imageheight = (int) ((double) (height) / 5) - 20;
 			for (int i = 0; i < BigTwo.MAX_PLAYER_NUM; i++)
 				playery[i] = (int) ((double) (height) / 5 * i);
@@ -395,75 +649,227 @@ public class BigTwoGUI implements CardGameUI {
 			cardx = 15 + imageheight;
 			cardwidth = Math.min((int) (((double) imageheight) / 97 * 73),
 					(int) (((double) (width - cardx)) / ((double) BigTwo.MAX_CARD_NUM / 2 + 0.5)));
+			sprites.setSize(toScreen(cardwidth), toScreen(imageheight), toScreen(imageheight));
 		}
 
-		public static Image composeCardImage(Card c, boolean faceup) {
-			if (!faceup)
-				return new ImageIcon("src/image/b.gif").getImage();
-			char rankToChar[] = { 'a', '2', '3', '4', '5', '6', '7', '8', '9', '0', 'j', 'q', 'k' };
-			char suitToChar[] = { 'd', 'c', 'h', 's' };
-			String s = "";
-			s += rankToChar[c.getRank()];
-			s += suitToChar[c.getSuit()];
-			s += ".gif";
-			return new ImageIcon("src/image/" + s).getImage();
+		/**
+		 * a method for choosing whether painting waits for the images that are still
+		 * being decoded, which it does by default, or leaves them out.
+		 * 
+		 * @param waiting whether to wait for the images
+		 */
+		void setWaiting(boolean waiting) {
+			sprites.setWaiting(waiting);
 		}
 
-		@Override
-		public void paintComponent(Graphics g) {
-			updateValues();
-
-			// set background
-			g.setColor(new Color(0, 173, 0));
-			g.fillRect(0, 0, width, height);
-
-			// for each player
-			for (int i = 0; i < BigTwo.MAX_PLAYER_NUM; i++) {
-				// players who have joined
-				if (playerList.get(i).getName() != null) {
-					// draw name
-					g.setColor(new Color(0, 0, 0));
-					if (activePlayer == i)
-						g.setFont(new Font("monospace", Font.BOLD, 12));
-					else
-						g.setFont(new Font("monospace", Font.PLAIN, 12));
-					if (client.getPlayerID() == i)
-						g.drawString(playerList.get(i).getName() + " (You)", 5, playery[i] + 10);
-					else
-						g.drawString(playerList.get(i).getName(), 5, playery[i] + 10);
-					// draw icon
-					image = new ImageIcon("src/image/player" + Integer.toString(i) + ".jpg").getImage();
-					g.drawImage(image, 5, playery[i] + 15, imageheight, imageheight, this);
-					// draw cards
-					if (game.getNumOfPlayers() == BigTwo.MAX_PLAYER_NUM) {
-						cardx = 15 + imageheight;
-						for (int j = 0; j < playerList.get(i).getCardsInHand().size(); j++) {
-							image = composeCardImage(playerList.get(i).getCardsInHand().getCard(j),
-									client.getPlayerID() == i);
-							g.drawImage(image, cardx,
-									client.getPlayerID() == i && selected[j] ? playery[i] + 7 : playery[i] + 15,
-									cardwidth, imageheight, this);
-							cardx += cardwidth / 2;
-						}
+		/**
+		 * a method for making all layers be drawn again at the next paint.
+		 */
+		void invalidate() {
+			Arrays.fill(drawn, null);
+		}
+
+		/**
+		 * a method for drawing the players and the table into an area of the
+		 * specified size. Only the layers within the clip of the graphics are
+		 * painted, and only those whose state has changed are drawn again.
+		 * 
+		 * @param g        graphics to draw with
+		 * @param width    width of the area
+		 * @param height   height of the area
+		 * @param view     view of the game to draw
+		 * @param selected the selected cards of the local player
+		 * @param observer observer notified as the card images are loaded
+		 */
+		void paint(Graphics g, int width, int height, TableView view, boolean[] selected, ImageObserver observer) {
+			Graphics2D g2 = (Graphics2D) g;
+			double s = g2.getTransform().getScaleX();
+			if (s > 0 && s != scale) {
+				scale = s;
+				invalidate();
+			}
+			updateValues(width, height);
+			Rectangle clip = g.getClipBounds();
+			for (int i = 0; i <= TABLE; i++) {
+				int top = getTop(i);
+				int bottom = getBottom(i);
+				if (bottom <= top || (clip != null && (clip.y >= bottom || clip.y + clip.height <= top)))
+					continue;
+				BufferedImage layer = layers[i];
+				if (layer == null || layer.getWidth() != toScreen(width) || layer.getHeight() != toScreen(bottom - top)) {
+					layer = g2.getDeviceConfiguration().createCompatibleImage(toScreen(width), toScreen(bottom - top),
+							Transparency.OPAQUE);
+					layers[i] = layer;
+					drawn[i] = null;
+				}
+				LayerState state = getState(i, view, selected);
+				if (!state.equals(drawn[i])) {
+					Graphics2D lg = layer.createGraphics();
+					try {
+						lg.scale(scale, scale);
+						lg.translate(0, -top);
+						lg.setColor(BACKGROUND);
+						lg.fillRect(0, top, width, bottom - top);
+						if (i == TABLE)
+							drawTable(lg, view, observer);
+						else
+							drawSeat(lg, i, view, selected, observer);
+					} finally {
+						lg.dispose();
 					}
+					// a change outside the clip is not on the screen yet: the layer stays
+					// dirty until it is painted as a whole
+					boolean whole = clip == null || clip.contains(0, top, width, bottom - top);
+					drawn[i] = whole || (drawn[i] != null && state.isSelectionOf(drawn[i])) ? state : null;
 				}
+				g.drawImage(layer, 0, top, width, bottom - top, observer);
+			}
+		}
+
+		/**
+		 * a method for finding the parts of an area of the specified size that have
+		 * to be painted again because the state of the game or the selection has
+		 * changed since they were painted.
+		 * 
+		 * @param width    width of the area
+		 * @param height   height of the area
+		 * @param view     view of the game to draw
+		 * @param selected the selected cards of the local player
+		 * @return the regions to paint again, possibly none
+		 */
+		List<Rectangle> getDirtyRegions(int width, int height, TableView view, boolean[] selected) {
+			updateValues(width, height);
+			List<Rectangle> regions = new ArrayList<Rectangle>();
+			for (int i = 0; i <= TABLE; i++) {
+				LayerState state = getState(i, view, selected);
+				if (state.equals(drawn[i]))
+					continue;
+				if (drawn[i] != null && state.isSelectionOf(drawn[i])) {
+					// only the toggled cards move
+					long toggled = state.selected ^ drawn[i].selected;
+					for (int j = 0; toggled != 0; j++, toggled >>>= 1)
+						if ((toggled & 1) != 0)
+							regions.add(new Rectangle(cardx + j * (cardwidth / 2), playery[i] + 7, cardwidth,
+									imageheight + 8));
+				} else
+					regions.add(new Rectangle(0, getTop(i), width, getBottom(i) - getTop(i)));
 			}
+			return regions;
+		}
 
-			// table
-			g.setFont(new Font("monospace", Font.PLAIN, 12));
-			g.setColor(new Color(0, 0, 0));
-			if (!handsOnTable.isEmpty()) {
-				g.drawString("Table: played by " + handsOnTable.get(handsOnTable.size() - 1).getPlayer().getName(), 5,
-						tabley + 10);
-				cardx = 5;
-				for (int j = 0; j < handsOnTable.get(handsOnTable.size() - 1).size(); j++) {
-					image = composeCardImage(handsOnTable.get(handsOnTable.size() - 1).getCard(j), true);
-					g.drawImage(image, cardx, tabley + 15, cardwidth, imageheight, this);
-					cardx += cardwidth / 2;
+		/**
+		 * a method for drawing the name, the image and the cards of a player.
+		 */
+		private void drawSeat(Graphics g, int i, TableView view, boolean[] selected, ImageObserver observer) {
+			int playerID = view.getPlayerID();
+			// players who have joined
+			if (view.getName(i) == null)
+				return;
+			// draw name
+			g.setColor(TEXT);
+			g.setFont(view.getActivePlayer() == i ? BOLD_FONT : PLAIN_FONT);
+			if (playerID == i)
+				g.drawString(view.getName(i) + " (You)", 5, playery[i] + 10);
+			else
+				g.drawString(view.getName(i), 5, playery[i] + 10);
+			// draw icon
+			g.drawImage(sprites.getAvatar(i), 5, playery[i] + 15, imageheight, imageheight, observer);
+			// draw cards
+			if (view.getNumOfPlayers() == BigTwo.MAX_PLAYER_NUM) {
+				int x = cardx;
+				for (int j = 0; j < view.getNumOfCards(i); j++) {
+					Image image = sprites.getCard(view.getCard(i, j), playerID == i);
+					g.drawImage(image, x, playerID == i && selected[j] ? playery[i] + 7 : playery[i] + 15, cardwidth,
+							imageheight, observer);
+					x += cardwidth / 2;
+				}
+			}
+		}
+
+		/**
+		 * a method for drawing the last hand played.
+		 */
+		private void drawTable(Graphics g, TableView view, ImageObserver observer) {
+			g.setFont(PLAIN_FONT);
+			g.setColor(TEXT);
+			if (view.getLastHandSize() > 0) {
+				g.drawString("Table: played by " + view.getLastHandPlayer(), 5, tabley + 10);
+				int x = 5;
+				for (int j = 0; j < view.getLastHandSize(); j++) {
+					g.drawImage(sprites.getCard(view.getLastHandCard(j), true), x, tabley + 15, cardwidth, imageheight,
+							observer);
+					x += cardwidth / 2;
 				}
 			} else
 				g.drawString("Table: Empty", 5, tabley + 10);
+		}
+
+		/**
+		 * a method for capturing what a layer shows.
+		 */
+		private LayerState getState(int i, TableView view, boolean[] selected) {
+			if (i == TABLE)
+				return new LayerState(view.getLastHandPlayer(), view.getLastHandMask(), 0, 0);
+			int playerID = view.getPlayerID();
+			int flags = (view.getActivePlayer() == i ? 1 : 0) | (playerID == i ? 2 : 0)
+					| (view.getNumOfPlayers() == BigTwo.MAX_PLAYER_NUM ? 4 : 0);
+			long selectedCards = 0;
+			if (playerID == i)
+				for (int j = 0; j < Math.min(selected.length, view.getNumOfCards(i)); j++)
+					if (selected[j])
+						selectedCards |= 1L << j;
+			return new LayerState(view.getName(i), view.getCardMask(i), flags, selectedCards);
+		}
+
+		private int getTop(int i) {
+			return i == TABLE ? tabley : playery[i];
+		}
 
+		private int getBottom(int i) {
+			return i == TABLE ? height : i + 1 < BigTwo.MAX_PLAYER_NUM ? playery[i + 1] : tabley;
+		}
+
+		private int toScreen(int size) {
+			return Math.max(1, (int) Math.ceil(size * scale));
+		}
+	}
+
+	/**
+	 * This class is used to hold what a layer of the table shows: a name, a set of
+	 * cards (the cards of a player, or the last hand on the table), some flags and
+	 * the selected cards. The cards of a hand are always in the same order, so
+	 * equal states are drawn the same.
+	 */
+	private static class LayerState {
+		private final String name;
+		private final long cards;
+		private final int flags;
+		private final long selected;
+
+		public LayerState(String name, long cards, int flags, long selected) {
+			this.name = name;
+			this.cards = cards;
+			this.flags = flags;
+			this.selected = selected;
+		}
+
+		/**
+		 * a method for checking if this state differs from the specified one only in
+		 * the selected cards.
+		 */
+		public boolean isSelectionOf(LayerState other) {
+			return Objects.equals(name, other.name) && cards == other.cards && flags == other.flags;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof LayerState && isSelectionOf((LayerState) obj)
+					&& selected == ((LayerState) obj).selected;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(name, cards, flags, selected);
 		}
 	}
 }
@@ -0,0 +1,50 @@
+/**
+ * An interface for receiving the events of a BigTwoEngine. All methods are
+ * called on the thread that drives the engine, right after the state of the
+ * engine has changed.
+ */
+public interface BigTwoListener {
+	/**
+	 * Called when a new game has been dealt.
+	 * 
+	 * @param firstPlayerIdx the index of the player holding the Three of Diamonds
+	 */
+	public void gameStarted(int firstPlayerIdx);
+
+	/**
+	 * Called when a player has played a hand.
+	 * 
+	 * @param playerIdx the index of the player
+	 * @param hand      the hand played, which is now the last hand on the table
+	 */
+	public void handPlayed(int playerIdx, Hand hand);
+
+	/**
+	 * Called when a player has passed.
+	 * 
+	 * @param playerIdx the index of the player
+	 */
+	public void passed(int playerIdx);
+
+	/**
+	 * Called when a move has been rejected. The state of the game is unchanged.
+	 * 
+	 * @param playerIdx the index of the player who made the move
+	 */
+	public void moveRejected(int playerIdx);
+
+	/**
+	 * Called after each move (legal or not) and after a new deal, unless the game
+	 * has ended, to tell whose turn it is.
+	 * 
+	 * @param currentPlayerIdx the index of the player to move
+	 */
+	public void turnStarted(int currentPlayerIdx);
+
+	/**
+	 * Called when a player has played the last card in hand.
+	 * 
+	 * @param winnerIdx the index of the player who won the game
+	 */
+	public void gameEnded(int winnerIdx);
+}
@@ -0,0 +1,766 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The BigTwoLoadTest class is used to measure how many tables a Big Two server
+ * can sustain. It opens a large number of simulated clients that speak the
+ * CardGameMessage protocol like BigTwoClient but need no GUI: each joins the
+ * server, gets ready, plays the moves chosen by a bot (see BigTwoBot) after a
+ * random think time, and chats now and then. Every client keeps its own
+ * BigTwoEngine in step with the RESULT messages of the server, so its moves are
+ * legal.
+ * <p>
+ * The clients are served by a few selector threads (ClientLoop), so thousands
+ * of them fit in one process, and they use frames in the compact binary format
+ * (see FrameCodec and BinaryCodec); the server has to run in non-blocking mode
+ * ("nio"). The test can start such a server in the same process, e.g. for a
+ * quick run on loopback; for real measurements run the server in its own
+ * process on the same box, with enough tables for all the clients.
+ * <p>
+ * Every few seconds the test prints the number of connected clients, the moves,
+ * games and chat messages per second, and the 50th, 99th and 99.9th
+ * percentiles of the round-trip time of a move, from sending the MOVE message
+ * to receiving its RESULT. At the end it prints the same figures over the
+ * whole run after the warm-up. With many clients, raise the limit of open files
+ * first (e.g. "ulimit -n 65536").
+ */
+public class BigTwoLoadTest {
+	private static final int READ_BUFFER_SIZE = 4096;
+	// how often the figures of the last interval are printed
+	private static final long REPORT_INTERVAL = 5000;
+	private static final int MOVE = 0;
+	private static final int CHAT = 1;
+
+	private final InetSocketAddress address;
+	private int numOfClients = 400;
+	private int numOfLoops = Math.min(4, Runtime.getRuntime().availableProcessors());
+	private long thinkTime = 500; // mean, in ms
+	private long chatInterval = 10000; // mean, in ms; 0 for no chat
+	private int rampRate = 200; // connections opened per second
+	private long duration = 60000;
+	private long warmup = 10000;
+	private BigTwoBot bot = new GreedyBot();
+	private long seed = 0;
+
+	private final LongAdder connected = new LongAdder();
+	private final LongAdder moves = new LongAdder();
+	private final LongAdder games = new LongAdder();
+	private final LongAdder chatsSent = new LongAdder();
+	private final LongAdder chatsReceived = new LongAdder();
+	private final LongAdder messagesIn = new LongAdder();
+	private final LongAdder messagesOut = new LongAdder();
+	private final LongAdder illegalMoves = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LatencyHistogram rtt = new LatencyHistogram();
+
+	/**
+	 * a constructor for creating a load test against the specified server.
+	 *
+	 * @param host the host of the server
+	 * @param port the port of the server
+	 */
+	public BigTwoLoadTest(String host, int port) {
+		this.address = new InetSocketAddress(host, port);
+	}
+
+	/**
+	 * a method for running the test: opening the clients at the ramp rate,
+	 * printing the figures of each interval while they play, and closing them
+	 * after the duration.
+	 *
+	 * @return the number of clients that failed
+	 */
+	public long run() throws IOException, InterruptedException {
+		ClientLoop[] loops = new ClientLoop[Math.max(1, numOfLoops)];
+		for (int i = 0; i < loops.length; i++) {
+			loops[i] = new ClientLoop();
+			loops[i].start("load-loop-" + i);
+		}
+		System.out.printf("%d clients on %d threads against %s, think time %d ms, chat every %d s, ramp %d/s%n",
+				numOfClients, loops.length, address, thinkTime, chatInterval / 1000, rampRate);
+
+		SplittableRandom random = new SplittableRandom(seed);
+		LatencyHistogram total = new LatencyHistogram();
+		long start = System.currentTimeMillis();
+		// a warm-up as long as the run is left out
+		long measureStart = warmup < duration ? start + warmup : start;
+		long end = start + duration;
+		long nextReport = start + REPORT_INTERVAL;
+		long lastReport = start;
+		long measuredFrom = start;
+		long[] last = new long[6];
+		// the counters at the end of the warm-up, taken when it ends
+		long[] atWarmup = measureStart == start ? new long[6] : null;
+		// the round-trip times of the current interval before the end of the warm-up
+		LatencyHistogram warmupTail = new LatencyHistogram();
+		int opened = 0;
+		long now;
+		while ((now = System.currentTimeMillis()) < end) {
+			// opens the clients due by now
+			long due = rampRate <= 0 ? numOfClients : (now - start) * rampRate / 1000 + 1;
+			for (; opened < Math.min(due, numOfClients); opened++)
+				loops[opened % loops.length].add(new SimulatedClient(opened, random.split()));
+			if (atWarmup == null && now >= measureStart) {
+				atWarmup = sums();
+				measuredFrom = now;
+				warmupTail = rtt.drain();
+			}
+			if (now >= nextReport) {
+				long[] sums = sums();
+				LatencyHistogram interval = rtt.drain();
+				if (atWarmup != null)
+					total.add(interval);
+				interval.add(warmupTail);
+				warmupTail = new LatencyHistogram();
+				double seconds = (now - lastReport) / 1000.0;
+				System.out.printf("%5.0fs %6d clients %9.1f moves/s %7.1f games/s %7.1f chats/s  rtt %s%s%n",
+						(now - start) / 1000.0, connected.sum(), (sums[0] - last[0]) / seconds,
+						(sums[1] - last[1]) / seconds, (sums[2] - last[2]) / seconds, interval.percentiles(),
+						errors.sum() == 0 ? "" : "  " + errors.sum() + " errors");
+				last = sums;
+				lastReport = now;
+				nextReport += REPORT_INTERVAL;
+			}
+			long wake = Math.min(nextReport, atWarmup == null ? measureStart : end);
+			long sleep = opened < numOfClients ? 10 : Math.min(wake, end) - System.currentTimeMillis();
+			Thread.sleep(Math.max(1, sleep));
+		}
+
+		// the loop may have overslept the end of the warm-up and of the run
+		if (atWarmup == null) {
+			atWarmup = new long[6];
+			measuredFrom = start;
+			total.add(warmupTail);
+		}
+		total.add(rtt.drain());
+		long[] sums = sums();
+		long clients = connected.sum();
+		for (ClientLoop loop : loops)
+			loop.shutdown();
+		for (ClientLoop loop : loops)
+			loop.join();
+		double seconds = (now - measuredFrom) / 1000.0;
+		System.out.println();
+		System.out.printf("Measured %.0f s after a warm-up of %.0f s:%n", seconds, (measuredFrom - start) / 1000.0);
+		System.out.printf("  clients:  %d connected of %d, %d errors%n", clients, numOfClients, errors.sum());
+		System.out.printf("  moves:    %d (%.1f/s), %d illegal%n", sums[0] - atWarmup[0],
+				(sums[0] - atWarmup[0]) / seconds, illegalMoves.sum());
+		System.out.printf("  games:    %d (%.1f/s)%n", sums[1] - atWarmup[1], (sums[1] - atWarmup[1]) / seconds);
+		System.out.printf("  chats:    %.1f sent/s, %.1f received/s%n", (sums[2] - atWarmup[2]) / seconds,
+				(sums[3] - atWarmup[3]) / seconds);
+		System.out.printf("  messages: %.1f in/s, %.1f out/s%n", (sums[4] - atWarmup[4]) / seconds,
+				(sums[5] - atWarmup[5]) / seconds);
+		System.out.printf("  move rtt: %s, max %.2f ms over %d moves%n", total.percentiles(), total.getMax() / 1000.0,
+				total.getCount());
+		return errors.sum();
+	}
+
+	/**
+	 * a method for reading the counters of moves, games, chat messages sent and
+	 * received, and messages received and sent, in this order.
+	 *
+	 * @return the counters
+	 */
+	private long[] sums() {
+		return new long[] { moves.sum(), games.sum(), chatsSent.sum(), chatsReceived.sum(), messagesIn.sum(),
+				messagesOut.sum() };
+	}
+
+	/**
+	 * This inner class is used to model a thread serving a share of the
+	 * simulated clients with a Selector, like ServerEventLoop on the server. Only
+	 * the loop thread touches its clients.
+	 */
+	private class ClientLoop implements Runnable {
+		private final Selector selector;
+		private final ConcurrentLinkedQueue<SimulatedClient> added = new ConcurrentLinkedQueue<SimulatedClient>();
+		private final PriorityQueue<Timer> timers = new PriorityQueue<Timer>();
+		private volatile boolean running = true;
+		private Thread thread;
+
+		public ClientLoop() throws IOException {
+			selector = Selector.open();
+		}
+
+		public void start(String name) {
+			thread = new Thread(this, name);
+			thread.start();
+		}
+
+		public void shutdown() {
+			running = false;
+			selector.wakeup();
+		}
+
+		public void join() throws InterruptedException {
+			thread.join();
+		}
+
+		/**
+		 * a method for handing a new client to this loop, which connects it.
+		 *
+		 * @param client the client to connect
+		 */
+		public void add(SimulatedClient client) {
+			added.add(client);
+			selector.wakeup();
+		}
+
+		/**
+		 * a method for running a move or a chat of a client after the specified
+		 * delay.
+		 *
+		 * @param millis the delay in milliseconds
+		 * @param client the client
+		 * @param kind   MOVE or CHAT
+		 * @param turn   the turn of the client the task belongs to
+		 */
+		public void schedule(long millis, SimulatedClient client, int kind, int turn) {
+			timers.add(new Timer(System.nanoTime() + millis * 1000000, client, kind, turn));
+		}
+
+		@Override
+		public void run() {
+			while (running) {
+				try {
+					long timeout = 100;
+					if (!timers.isEmpty())
+						timeout = Math.max(1, (timers.peek().due - System.nanoTime()) / 1000000 + 1);
+					if (added.isEmpty())
+						selector.select(timeout);
+					else
+						selector.selectNow();
+					Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+					while (it.hasNext()) {
+						SelectionKey key = it.next();
+						it.remove();
+						SimulatedClient client = (SimulatedClient) key.attachment();
+						if (!key.isValid())
+							continue;
+						if (key.isConnectable())
+							client.finishConnect();
+						else {
+							if (key.isReadable())
+								client.read();
+							if (key.isValid() && key.isWritable())
+								client.flush();
+						}
+					}
+					SimulatedClient client;
+					while ((client = added.poll()) != null)
+						client.connect(this);
+					long now = System.nanoTime();
+					while (!timers.isEmpty() && timers.peek().due <= now) {
+						Timer timer = timers.poll();
+						timer.client.fire(timer.kind, timer.turn);
+					}
+				} catch (IOException ex) {
+					System.err.println("Error in a client loop: " + ex);
+				}
+			}
+			for (SelectionKey key : selector.keys())
+				((SimulatedClient) key.attachment()).close();
+			try {
+				selector.close();
+			} catch (IOException ex) {
+				// nothing left to release
+			}
+		}
+	}
+
+	/**
+	 * This inner class is used to model a move or a chat message due at a given
+	 * time.
+	 */
+	private static class Timer implements Comparable<Timer> {
+		private final long due; // System.nanoTime()
+		private final SimulatedClient client;
+		private final int kind;
+		private final int turn;
+
+		public Timer(long due, SimulatedClient client, int kind, int turn) {
+			this.due = due;
+			this.client = client;
+			this.kind = kind;
+			this.turn = turn;
+		}
+
+		@Override
+		public int compareTo(Timer other) {
+			return Long.compare(due, other.due);
+		}
+	}
+
+	/**
+	 * This inner class is used to model a simulated client: a non-blocking
+	 * connection to the server and the game as this client sees it.
+	 */
+	private class SimulatedClient {
+		private final String name;
+		private final SplittableRandom random;
+		private final BigTwoEngine engine = new BigTwoEngine();
+		private final ArrayDeque<ByteBuffer> output = new ArrayDeque<ByteBuffer>();
+		private ByteBuffer input = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		private boolean checked = false; // whether the server is known to send frames
+		private boolean isConnected = false;
+		private ClientLoop loop;
+		private SocketChannel channel;
+		private SelectionKey key;
+		private int playerID = -1;
+		private int turn = 0; // changes whenever the game changes
+		private long moveSentAt = 0; // System.nanoTime(), 0 if no move is pending
+		private int chats = 0;
+
+		public SimulatedClient(int id, SplittableRandom random) {
+			this.name = "Bot" + id;
+			this.random = random;
+		}
+
+		/**
+		 * a method for starting to connect to the server. Called on the loop thread.
+		 *
+		 * @param loop the loop serving this client
+		 */
+		public void connect(ClientLoop loop) {
+			this.loop = loop;
+			try {
+				channel = SocketChannel.open();
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				key = channel.register(loop.selector, SelectionKey.OP_CONNECT, this);
+				if (channel.connect(address))
+					finishConnect();
+			} catch (IOException ex) {
+				fail("Cannot connect to the server: " + ex.getMessage());
+			}
+		}
+
+		public void finishConnect() {
+			try {
+				if (channel.finishConnect()) {
+					key.interestOps(SelectionKey.OP_READ);
+					isConnected = true;
+					connected.increment();
+					send(new CardGameMessage(CardGameMessage.PROTOCOL, CardGameMessage.PROTOCOL_VERSION, null));
+				}
+			} catch (IOException ex) {
+				fail("Cannot connect to the server: " + ex.getMessage());
+			}
+		}
+
+		/**
+		 * a method for reading what has arrived and handling each complete frame.
+		 */
+		public void read() {
+			try {
+				if (channel.read(input) < 0) {
+					fail("The server closed the connection.");
+					return;
+				}
+				input.flip();
+				if (!checked && input.remaining() >= 2) {
+					if (FrameCodec.isStreamHeader(input.get(0) & 0xFF, input.get(1) & 0xFF)) {
+						fail("The server does not send frames; start it in non-blocking mode (nio).");
+						return;
+					}
+					checked = true;
+				}
+				while (input.remaining() >= FrameCodec.HEADER_SIZE) {
+					int length = input.getInt(input.position());
+					if (!FrameCodec.isValidLength(length))
+						throw new IOException("Invalid frame length: " + length);
+					if (input.remaining() < FrameCodec.HEADER_SIZE + length) {
+						if (FrameCodec.HEADER_SIZE + length > input.capacity()) {
+							ByteBuffer bigger = ByteBuffer.allocate(FrameCodec.HEADER_SIZE + length);
+							bigger.put(input);
+							bigger.flip();
+							input = bigger;
+						}
+						break;
+					}
+					CardGameMessage message = FrameCodec.decode(input.array(),
+							input.position() + FrameCodec.HEADER_SIZE, length);
+					input.position(input.position() + FrameCodec.HEADER_SIZE + length);
+					messagesIn.increment();
+					handle(message);
+					if (channel == null)
+						return;
+				}
+				input.compact();
+			} catch (IOException ex) {
+				fail("Error in receiving messages: " + ex.getMessage());
+			}
+		}
+
+		/**
+		 * a method for reacting to a message from the server as BigTwoClient and
+		 * BigTwo do, with a bot in place of the player.
+		 *
+		 * @param message the message received
+		 */
+		private void handle(CardGameMessage message) {
+			int id = message.getPlayerID();
+			switch (message.getType()) {
+			case CardGameMessage.PLAYER_LIST:
+				playerID = id;
+				send(new CardGameMessage(CardGameMessage.JOIN, -1, name));
+				break;
+			case CardGameMessage.FULL:
+				fail("The server is full.");
+				break;
+			case CardGameMessage.JOIN:
+				if (id == playerID) {
+					send(new CardGameMessage(CardGameMessage.READY, -1, null));
+					if (chatInterval > 0)
+						loop.schedule(nextChatDelay(), this, CHAT, 0);
+				}
+				break;
+			case CardGameMessage.QUIT:
+				if (!engine.endOfGame()) {
+					engine.sharpCut();
+					turn++;
+					moveSentAt = 0;
+					send(new CardGameMessage(CardGameMessage.READY, -1, null));
+				}
+				break;
+			case CardGameMessage.START:
+				engine.start((Deck) message.getData());
+				if (engine.getCurrentPlayerIdx() == playerID)
+					games.increment(); // counted once per table
+				moveApplied();
+				break;
+			case CardGameMessage.RESULT:
+				Object result = message.getData();
+				moveAnswered(id);
+				if (!(result instanceof int[]) || !BigTwoReferee.apply(engine, id, (int[]) result)) {
+					fail("Invalid move received from the server.");
+					break;
+				}
+				moveApplied();
+				break;
+			case CardGameMessage.MOVE:
+				// a server without a referee broadcasts the moves unchecked
+				moveAnswered(id);
+				engine.checkMove(id, (int[]) message.getData());
+				moveApplied();
+				break;
+			case CardGameMessage.ILLEGAL:
+				if (id == playerID) {
+					moveAnswered(id);
+					illegalMoves.increment();
+					// the bot and the server disagree: falls back to a move that is always legal
+					CardGamePlayer player = engine.getPlayerList().get(playerID);
+					long cards = MoveGenerator.canPass(player, engine.getHandsOnTable()) ? 0L
+							: Long.lowestOneBit(player.getCardMask());
+					sendMove(cards);
+				}
+				break;
+			case CardGameMessage.MSG:
+				if (id >= 0)
+					chatsReceived.increment();
+				break;
+			default:
+				// SESSION, READY, TABLES and SNAPSHOT need no answer
+				break;
+			}
+		}
+
+		/**
+		 * a method for recording the round-trip time of the move of this client,
+		 * if the answer is for it.
+		 *
+		 * @param id the player whose move was answered
+		 */
+		private void moveAnswered(int id) {
+			if (id == playerID && moveSentAt != 0) {
+				rtt.record((System.nanoTime() - moveSentAt) / 1000);
+				moveSentAt = 0;
+			}
+		}
+
+		/**
+		 * a method for getting ready for the next game if the game has ended, or
+		 * for scheduling the next move of the bot if it is its turn.
+		 */
+		private void moveApplied() {
+			turn++;
+			if (engine.endOfGame())
+				send(new CardGameMessage(CardGameMessage.READY, -1, null));
+			else if (engine.getCurrentPlayerIdx() == playerID) {
+				long think = thinkTime <= 0 ? 0 : thinkTime / 2 + random.nextLong(thinkTime + 1);
+				loop.schedule(think, this, MOVE, turn);
+			}
+		}
+
+		/**
+		 * a method for running a task of this client that has become due.
+		 *
+		 * @param kind MOVE or CHAT
+		 * @param turn the turn the task was scheduled in
+		 */
+		public void fire(int kind, int turn) {
+			if (channel == null)
+				return;
+			if (kind == CHAT) {
+				chatsSent.increment();
+				send(new CardGameMessage(CardGameMessage.MSG, playerID, "Hello from " + name + " #" + ++chats));
+				loop.schedule(nextChatDelay(), this, CHAT, 0);
+			} else if (turn == this.turn && !engine.endOfGame() && engine.getCurrentPlayerIdx() == playerID)
+				sendMove(bot.chooseMove(engine, playerID, random));
+		}
+
+		/**
+		 * a method for sending the move of the specified cards.
+		 *
+		 * @param cards the CardSet mask of the cards to play, or 0 to pass
+		 */
+		private void sendMove(long cards) {
+			int[] cardIdx = null;
+			if (cards != 0) {
+				CardList hand = engine.getPlayerList().get(playerID).getCardsInHand();
+				cardIdx = new int[Long.bitCount(cards)];
+				int n = 0;
+				for (int i = 0; i < hand.size(); i++)
+					if ((cards & CardSet.maskOf(hand.getCard(i))) != 0)
+						cardIdx[n++] = i;
+			}
+			moves.increment();
+			moveSentAt = System.nanoTime();
+			send(new CardGameMessage(CardGameMessage.MOVE, -1, cardIdx));
+		}
+
+		private long nextChatDelay() {
+			// exponentially distributed, so that the chat messages arrive at random
+			return (long) (-Math.log(1 - random.nextDouble()) * chatInterval);
+		}
+
+		/**
+		 * a method for sending a message, queuing what the socket does not take at
+		 * once.
+		 *
+		 * @param message the message to send
+		 */
+		private void send(CardGameMessage message) {
+			if (channel == null)
+				return;
+			try {
+				ByteBuffer frame = ByteBuffer.wrap(FrameCodec.encode(message, true));
+				messagesOut.increment();
+				if (output.isEmpty())
+					channel.write(frame);
+				if (frame.hasRemaining()) {
+					output.add(frame);
+					key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				}
+			} catch (IOException ex) {
+				fail("Error in sending messages: " + ex.getMessage());
+			}
+		}
+
+		public void flush() {
+			try {
+				while (!output.isEmpty()) {
+					channel.write(output.peek());
+					if (output.peek().hasRemaining())
+						return;
+					output.poll();
+				}
+				key.interestOps(SelectionKey.OP_READ);
+			} catch (IOException ex) {
+				fail("Error in sending messages: " + ex.getMessage());
+			}
+		}
+
+		private void fail(String reason) {
+			if (errors.sum() < 10)
+				System.err.println(name + ": " + reason);
+			errors.increment();
+			close();
+		}
+
+		/**
+		 * a method for closing the connection of this client.
+		 */
+		public void close() {
+			if (channel == null)
+				return;
+			if (isConnected)
+				connected.decrement();
+			isConnected = false;
+			try {
+				channel.close();
+			} catch (IOException ex) {
+				// nothing left to release
+			}
+			channel = null;
+		}
+	}
+
+	/**
+	 * This class is used to count latencies in microseconds with a precision of
+	 * about 3%: values below 64 have a bucket each, and every power of 2 above is
+	 * split into 32 buckets. Any thread can record a latency without a lock.
+	 */
+	private static class LatencyHistogram {
+		private static final int LINEAR = 64;
+		private static final int SUB_BUCKETS = 32;
+		private static final int BUCKETS = LINEAR + (63 - 6) * SUB_BUCKETS;
+		private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+		private long max = 0;
+
+		public void record(long micros) {
+			counts.incrementAndGet(bucketOf(Math.max(0, micros)));
+		}
+
+		/**
+		 * a method for moving the counts of this histogram to a new one.
+		 *
+		 * @return a histogram with the counts recorded since the last drain
+		 */
+		public LatencyHistogram drain() {
+			LatencyHistogram taken = new LatencyHistogram();
+			for (int i = 0; i < BUCKETS; i++) {
+				long n = counts.getAndSet(i, 0);
+				if (n != 0) {
+					taken.counts.set(i, n);
+					taken.max = valueOf(i + 1) - 1;
+				}
+			}
+			return taken;
+		}
+
+		public void add(LatencyHistogram other) {
+			for (int i = 0; i < BUCKETS; i++)
+				counts.addAndGet(i, other.counts.get(i));
+			max = Math.max(max, other.max);
+		}
+
+		public long getCount() {
+			long n = 0;
+			for (int i = 0; i < BUCKETS; i++)
+				n += counts.get(i);
+			return n;
+		}
+
+		public long getMax() {
+			return max;
+		}
+
+		/**
+		 * a method for getting the value below which the specified fraction of
+		 * the latencies lie.
+		 *
+		 * @param fraction a fraction between 0 and 1
+		 * @return the latency in microseconds, the middle of its bucket
+		 */
+		public double getPercentile(double fraction) {
+			long count = getCount();
+			long rank = (long) Math.ceil(fraction * count);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += counts.get(i);
+				if (seen >= rank && seen > 0)
+					return (valueOf(i) + valueOf(i + 1) - 1) / 2.0;
+			}
+			return 0;
+		}
+
+		public String percentiles() {
+			if (getCount() == 0)
+				return "p50 - p99 - p999 -";
+			return String.format("p50 %.2f p99 %.2f p999 %.2f ms", getPercentile(0.5) / 1000,
+					getPercentile(0.99) / 1000, getPercentile(0.999) / 1000);
+		}
+
+		private static int bucketOf(long value) {
+			if (value < LINEAR)
+				return (int) value;
+			int exponent = 63 - Long.numberOfLeadingZeros(value); // at least 6
+			int sub = (int) (value >>> (exponent - 5)) & (SUB_BUCKETS - 1);
+			return Math.min(BUCKETS - 1, LINEAR + (exponent - 6) * SUB_BUCKETS + sub);
+		}
+
+		private static long valueOf(int bucket) {
+			if (bucket < LINEAR)
+				return bucket;
+			int exponent = (bucket - LINEAR) / SUB_BUCKETS + 6;
+			int sub = (bucket - LINEAR) % SUB_BUCKETS;
+			return (long) (SUB_BUCKETS + sub) << (exponent - 5);
+		}
+	}
+
+	/**
+	 * main() method for running a load test.
+	 *
+	 * @param args options "-h host" (default 127.0.0.1), "-p port" (default 2396),
+	 *             "-n clients" (default 400), "-l threads" (client threads,
+	 *             default the number of processors, at most 4), "-t ms" (mean
+	 *             think time of a move, drawn between half and one and a half of
+	 *             it; default 500), "-c s" (mean time between two chat messages of
+	 *             a client, 0 for none; default 10), "-r n" (connections opened
+	 *             per second, 0 for all at once; default 200), "-d s" (duration,
+	 *             default 60), "-w s" (warm-up left out of the summary, default
+	 *             10), "-b bot" ("greedy" or "random", default greedy), "-s seed"
+	 *             (default 0) and "-S loops" (starts a headless server in
+	 *             non-blocking mode with the given number of event loops in this
+	 *             process, with a table for every 4 clients)
+	 */
+	public static void main(String[] args) throws Exception {
+		String host = "127.0.0.1";
+		int port = 2396;
+		int serverLoops = 0;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("-h"))
+				host = args[i + 1];
+			else if (args[i].equals("-p"))
+				port = Integer.parseInt(args[i + 1]);
+		}
+		BigTwoLoadTest test = new BigTwoLoadTest(host, port);
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			if (args[i].equals("-n"))
+				test.numOfClients = Integer.parseInt(value);
+			else if (args[i].equals("-l"))
+				test.numOfLoops = Integer.parseInt(value);
+			else if (args[i].equals("-t"))
+				test.thinkTime = Long.parseLong(value);
+			else if (args[i].equals("-c"))
+				test.chatInterval = (long) (Double.parseDouble(value) * 1000);
+			else if (args[i].equals("-r"))
+				test.rampRate = Integer.parseInt(value);
+			else if (args[i].equals("-d"))
+				test.duration = (long) (Double.parseDouble(value) * 1000);
+			else if (args[i].equals("-w"))
+				test.warmup = (long) (Double.parseDouble(value) * 1000);
+			else if (args[i].equals("-b"))
+				test.bot = BigTwoSimulator.createBot(value);
+			else if (args[i].equals("-s"))
+				test.seed = Long.parseLong(value);
+			else if (args[i].equals("-S"))
+				serverLoops = Integer.parseInt(value);
+			else if (!args[i].equals("-h") && !args[i].equals("-p"))
+				throw new IllegalArgumentException("Unknown option: " + args[i]);
+		}
+		if (serverLoops > 0) {
+			BigTwoServer server = new BigTwoServer(true);
+			// the log of the server would drown the figures of the test
+			server.getLog().setOutput(null);
+			server.setMaxNumOfTables((test.numOfClients + BigTwo.MAX_PLAYER_NUM - 1) / BigTwo.MAX_PLAYER_NUM);
+			server.setSeatHoldTime(0);
+			server.startNonBlocking(port, serverLoops);
+		}
+		long failed = test.run();
+		System.exit(failed == 0 ? 0 : 1);
+	}
+}
@@ -0,0 +1,224 @@
+/**
+ * The BigTwoReferee class implements the GameReferee interface with a
+ * BigTwoEngine, so that a Big Two server checks the moves with the same rules
+ * as the clients. A legal move is described in a RESULT message by an array
+ * of int holding the type code of the hand (0 for a pass), the index of the
+ * next player and the CardSet indices of the cards played, which a client
+ * applies with BigTwo.applyResult().
+ * <p>
+ * The state of a game is described in a SNAPSHOT message by an array of int
+ * holding the current player, the player of the last hand on the table (-1 if
+ * the table is empty), the type code of the last hand, the CardSet mask of the
+ * cards of each player as two ints of HALF_MASK_BITS bits each, and the CardSet
+ * indices of the cards of the last hand; about 40 bytes in the binary format.
+ * A client resumes the game with restore().
+ */
+public class BigTwoReferee implements GameReferee {
+	/**
+	 * The index of the type code in the data of a RESULT message.
+	 */
+	public static final int TYPE = 0;
+	/**
+	 * The index of the next player in the data of a RESULT message.
+	 */
+	public static final int NEXT_PLAYER = 1;
+	/**
+	 * The index of the first card in the data of a RESULT message.
+	 */
+	public static final int CARDS = 2;
+	/**
+	 * The number of bits of a card mask held by each int of a snapshot.
+	 */
+	public static final int HALF_MASK_BITS = 26;
+	// the indices of the fields of a snapshot
+	private static final int CURRENT_PLAYER = 0;
+	private static final int LAST_PLAYER = 1;
+	private static final int LAST_TYPE = 2;
+	private static final int HANDS = 3;
+	private static final int LAST_CARDS = HANDS + 2 * BigTwo.MAX_PLAYER_NUM;
+	private final BigTwoEngine engine = new BigTwoEngine();
+
+	/**
+	 * a method for starting a new game with the specified deck.
+	 *
+	 * @param deck the shuffled deck, as sent to the clients
+	 */
+	@Override
+	public void start(Deck deck) {
+		engine.start(deck);
+	}
+
+	/**
+	 * a method for checking a move given as the indices of the cards of the
+	 * player, as BigTwoEngine.checkMove() does on the clients, and applying it if
+	 * it is legal.
+	 *
+	 * @param playerID the index of the player
+	 * @param data     the indices of the cards chosen, or null to pass
+	 * @return the data of the RESULT message, or null if the move is not legal
+	 *         (including an empty array or an index outside the player's hand)
+	 */
+	@Override
+	public Object checkMove(int playerID, Object data) {
+		if (playerID < 0 || playerID >= BigTwo.MAX_PLAYER_NUM || (data != null && !(data instanceof int[])))
+			return null;
+		CardGamePlayer player = engine.getPlayerList().get(playerID);
+		int[] cardIdx = (int[]) data;
+		// play() would silently drop the indices outside the hand
+		if (cardIdx != null) {
+			if (cardIdx.length == 0)
+				return null;
+			for (int idx : cardIdx)
+				if (idx < 0 || idx >= player.getNumOfCards())
+					return null;
+		}
+		CardList cards = player.play(cardIdx);
+		long mask = cards == null ? 0L : cards.getMask();
+		if (cards != null && Long.bitCount(mask) != cards.size())
+			return null;
+		if (!engine.playCards(playerID, mask))
+			return null;
+		int[] result = new int[CARDS + Long.bitCount(mask)];
+		result[TYPE] = mask == 0 ? 0 : engine.getLastHand().getHandType().getCode();
+		result[NEXT_PLAYER] = engine.getCurrentPlayerIdx();
+		int n = CARDS;
+		for (long m = mask; m != 0; m &= m - 1)
+			result[n++] = Long.numberOfTrailingZeros(m);
+		return result;
+	}
+
+	/**
+	 * a method for describing the current game for a client that resumes it.
+	 *
+	 * @return the data of the SNAPSHOT message, or null if no game is in
+	 *         progress
+	 */
+	@Override
+	public Object getSnapshot() {
+		if (engine.endOfGame())
+			return null;
+		Hand lastHand = engine.getLastHand();
+		long lastCards = lastHand == null ? 0L : lastHand.getMask();
+		int[] snapshot = new int[LAST_CARDS + Long.bitCount(lastCards)];
+		snapshot[CURRENT_PLAYER] = engine.getCurrentPlayerIdx();
+		snapshot[LAST_PLAYER] = lastHand == null ? -1 : engine.getPlayerList().indexOf(lastHand.getPlayer());
+		snapshot[LAST_TYPE] = lastHand == null ? 0 : lastHand.getHandType().getCode();
+		for (int i = 0; i < BigTwo.MAX_PLAYER_NUM; i++) {
+			long mask = engine.getPlayerList().get(i).getCardMask();
+			snapshot[HANDS + 2 * i] = (int) (mask & ((1L << HALF_MASK_BITS) - 1));
+			snapshot[HANDS + 2 * i + 1] = (int) (mask >>> HALF_MASK_BITS);
+		}
+		int n = LAST_CARDS;
+		for (long m = lastCards; m != 0; m &= m - 1)
+			snapshot[n++] = Long.numberOfTrailingZeros(m);
+		return snapshot;
+	}
+
+	/**
+	 * a method for stopping the current game.
+	 */
+	@Override
+	public void stop() {
+		engine.sharpCut();
+	}
+
+	/**
+	 * a method for retrieving the CardSet mask of the cards in the data of a
+	 * RESULT message.
+	 *
+	 * @param result the data of a RESULT message
+	 * @return the CardSet mask of the cards played, 0 for a pass
+	 */
+	public static long getCards(int[] result) {
+		return getCards(result, CARDS);
+	}
+
+	/**
+	 * a method for applying the move described by the data of a RESULT message
+	 * on the specified engine, without checking it again.
+	 *
+	 * @param engine    the engine to apply the move on
+	 * @param playerIdx the index of the player who made the move
+	 * @param result    the data of a RESULT message
+	 * @return false if the result is not valid, e.g. if it is too short, holds a
+	 *         card index outside the deck or the same card twice, has an unknown
+	 *         hand type, or plays cards the player does not hold; the engine is
+	 *         then left unchanged
+	 */
+	public static boolean apply(BigTwoEngine engine, int playerIdx, int[] result) {
+		if (result == null || result.length < CARDS || !isCards(result, CARDS))
+			return false;
+		int nextPlayer = result[NEXT_PLAYER];
+		HandType type = HandType.fromCode(result[TYPE]);
+		long cards = getCards(result, CARDS);
+		if (playerIdx < 0 || playerIdx >= BigTwo.MAX_PLAYER_NUM || nextPlayer < 0
+				|| nextPlayer >= BigTwo.MAX_PLAYER_NUM || (cards != 0 && type == null))
+			return false;
+		if ((cards & ~engine.getPlayerList().get(playerIdx).getCardsInHand().getMask()) != 0)
+			return false;
+		engine.playCheckedCards(playerIdx, cards, type, nextPlayer);
+		return true;
+	}
+
+	/**
+	 * a method for resuming the game described by the data of a SNAPSHOT message
+	 * on the specified engine.
+	 *
+	 * @param engine   the engine to resume the game on
+	 * @param snapshot the data of a SNAPSHOT message
+	 * @return false if the snapshot is not valid, e.g. if it holds a card index
+	 *         outside the deck, the same card twice, or a last hand whose cards
+	 *         do not form a hand of its type; the engine is then left unchanged
+	 */
+	public static boolean restore(BigTwoEngine engine, int[] snapshot) {
+		if (snapshot.length < LAST_CARDS || !isCards(snapshot, LAST_CARDS))
+			return false;
+		int currentPlayer = snapshot[CURRENT_PLAYER];
+		int lastPlayer = snapshot[LAST_PLAYER];
+		HandType lastType = HandType.fromCode(snapshot[LAST_TYPE]);
+		long lastCards = getCards(snapshot, LAST_CARDS);
+		if (currentPlayer < 0 || currentPlayer >= BigTwo.MAX_PLAYER_NUM || lastPlayer < -1
+				|| lastPlayer >= BigTwo.MAX_PLAYER_NUM || (lastPlayer >= 0) != (lastType != null && lastCards != 0))
+			return false;
+		if (lastPlayer >= 0 && HandType.fromStrength(HandClassifier.classify(lastCards)) != lastType)
+			return false;
+		long[] hands = new long[BigTwo.MAX_PLAYER_NUM];
+		long seen = lastCards; // every card is in at most one hand
+		for (int i = 0; i < hands.length; i++) {
+			int low = snapshot[HANDS + 2 * i];
+			if ((low >>> HALF_MASK_BITS) != 0)
+				return false;
+			hands[i] = low | ((long) snapshot[HANDS + 2 * i + 1] << HALF_MASK_BITS);
+			if ((hands[i] & ~CardSet.FULL_DECK) != 0 || (hands[i] & seen) != 0)
+				return false;
+			seen |= hands[i];
+		}
+		engine.restore(hands, lastPlayer, lastCards, lastType, currentPlayer);
+		return true;
+	}
+
+	/**
+	 * a method for checking that the values from the specified position of an
+	 * array are distinct CardSet indices.
+	 */
+	private static boolean isCards(int[] data, int from) {
+		long mask = 0;
+		for (int i = from; i < data.length; i++) {
+			if (data[i] < 0 || data[i] >= CardSet.DECK_SIZE || (mask & (1L << data[i])) != 0)
+				return false;
+			mask |= 1L << data[i];
+		}
+		return true;
+	}
+
+	/**
+	 * a method for retrieving the CardSet mask of the card indices from the
+	 * specified position of an array.
+	 */
+	private static long getCards(int[] data, int from) {
+		long mask = 0;
+		for (int i = from; i < data.length; i++)
+			mask |= 1L << data[i];
+		return mask;
+	}
+}
@@ -1,3 +1,7 @@
+import java.awt.GraphicsEnvironment;
+import java.io.File;
+import java.io.IOException;
+
 /**
  * This class is used to model a Big Two card game server.
  * @author Kenneth Wong
@@ -9,6 +13,18 @@ public class BigTwoServer extends CardGameServer {
 	 */
 	public BigTwoServer() {
 		super("Big Two Server", 4);
+		// the referees look five-card hands up in the table, so it is mapped
+		// (or generated) here rather than under the lock of a table
+		FiveCardTable.getInstance();
+	}
+
+	/**
+	 * Creates and returns an instance of the BigTwoServer class.
+	 * @param headless true to run the server without a window
+	 */
+	public BigTwoServer(boolean headless) {
+		super("Big Two Server", 4, headless);
+		FiveCardTable.getInstance();
 	}
 	
 	/**
@@ -19,19 +35,82 @@ public class BigTwoServer extends CardGameServer {
 		return new BigTwoDeck(); 
 	}
 	
+	/**
+	 * Creates and returns an instance of the BigTwoReferee class, so that the
+	 * server checks the moves of every table.
+	 * @return an instance of the BigTwoReferee class
+	 */
+	public GameReferee createReferee() {
+		return new BigTwoReferee();
+	}
+	
 	/**
 	 * main() method for starting the server.
 	 * 
 	 * @param args
-	 *            the port to be used by the server. The default port 5000 will
-	 *            be used if no arguments has been supplied
+	 *            the port to be used by the server. The default port 2396 will
+	 *            be used if no arguments has been supplied. The port may be
+	 *            followed by "nio [loops]" to run the server in non-blocking
+	 *            mode with the given number of event loops (default the number
+	 *            of processors, at most 4), by "tables n" to host up to n
+	 *            tables (default 1), by "queue n" to queue up to n messages
+	 *            per client (default 256), and by "overflow policy" with a
+	 *            policy of OverflowPolicy, e.g. "overflow disconnect", by
+	 *            "journal dir" to keep a journal of the tables in the
+	 *            directory dir and rebuild them from it on start, and by
+	 *            "hold s" to hold the seat of a player who loses the
+	 *            connection for s seconds (default 60, 0 for none), by
+	 *            "metrics s" to log the metrics of the outbound queues every s
+	 *            seconds while messages are queued (default 60, 0 for none), by
+	 *            "headless" to run without a window, logging to the standard
+	 *            output, and by "log dir" to keep the log in rotating files
+	 *            in the directory dir
 	 */
 	public static void main(String[] args) {
-		BigTwoServer server = new BigTwoServer();
-		if (args.length > 0) {
-			server.start(Integer.parseInt(args[0]));
+		boolean headless = GraphicsEnvironment.isHeadless();
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("headless"))
+				headless = true;
+		}
+		BigTwoServer server = new BigTwoServer(headless);
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 2396;
+		int numOfEventLoops = 0; // blocking mode
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("nio")) {
+				numOfEventLoops = Math.min(4,
+						Runtime.getRuntime().availableProcessors());
+				if (i + 1 < args.length && args[i + 1].matches("\\d+"))
+					numOfEventLoops = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("tables") && i + 1 < args.length) {
+				server.setMaxNumOfTables(Integer.parseInt(args[++i]));
+			} else if (args[i].equals("queue") && i + 1 < args.length) {
+				server.setQueueCapacity(Integer.parseInt(args[++i]));
+			} else if (args[i].equals("overflow") && i + 1 < args.length) {
+				server.setOverflowPolicy(OverflowPolicy.parse(args[++i]));
+			} else if (args[i].equals("hold") && i + 1 < args.length) {
+				server.setSeatHoldTime(1000L * Integer.parseInt(args[++i]));
+			} else if (args[i].equals("metrics") && i + 1 < args.length) {
+				server.setMetricsInterval(1000L * Integer.parseInt(args[++i]));
+			} else if (args[i].equals("log") && i + 1 < args.length) {
+				try {
+					server.setLogDirectory(new File(args[++i]));
+				} catch (IOException ex) {
+					server.println("Error in opening the log: "
+							+ ex.getMessage());
+				}
+			} else if (args[i].equals("journal") && i + 1 < args.length) {
+				try {
+					server.setJournalDirectory(new File(args[++i]));
+				} catch (IOException ex) {
+					server.println("Error in opening the journal: "
+							+ ex.getMessage());
+				}
+			}
+		}
+		if (numOfEventLoops > 0) {
+			server.startNonBlocking(port, numOfEventLoops);
 		} else {
-			server.start(2396);
+			server.start(port);
 		}
 	} // main
 }
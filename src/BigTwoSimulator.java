@@ -0,0 +1,289 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The BigTwoSimulator class is used to play a large number of complete Big Two
+ * games between bots, spread over all cores with fork/join. Each game is
+ * played by a BigTwoEngine, so the simulator exercises the same rules as the
+ * GUI and needs no display or network. Every game is dealt by DealGenerator
+ * from its own seed, derived from the seed of the simulation and the number of
+ * the game, so the results do not depend on how the games are split among
+ * threads and any game can be replayed from its deal seed.
+ */
+public class BigTwoSimulator {
+	// the number of games a task plays itself instead of splitting further
+	private static final long GAMES_PER_TASK = 256;
+	// a safety net against bots that never finish a game
+	private static final int MAX_MOVES_PER_GAME = 1000;
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	private final BigTwoBot[] bots;
+	private final long seed;
+
+	/**
+	 * a constructor for creating a simulator.
+	 *
+	 * @param bots the bot playing each of the 4 seats
+	 * @param seed the seed from which the deals of all games are derived
+	 */
+	public BigTwoSimulator(BigTwoBot[] bots, long seed) {
+		if (bots.length != BigTwo.MAX_PLAYER_NUM)
+			throw new IllegalArgumentException("A Big Two game needs " + BigTwo.MAX_PLAYER_NUM + " bots.");
+		this.bots = bots.clone();
+		this.seed = seed;
+	}
+
+	/**
+	 * a method for playing the specified number of games in the common fork/join
+	 * pool.
+	 *
+	 * @param games the number of games to play
+	 * @return the statistics of the games
+	 */
+	public Result run(long games) {
+		return run(games, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * a method for playing the specified number of games in the specified pool.
+	 *
+	 * @param games the number of games to play
+	 * @param pool  the pool running the games
+	 * @return the statistics of the games
+	 */
+	public Result run(long games, ForkJoinPool pool) {
+		long start = System.nanoTime();
+		Result result = pool.invoke(new SimulationTask(0, games));
+		result.nanos = System.nanoTime() - start;
+		return result;
+	}
+
+	/**
+	 * a method for playing one game.
+	 *
+	 * @param gameNo the number of the game, which selects its deal
+	 * @param engine the engine to play the game on
+	 * @param hands  array of 4 receiving the deal
+	 * @param result the statistics to add the game to
+	 */
+	private void playGame(long gameNo, BigTwoEngine engine, long[] hands, Result result) {
+		long dealSeed = seed + gameNo * GOLDEN_GAMMA;
+		DealGenerator.deal(dealSeed, hands);
+		engine.start(hands);
+		// the bots draw from a stream independent of the deal
+		SplittableRandom random = new SplittableRandom(dealSeed).split();
+		int moves = 0;
+		while (!engine.endOfGame()) {
+			if (++moves > MAX_MOVES_PER_GAME) {
+				result.aborted++;
+				return;
+			}
+			int playerIdx = engine.getCurrentPlayerIdx();
+			long cards = bots[playerIdx].chooseMove(engine, playerIdx, random);
+			if (!engine.playCards(playerIdx, cards)) {
+				result.illegalMoves++;
+				// fall back to a move that is always legal
+				CardGamePlayer player = engine.getPlayerList().get(playerIdx);
+				cards = MoveGenerator.canPass(player, engine.getHandsOnTable()) ? 0L
+						: Long.lowestOneBit(player.getCardMask());
+				engine.playCards(playerIdx, cards);
+			}
+		}
+		result.games++;
+		result.moves += moves;
+		for (int i = 0; i < BigTwo.MAX_PLAYER_NUM; i++) {
+			int left = engine.getPlayerList().get(i).getNumOfCards();
+			if (left == 0)
+				result.wins[i]++;
+			else
+				result.cardsLeft[left]++;
+		}
+	}
+
+	/**
+	 * This inner class is used for playing a range of games, splitting the range
+	 * in halves until it is small enough.
+	 */
+	private class SimulationTask extends RecursiveTask<Result> {
+		private static final long serialVersionUID = 1L;
+		private final long from; // number of the first game
+		private final long to; // number of the game after the last one
+
+		public SimulationTask(long from, long to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Result compute() {
+			if (to - from <= GAMES_PER_TASK) {
+				Result result = new Result();
+				BigTwoEngine engine = new BigTwoEngine();
+				for (int i = 0; i < BigTwo.MAX_PLAYER_NUM; i++)
+					engine.getPlayerList().get(i).setName(bots[i].getName());
+				long[] hands = new long[BigTwo.MAX_PLAYER_NUM];
+				for (long gameNo = from; gameNo < to; gameNo++)
+					playGame(gameNo, engine, hands, result);
+				return result;
+			}
+			long mid = (from + to) >>> 1;
+			SimulationTask left = new SimulationTask(from, mid);
+			left.fork();
+			Result result = new SimulationTask(mid, to).compute();
+			result.merge(left.join());
+			return result;
+		}
+	}
+
+	/**
+	 * This class is used to hold the statistics of a simulation.
+	 */
+	public static class Result {
+		private long games = 0;
+		private long moves = 0;
+		private long aborted = 0;
+		private long illegalMoves = 0;
+		private long nanos = 0;
+		private long[] wins = new long[BigTwo.MAX_PLAYER_NUM];
+		// cardsLeft[n] = number of times a losing player ended with n cards
+		private long[] cardsLeft = new long[BigTwo.MAX_CARD_NUM + 1];
+
+		/**
+		 * a method for adding the statistics of another result to this one.
+		 *
+		 * @param other result to add
+		 */
+		public void merge(Result other) {
+			games += other.games;
+			moves += other.moves;
+			aborted += other.aborted;
+			illegalMoves += other.illegalMoves;
+			for (int i = 0; i < wins.length; i++)
+				wins[i] += other.wins[i];
+			for (int i = 0; i < cardsLeft.length; i++)
+				cardsLeft[i] += other.cardsLeft[i];
+		}
+
+		/**
+		 * a method for getting the number of completed games.
+		 *
+		 * @return the number of completed games
+		 */
+		public long getGames() {
+			return games;
+		}
+
+		/**
+		 * a method for getting the number of games won by the specified seat.
+		 *
+		 * @param seat index of the seat
+		 * @return the number of games won
+		 */
+		public long getWins(int seat) {
+			return wins[seat];
+		}
+
+		/**
+		 * a method for getting how often a losing player ended with the specified
+		 * number of cards.
+		 *
+		 * @param n number of cards left
+		 * @return the number of losing players with n cards left
+		 */
+		public long getCardsLeft(int n) {
+			return cardsLeft[n];
+		}
+
+		/**
+		 * a method for getting the number of completed games per second.
+		 *
+		 * @return the throughput of the simulation
+		 */
+		public double getGamesPerSecond() {
+			return nanos == 0 ? 0 : games * 1e9 / nanos;
+		}
+
+		/**
+		 * a method for building a report of this result.
+		 *
+		 * @param bots the bot playing each seat
+		 * @return a multi-line report
+		 */
+		public String report(BigTwoBot[] bots) {
+			StringBuilder sb = new StringBuilder();
+			sb.append(String.format("%d games in %.2f s: %.0f games/s, %.1f moves/game%n", games, nanos / 1e9,
+					getGamesPerSecond(), games == 0 ? 0.0 : (double) moves / games));
+			if (aborted > 0 || illegalMoves > 0)
+				sb.append(String.format("%d games aborted, %d illegal moves%n", aborted, illegalMoves));
+			sb.append(String.format("Win rate per seat:%n"));
+			Map<String, long[]> byPolicy = new LinkedHashMap<String, long[]>();
+			for (int i = 0; i < wins.length; i++) {
+				sb.append(String.format("  seat %d (%s): %.2f%%%n", i, bots[i].getName(), percent(wins[i], games)));
+				long[] policy = byPolicy.get(bots[i].getName());
+				if (policy == null) {
+					policy = new long[2];
+					byPolicy.put(bots[i].getName(), policy);
+				}
+				policy[0] += wins[i];
+				policy[1] += games;
+			}
+			sb.append(String.format("Win rate per policy (per seat played):%n"));
+			for (Map.Entry<String, long[]> entry : byPolicy.entrySet())
+				sb.append(String.format("  %s: %.2f%%%n", entry.getKey(),
+						percent(entry.getValue()[0], entry.getValue()[1])));
+			sb.append(String.format("Cards left by losing players:%n"));
+			long losers = 0;
+			long total = 0;
+			for (int n = 1; n < cardsLeft.length; n++) {
+				losers += cardsLeft[n];
+				total += n * cardsLeft[n];
+			}
+			for (int n = 1; n < cardsLeft.length; n++)
+				sb.append(String.format("  %2d: %6.2f%%%n", n, percent(cardsLeft[n], losers)));
+			sb.append(String.format("  mean: %.2f%n", losers == 0 ? 0.0 : (double) total / losers));
+			return sb.toString();
+		}
+
+		private static double percent(long part, long whole) {
+			return whole == 0 ? 0.0 : 100.0 * part / whole;
+		}
+	}
+
+	/**
+	 * a method for creating the bot with the specified name.
+	 *
+	 * @param name "random" or "greedy"
+	 * @return the bot with the name
+	 */
+	public static BigTwoBot createBot(String name) {
+		if (name.equals("random"))
+			return new RandomBot();
+		if (name.equals("greedy"))
+			return new GreedyBot();
+		throw new IllegalArgumentException("Unknown bot: " + name);
+	}
+
+	/**
+	 * main() method for running a simulation.
+	 *
+	 * @param args the number of games (default 100000), the seed (default 0) and
+	 *             the bots of the 4 seats as a comma-separated list (default
+	 *             "greedy,random,greedy,random")
+	 */
+	public static void main(String[] args) {
+		long games = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+		String[] names = (args.length > 2 ? args[2] : "greedy,random,greedy,random").split(",");
+		BigTwoBot[] bots = new BigTwoBot[BigTwo.MAX_PLAYER_NUM];
+		for (int i = 0; i < bots.length; i++)
+			bots[i] = createBot(names[i % names.length].trim());
+		BigTwoSimulator simulator = new BigTwoSimulator(bots, seed);
+		// a short run first so that the measured run is not dominated by JIT warm-up
+		simulator.run(Math.min(games, 10000));
+		Result result = simulator.run(games);
+		System.out.println("Parallelism: " + ForkJoinPool.commonPool().getParallelism());
+		System.out.print(result.report(bots));
+	}
+}
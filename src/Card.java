@@ -10,6 +10,13 @@ public class Card implements Comparable<Card>, Serializable {
 	static boolean SUPPORT_COLOR = false;
 	private static final char[] SUITS = { '\u2666', '\u2663', '\u2665', '\u2660' }; // {Diamond, Club, Heart, Spade}
 	private static final char[] RANKS = { 'A', '2', '3', '4', '5', '6', '7', '8', '9', '0', 'J', 'Q', 'K' };
+	private static final Card[] CARDS = new Card[52]; // canonical cards, indexed by hashCode()
+
+	static {
+		for (int i = 0; i < CARDS.length; i++) {
+			CARDS[i] = new Card(i / 13, i % 13);
+		}
+	}
 
 	protected final int suit; // 0 - 3
 	protected final int rank; // 0 - 12
@@ -30,6 +37,30 @@ public class Card implements Comparable<Card>, Serializable {
 		this.rank = rank;
 	}
 
+	/**
+	 * Returns the canonical instance of the card with the specified suit and
+	 * rank. Every call with the same suit and rank returns the same object.
+	 * 
+	 * @param suit an int value between 0 and 3 representing the suit of a card
+	 * @param rank an int value between 0 and 12 representing the rank of a card
+	 * @return the canonical card with the specified suit and rank
+	 */
+	public static Card valueOf(int suit, int rank) {
+		return CARDS[suit * 13 + rank];
+	}
+
+	/**
+	 * Replaces a deserialized card with the canonical instance, so that cards
+	 * received over the network are shared like locally created ones. Subclasses
+	 * with their own canonical instances override this method.
+	 * 
+	 * @return the canonical card, or this card for subclasses that do not
+	 *         override this method
+	 */
+	protected Object readResolve() {
+		return getClass() == Card.class ? valueOf(suit, rank) : this;
+	}
+
 	/**
 	 * Returns the suit of a card.
 	 * 
@@ -95,15 +126,19 @@ public class Card implements Comparable<Card>, Serializable {
 	 *         false otherwise
 	 */
 	public boolean equals(Object card) {
-		return (this.rank == ((Card) card).getRank() && suit == ((Card) card).getSuit());
+		if (this == card) {
+			return true;
+		}
+		return card instanceof Card && this.rank == ((Card) card).getRank() && suit == ((Card) card).getSuit();
 	}
 
 	/**
-	 * Returns a hash code value for the card.
+	 * Returns a hash code value for the card. The hash code is unique for each of
+	 * the 52 cards, so it can also be used as an index between 0 and 51.
 	 * 
-	 * @return a hash code value for the card
+	 * @return a hash code value for the card, i.e. suit * 13 + rank
 	 */
 	public int hashCode() {
-		return rank;
+		return suit * 13 + rank;
 	}
 }
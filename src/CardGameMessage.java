@@ -46,8 +46,9 @@ public class CardGameMessage extends GameMessage {
 	public static final int START = 5;
 	/**
 	 * Sent by a client when the local player makes a move. The server will broadcast this message upon
-	 * receiving it. In this message, playerID specifies the player who makes the move, and data is a
-	 * reference to an array of int specifying the indices of the cards being played.
+	 * receiving it, unless it checks the moves itself (see RESULT). In this message, playerID specifies
+	 * the player who makes the move, and data is a reference to an array of int specifying the indices
+	 * of the cards being played.
 	 */
 	public static final int MOVE = 6;
 	/**
@@ -57,6 +58,81 @@ public class CardGameMessage extends GameMessage {
 	 * sent this chat message, and data is a reference to a string containing a formated chat message.
 	 */
 	public static final int MSG = 7;
+	/**
+	 * Sent by a client to the server to ask for the tables with free seats. The
+	 * server replies with this message type. In the message sent by a client,
+	 * playerID is -1 and data is simply null (not being used). In the reply,
+	 * playerID is -1 and data is a reference to an array of int holding the id
+	 * and the number of players of each table, one pair after another.
+	 */
+	public static final int TABLES = 8;
+	/**
+	 * Sent by a client to the server to move to another table. In this message,
+	 * playerID specifies the id of the table, or -1 for a new table, and data is
+	 * simply null (not being used). The client leaves its current table and
+	 * receives a PLAYER_LIST message of the new table; if it cannot move, it
+	 * stays and receives a MSG message explaining why.
+	 */
+	public static final int JOIN_TABLE = 9;
+	/**
+	 * Broadcast by a server that checks the moves (see GameReferee) instead
+	 * of a legal MOVE message. In this message, playerID specifies the player
+	 * who made the move, and data is a reference to an array of int describing
+	 * the move as applied by the server; for Big Two, the type code of the
+	 * hand (0 for a pass), the next player and the CardSet indices of the cards
+	 * played (see BigTwoReferee).
+	 */
+	public static final int RESULT = 10;
+	/**
+	 * Sent by a server that checks the moves to the client whose MOVE message
+	 * is not legal; the other clients are not told. In this message, playerID
+	 * specifies the player who made the move, and data is a reference to the
+	 * array of int of the rejected MOVE message.
+	 */
+	public static final int ILLEGAL = 11;
+	/**
+	 * Sent by the server to a client whose player has joined a table. In this
+	 * message, playerID specifies the player, and data is a string holding the
+	 * session token of the player, with which a client that loses its
+	 * connection gets the seat back (see RESUME). A new token is sent each
+	 * time the client joins or resumes. In reply to a RESUME message that
+	 * fails, e.g. because the seat has been released, playerID is -1 and data
+	 * is simply null.
+	 */
+	public static final int SESSION = 12;
+	/**
+	 * Sent by a client to the server to take back the seat of a player after
+	 * its connection was lost, instead of joining as a new player. It may be
+	 * sent as soon as the connection is established, even if the server
+	 * replies FULL. In this message, playerID is -1 and data is a string
+	 * holding the last session token of the player. The server replies with
+	 * a PLAYER_LIST, a SESSION and a SNAPSHOT message, or with a SESSION
+	 * message whose playerID is -1 if the seat is no longer held.
+	 */
+	public static final int RESUME = 13;
+	/**
+	 * Sent by the server to a client that has resumed its seat (see RESUME).
+	 * In this message, playerID specifies the player, and data describes the
+	 * current game as kept by the referee of the table (see GameReferee), or
+	 * is simply null if no game is in progress; for Big Two, an array of int
+	 * holding the cards of every player, the last hand on the table and the
+	 * current player (see BigTwoReferee).
+	 */
+	public static final int SNAPSHOT = 14;
+	/**
+	 * Sent by a client to the server, as its first message, to tell which
+	 * version of the protocol it speaks. In this message, playerID specifies
+	 * the version (see PROTOCOL_VERSION), and data is simply null. A server
+	 * that checks the moves sends RESULT and ILLEGAL messages only to clients
+	 * of version 1 or later; a classic client, which never sends PROTOCOL, is
+	 * relayed the MOVE messages instead and checks them itself.
+	 */
+	public static final int PROTOCOL = 15;
+	/**
+	 * The version of the protocol spoken by this code: 1 for the clients that
+	 * apply RESULT and ILLEGAL messages and resume their seats with RESUME.
+	 */
+	public static final int PROTOCOL_VERSION = 1;
 
 	/**
 	 * Creates and returns an instance of CardGameMessage.
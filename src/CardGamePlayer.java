@@ -60,16 +60,23 @@ public class CardGamePlayer {
 	 * @param cards the list of cards to be removed from this player
 	 */
 	public void removeCards(CardList cards) {
-		for (int i = 0; i < cards.size(); i++) {
-			cardsInHand.removeCard(cards.getCard(i));
-		}
+		cardsInHand.removeCards(cards.getMask());
+	}
+
+	/**
+	 * Removes the set of cards from this player, if they are held by this player.
+	 * 
+	 * @param cards the set of cards to be removed from this player
+	 */
+	public void removeCards(CardSet cards) {
+		cardsInHand.removeCards(cards.getMask());
 	}
 
 	/**
 	 * Removes all cards from this player.
 	 */
 	public void removeAllCards() {
-		cardsInHand = new CardList();
+		cardsInHand.removeAllCards();
 	}
 
 	/**
@@ -97,6 +104,15 @@ public class CardGamePlayer {
 		return cardsInHand;
 	}
 
+	/**
+	 * Returns the cards held by this player as a CardSet mask.
+	 * 
+	 * @return a mask in which each set bit represents a card held by this player
+	 */
+	public long getCardMask() {
+		return cardsInHand.getMask();
+	}
+
 	/**
 	 * Returns the list of cards played by this player.
 	 * 
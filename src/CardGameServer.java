@@ -1,20 +1,47 @@
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
+import java.awt.GraphicsEnvironment;
+import java.io.File;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-
-import javax.swing.JFrame;
-import javax.swing.JMenu;
-import javax.swing.JMenuBar;
-import javax.swing.JMenuItem;
-import javax.swing.JScrollPane;
-import javax.swing.JTextArea;
-import javax.swing.ScrollPaneConstants;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
 
 /**
- * This class is used to model a card game server.
+ * This class is used to model a card game server. The server either serves
+ * each client with its own thread and blocking streams (start()), or serves all
+ * clients with a few non-blocking event loops (startNonBlocking()).
+ * <p>
+ * The server is a lobby of up to maxNumOfTables tables (see CardGameTable),
+ * each playing its own games. A new client is seated at the first table with
+ * a free seat, and a new table is opened when all tables are full. A client
+ * can ask for the tables with free seats (TABLES) and move to another table
+ * or a new one (JOIN_TABLE).
+ * <p>
+ * Messages to a client wait in a bounded OutboundQueue of the connection and
+ * are written by the writer thread of the connection (blocking mode) or by
+ * its event loop, so a slow client cannot stall its table. What happens when
+ * a queue overflows is set with setOverflowPolicy().
+ * <p>
+ * A player whose connection is lost keeps his/her seat for the seat hold time
+ * (setSeatHoldTime()), and a client that comes back within that time with the
+ * session token of the player (RESUME) gets the seat back and a snapshot of
+ * the game. With a journal directory (setJournalDirectory()), every table
+ * keeps a journal of its game, and the server rebuilds the live tables from
+ * the journal when it starts, holding the seats of their players.
+ * <p>
+ * The messages of the server go to its ServerLog, which never blocks the
+ * thread logging them. A headless server creates no window and logs to the
+ * standard output; otherwise a ServerConsole shows the log. Either way the log
+ * can also be kept in rotating files (setLogDirectory()).
  * 
  * @author Kenneth Wong
  *
@@ -26,25 +53,50 @@ public class CardGameServer {
 	private String serverName;
 	// The maximum number of players in a card game
 	private final int maxNumOfPlayers;
-	// Array for holding sockets of the clients
-	private Socket[] clientSockets;
-	// Array for holding ObjectOutputStreams of the clients
-	private ObjectOutputStream[] clientOutputStreams;
-	// Array for holding player names of the clients
-	private String[] clientNames;
-	// Array for holding ready states of the clients
-	private boolean[] clientReadyStates;
-	// number of current players
-	private int numOfPlayers = 0;
-	// the main frame of the server
-	private JFrame frame = null;
-	// text area for displaying server states
-	private JTextArea textArea = null;
+	// The maximum number of tables hosted by this server
+	private int maxNumOfTables = 1;
+	// the maximum number of tables listed in a TABLES message
+	private static final int MAX_LISTED_TABLES = 100;
+	// the tables of this server by id, guarded by itself
+	private final Map<Integer, CardGameTable> tables = new LinkedHashMap<Integer, CardGameTable>();
+	// the id of the next table to be opened
+	private int nextTableId = 0;
+	// the default capacity of the outbound queue of a connection
+	private static final int DEFAULT_QUEUE_CAPACITY = 256;
+	// the capacity of the outbound queue of each new connection, in messages
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+	// what to do with a message for a full outbound queue
+	private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_CHAT;
+	// the metrics of the outbound queues
+	private final QueueMetrics queueMetrics = new QueueMetrics();
+	// the default time between two reports of the queue metrics in the log
+	private static final long DEFAULT_METRICS_INTERVAL = 60000;
+	// the time between two reports of the queue metrics in ms, 0 for none
+	private long metricsInterval = DEFAULT_METRICS_INTERVAL;
+	// the number of messages queued at the last report of the metrics
+	private long reportedQueued = 0;
+	// the time a client told that the server is full has to resume a seat
+	private static final long FULL_CLOSE_DELAY = 1000;
+	// the default time the seat of a player is held for him/her to return
+	private static final long DEFAULT_SEAT_HOLD_TIME = 60000;
+	// the time the seat of a player is held for him/her to return, in ms
+	private long seatHoldTime = DEFAULT_SEAT_HOLD_TIME;
+	// the journal of the tables, or null
+	private GameJournal journal = null;
+	// the timer running the delayed tasks of the server, created on first use
+	private Timer timer = null;
+	// the log of the server
+	private final ServerLog log = new ServerLog(ServerLog.DEFAULT_CAPACITY);
+	// the console showing the log, or null if the server is headless
+	private ServerConsole console = null;
 	// a boolean indicating if the server is up
 	private boolean serverUp = false;
+	// the event loops of the non-blocking mode, or null
+	private ServerEventLoop[] eventLoops = null;
 
 	/**
-	 * Creates and returns an instance of the BigTwoServer class.
+	 * Creates and returns an instance of the BigTwoServer class. The server
+	 * is headless if the environment has no display.
 	 * 
 	 * @param serverName
 	 *            the name of this card game server
@@ -52,50 +104,276 @@ public class CardGameServer {
 	 *            the maximum number of players in a card game
 	 */
 	public CardGameServer(String serverName, int maxNumOfPlayers) {
+		this(serverName, maxNumOfPlayers, GraphicsEnvironment.isHeadless());
+	}
+
+	/**
+	 * Creates and returns an instance of the BigTwoServer class.
+	 * 
+	 * @param serverName
+	 *            the name of this card game server
+	 * @param maxNumOfPlayers
+	 *            the maximum number of players in a card game
+	 * @param headless
+	 *            true to log to the standard output without initializing
+	 *            AWT, false to show the log in a ServerConsole
+	 */
+	public CardGameServer(String serverName, int maxNumOfPlayers,
+			boolean headless) {
 		this.serverName = serverName;
 		this.maxNumOfPlayers = maxNumOfPlayers;
 
-		// creates arrays for holding client sockets, output streams, player
-		// names, and ready states
-		clientSockets = new Socket[maxNumOfPlayers];
-		clientOutputStreams = new ObjectOutputStream[maxNumOfPlayers];
-		clientNames = new String[maxNumOfPlayers];
-		clientReadyStates = new boolean[maxNumOfPlayers];
+		if (headless) {
+			log.setOutput(System.out);
+		} else {
+			console = new ServerConsole(this, serverName);
+			log.addListener(console);
+		}
+		log.start();
+	}
+
+	/**
+	 * Returns the log of this server.
+	 * 
+	 * @return the log
+	 */
+	public ServerLog getLog() {
+		return log;
+	}
+
+	/**
+	 * Makes the server keep its log in rotating files in the specified
+	 * directory.
+	 * 
+	 * @param directory
+	 *            the directory of the log files
+	 * @throws IOException
+	 *             if the directory cannot be created
+	 */
+	public void setLogDirectory(File directory) throws IOException {
+		log.setDirectory(directory);
+	}
+
+	/**
+	 * Returns true if the server has no console window.
+	 * 
+	 * @return true if the server is headless
+	 */
+	public boolean isHeadless() {
+		return console == null;
+	}
+
+	/**
+	 * Sets the maximum number of tables hosted by this server. With the
+	 * default of 1 the server hosts a single game and a client arriving at a
+	 * full table gets a FULL message.
+	 * 
+	 * @param maxNumOfTables
+	 *            the maximum number of tables
+	 */
+	public void setMaxNumOfTables(int maxNumOfTables) {
+		this.maxNumOfTables = Math.max(1, maxNumOfTables);
+	}
+
+	/**
+	 * Returns the maximum number of tables hosted by this server.
+	 * 
+	 * @return the maximum number of tables
+	 */
+	public int getMaxNumOfTables() {
+		return maxNumOfTables;
+	}
+
+	/**
+	 * Sets the capacity of the outbound queue of each new connection.
+	 * 
+	 * @param queueCapacity
+	 *            the maximum number of messages waiting for a client
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = Math.max(1, queueCapacity);
+	}
+
+	/**
+	 * Returns the capacity of the outbound queue of each new connection.
+	 * 
+	 * @return the maximum number of messages waiting for a client
+	 */
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * Sets what the server does with a message for a client whose outbound
+	 * queue is full. Applies to new connections.
+	 * 
+	 * @param overflowPolicy
+	 *            the overflow policy
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * Returns what the server does with a message for a client whose outbound
+	 * queue is full.
+	 * 
+	 * @return the overflow policy
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * Returns the metrics of the outbound queues of this server.
+	 * 
+	 * @return the queue metrics
+	 */
+	public QueueMetrics getQueueMetrics() {
+		return queueMetrics;
+	}
+
+	/**
+	 * Sets how often the metrics of the outbound queues are written to the
+	 * log while messages are being queued. Must be called before the server
+	 * starts.
+	 * 
+	 * @param metricsInterval
+	 *            the time between two reports in milliseconds, 0 for none
+	 */
+	public void setMetricsInterval(long metricsInterval) {
+		this.metricsInterval = Math.max(0, metricsInterval);
+	}
+
+	/**
+	 * Returns how often the metrics of the outbound queues are written to the
+	 * log.
+	 * 
+	 * @return the time between two reports in milliseconds, 0 for none
+	 */
+	public long getMetricsInterval() {
+		return metricsInterval;
+	}
+
+	/**
+	 * Writes the metrics of the outbound queues to the log every
+	 * metricsInterval, skipping the reports of intervals in which no message
+	 * was queued, so that they can be followed without the console.
+	 */
+	private void reportMetrics() {
+		if (metricsInterval <= 0)
+			return;
+		schedule(metricsInterval, new Runnable() {
+			public void run() {
+				long queued = queueMetrics.getQueued();
+				if (queued != reportedQueued || queueMetrics.getDepth() != 0) {
+					reportedQueued = queued;
+					println(queueMetrics.toString());
+				}
+				reportMetrics();
+			}
+		});
+	}
+
+	/**
+	 * Sets the directory of the journal of the tables. Must be called before
+	 * the server starts, which then rebuilds the tables journaled there.
+	 * 
+	 * @param directory
+	 *            the directory of the journal, or null for no journal
+	 * @throws IOException
+	 *             if the directory cannot be created
+	 */
+	public void setJournalDirectory(File directory) throws IOException {
+		journal = directory == null ? null : new GameJournal(this, directory);
+	}
+
+	/**
+	 * Returns the journal of the tables of this server.
+	 * 
+	 * @return the journal, or null if the server keeps no journal
+	 */
+	public GameJournal getJournal() {
+		return journal;
+	}
+
+	/**
+	 * Sets how long the seat of a player who has lost the connection is held,
+	 * e.g. after the tables have been rebuilt from the journal. 0 releases the
+	 * seat at once.
+	 * 
+	 * @param seatHoldTime
+	 *            the time in milliseconds
+	 */
+	public void setSeatHoldTime(long seatHoldTime) {
+		this.seatHoldTime = Math.max(0, seatHoldTime);
+	}
+
+	/**
+	 * Returns how long the seat of a player who has not come back yet is held.
+	 * 
+	 * @return the time in milliseconds
+	 */
+	public long getSeatHoldTime() {
+		return seatHoldTime;
+	}
+
+	/**
+	 * Returns the journal of the specified table.
+	 * 
+	 * @param tableId
+	 *            the id of the table
+	 * @return the journal of the table, or null if the server keeps no
+	 *         journal
+	 */
+	TableJournal getTableJournal(int tableId) {
+		return journal == null ? null : journal.getTableJournal(tableId);
+	}
+
+	/**
+	 * Runs the specified task on the timer of the server after the specified
+	 * delay.
+	 * 
+	 * @param millis
+	 *            the delay in milliseconds
+	 * @param task
+	 *            the task to run
+	 */
+	synchronized void schedule(long millis, final Runnable task) {
+		if (timer == null)
+			timer = new Timer("server-timer", true);
+		timer.schedule(new TimerTask() {
+			public void run() {
+				try {
+					task.run();
+					ClientConnection.awaitRoom();
+				} catch (Exception ex) {
+					println("Error in a timer task: " + ex);
+					if (!silentMode) ex.printStackTrace();
+				}
+			}
+		}, millis);
+	}
 
-		buildGUI();
+	/**
+	 * Creates and returns an outbound queue for a new connection.
+	 * 
+	 * @return an outbound queue with the current capacity and policy
+	 */
+	OutboundQueue createOutboundQueue() {
+		return new OutboundQueue(queueCapacity, overflowPolicy, queueMetrics);
 	}
 
 	/**
-	 * Builds the GUI for the server
-	 */
-	private void buildGUI() {
-		// build a GUI
-		frame = new JFrame(serverName);
-		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-		textArea = new JTextArea(20, 40);
-		textArea.setEditable(false);
-		textArea.setLineWrap(true);
-		textArea.setWrapStyleWord(true);
-		JScrollPane scroller = new JScrollPane(textArea);
-		scroller.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED);
-		scroller.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
-		frame.add(scroller);
-
-		// build the menu bar
-		JMenuItem clearMenuItem = new JMenuItem("Clear console");
-		clearMenuItem.addActionListener(new ClearMenuItemListener());
-		JMenuItem quitMenuItem = new JMenuItem("Quit");
-		quitMenuItem.addActionListener(new QuitMenuItemListener());
-		JMenu menu = new JMenu("Option");
-		menu.add(clearMenuItem);
-		menu.add(quitMenuItem);
-		JMenuBar menuBar = new JMenuBar();
-		menuBar.add(menu);
-		frame.setJMenuBar(menuBar);
-
-		frame.pack();
-		frame.setVisible(true);
-	} // buildGUI
+	 * Returns the number of tables currently open.
+	 * 
+	 * @return the number of tables
+	 */
+	public int getNumOfTables() {
+		synchronized (tables) {
+			return tables.size();
+		}
+	}
 
 	/**
 	 * Starts the server at the specified port
@@ -104,6 +382,7 @@ public class CardGameServer {
 	 *            the specified port at which the server starts
 	 */
 	public void start(int port) {
+		recoverTables();
 		// start the server
 		try {
 			// creates a ServerScoket
@@ -111,10 +390,12 @@ public class CardGameServer {
 			println("Starts up the server at localhost:"
 					+ serverSocket.getLocalPort());
 			serverUp = true;
+			reportMetrics();
 			while (serverUp) {
 				// waits for clients to connect
 				Socket clientSocket = serverSocket.accept();
 				addConnection(clientSocket);
+				ClientConnection.awaitRoom();
 			} // while
 			serverSocket.close();
 		} catch (Exception ex) {
@@ -124,233 +405,396 @@ public class CardGameServer {
 	} // start
 
 	/**
-	 * Parses the incoming message from the specified client.
+	 * Starts the server at the specified port in non-blocking mode. The
+	 * specified number of event loops accept, read from and write to all the
+	 * connections, and the clients exchange messages as frames (see
+	 * FrameCodec). This method returns once the server is up.
 	 * 
-	 * @param clientSocket
-	 *            the socket connection to the specified client
-	 * @param message
-	 *            the message received from the specified client
+	 * @param port
+	 *            the specified port at which the server starts
+	 * @param numOfEventLoops
+	 *            the number of event loop threads
+	 */
+	public void startNonBlocking(int port, int numOfEventLoops) {
+		recoverTables();
+		try {
+			ServerSocketChannel serverChannel = ServerSocketChannel.open();
+			serverChannel.bind(new InetSocketAddress(port));
+			eventLoops = new ServerEventLoop[Math.max(1, numOfEventLoops)];
+			for (int i = 0; i < eventLoops.length; i++)
+				eventLoops[i] = new ServerEventLoop(this);
+			eventLoops[0].listen(serverChannel, eventLoops);
+			for (int i = 0; i < eventLoops.length; i++)
+				eventLoops[i].start("event-loop-" + i);
+			println("Starts up the server at localhost:"
+					+ serverChannel.socket().getLocalPort() + " with "
+					+ eventLoops.length + " event loops");
+			serverUp = true;
+			reportMetrics();
+		} catch (Exception ex) {
+			println("Error in starting up the server at localhost:" + port);
+			if (!silentMode) ex.printStackTrace();
+		}
+	} // startNonBlocking
+
+	/**
+	 * Rebuilds the tables that have a journal, e.g. after a crash, and holds
+	 * the seats of their players. A table nobody was seated at is dropped with
+	 * its journal.
 	 */
-	private synchronized void parseMessage(Socket clientSocket,
-			CardGameMessage message) {
-		// updates the playerID
-		for (int i = 0; i < maxNumOfPlayers; i++) {
-			if (clientSockets[i] == clientSocket) {
-				message.setPlayerID(i);
-				break;
+	private void recoverTables() {
+		if (journal == null)
+			return;
+		journal.start();
+		long start = System.nanoTime();
+		int n = 0;
+		synchronized (tables) {
+			for (int id : journal.getJournaledTables()) {
+				nextTableId = Math.max(nextTableId, id + 1);
+				CardGameTable table = new CardGameTable(this, id,
+						maxNumOfPlayers);
+				try {
+					table.recover();
+				} catch (Exception ex) {
+					println("Error in recovering table " + id
+							+ " from the journal");
+					if (!silentMode) ex.printStackTrace();
+					continue;
+				}
+				if (table.getNumOfPlayers() == 0) {
+					table.deleteJournal();
+					continue;
+				}
+				tables.put(id, table);
+				table.holdSeats();
+				n++;
 			}
 		}
+		println("Recovers " + n + " tables from the journal in "
+				+ (System.nanoTime() - start) / 1000000 + " ms");
+	} // recoverTables
 
-		// parses the message based on it type
+	/**
+	 * Releases the specified seat if it is still held with the specified
+	 * session token, closing the table if it is left empty.
+	 * 
+	 * @param table
+	 *            the table of the seat
+	 * @param i
+	 *            the seat
+	 * @param session
+	 *            the session token the seat was held with
+	 */
+	void releaseHeldSeat(CardGameTable table, int i, String session) {
+		if (table.releaseHeldSeat(i, session))
+			closeIfEmpty(table);
+	}
+
+	/**
+	 * Parses the incoming message from the specified client. Lobby messages
+	 * are handled by the server, and game messages by the table of the client.
+	 * 
+	 * @param clientSocket
+	 *            the connection to the specified client
+	 * @param message
+	 *            the message received from the specified client
+	 */
+	void parseMessage(ClientConnection clientSocket, CardGameMessage message) {
 		switch (message.getType()) {
-		case CardGameMessage.JOIN:
-			// adds a player to the game
-			addPlayer(clientSocket, (String) message.getData());
+		case CardGameMessage.TABLES:
+			// sends the tables with free seats to the client
+			sendTableList(clientSocket);
 			break;
-		case CardGameMessage.READY:
-			// marks the specified player as ready for a new game
-			setReadyState(clientSocket);
+		case CardGameMessage.JOIN_TABLE:
+			// moves the client to the specified table
+			joinTable(clientSocket, message.getPlayerID());
 			break;
-		case CardGameMessage.MOVE:
-			println("Broadcasts a \"MOVE\" message from "
-					+ clientSocket.getRemoteSocketAddress());
-			// broadcast the MOVE message to all clients
-			broadcastMessage(message);
+		case CardGameMessage.RESUME:
+			// gives the client the seat held with its session token
+			resume(clientSocket, message.getData());
 			break;
-		case CardGameMessage.MSG:
-			println("Broadcasts a user message from "
-					+ clientSocket.getRemoteSocketAddress());
-			// broadcast the user message to all clients
-			broadcastUserMessage(clientSocket, (String) message.getData());
+		case CardGameMessage.PROTOCOL:
+			// the client is sent the messages of its version from now on
+			clientSocket.protocolVersion = Math.max(0, message.getPlayerID());
 			break;
 		default:
-			println("Wrong message type: " + message.getType());
-			// invalid message
+			CardGameTable table = clientSocket.table;
+			if (table != null)
+				table.parseMessage(clientSocket, message);
 			break;
 		}
 	} // parseMessage
 
 	/**
-	 * Broadcasts the specified message to all clients.
+	 * Adds a new socket connection to the server
 	 * 
-	 * @param message
-	 *            the specified message to be broadcast to all clients
+	 * @param clientSocket
+	 *            the socket connection to be added to the server
 	 */
-	private synchronized void broadcastMessage(CardGameMessage message) {
-		if (numOfPlayers > 0) {
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] != null && clientOutputStreams[i] != null) {
-					try {
-						clientOutputStreams[i].writeObject(message);
-					} catch (Exception ex) {
-						println("Error in broadcasting a message to the client at "
-								+ clientSockets[i].getRemoteSocketAddress());
-						if (!silentMode) ex.printStackTrace();
-					}
-				}
-			}
+	private synchronized void addConnection(Socket clientSocket) {
+		StreamConnection connection;
+		try {
+			// creates an ObjectOutputStream for this client socket
+			connection = new StreamConnection(clientSocket);
+		} catch (Exception ex) {
+			println("Error in establishing a connection with a client at "
+					+ clientSocket.getRemoteSocketAddress());
+			if (!silentMode) ex.printStackTrace();
+			return;
 		}
-	} // broadcastMessage
+		// creates a thread for sending messages to this client
+		Thread writer = new Thread(connection);
+		writer.start();
+		addConnection(connection);
+		// creates a thread for receiving messages from this client, even if
+		// the server is full, as the client may resume a held seat
+		Thread t = new Thread(new ClientHandler(connection));
+		t.start();
+	} // addConnection
 
 	/**
-	 * Adds a new socket connection to the server
+	 * Adds a new connection to the server, seating it at the first table with
+	 * a free seat
 	 * 
 	 * @param clientSocket
-	 *            the socket connection to be added to the server
+	 *            the connection to be added to the server
+	 * @return true if the connection is added; false if the server is full
 	 */
-	private synchronized void addConnection(Socket clientSocket) {
-		// adds this connection to the server if the server is not full
-		if (numOfPlayers < maxNumOfPlayers) {
-			// locates the first empty slot for the new connection
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == null) {
-					try {
-						// creates an ObjectOutputStream for this client socket
-						ObjectOutputStream oostream = new ObjectOutputStream(
-								clientSocket.getOutputStream());
-
-						clientSockets[i] = clientSocket;
-						clientOutputStreams[i] = oostream;
-						clientNames[i] = null;
-						clientReadyStates[i] = false;
-						numOfPlayers++;
-						println("Establishes a connection with a client at "
-								+ clientSocket.getRemoteSocketAddress());
+	boolean addConnection(final ClientConnection clientSocket) {
+		if (seat(clientSocket))
+			return true;
 
-						// creates a thread for receiving messages from this
-						// client
-						Thread t = new Thread(new ClientHandler(clientSocket));
-						t.start();
+		// Max. no. of players reached
+		println("Server is full: cannot establish a connection with a client at "
+				+ clientSocket.getRemoteSocketAddress());
 
-						// sends the player list to the new player
-						oostream.writeObject(new CardGameMessage(
-								CardGameMessage.PLAYER_LIST, i, clientNames));
-					} catch (Exception ex) {
-						println("Error in establishing a connection with a client at "
-								+ clientSocket.getRemoteSocketAddress());
-						if (!silentMode) ex.printStackTrace();
-					}
-					break;
-				}
-			} // for
-		} else {
-			// Max. no. of players reached
-			println("Server is full: cannot establish a connection with a client at "
+		// sends a FULL message to this client, waits for 1000 milliseconds and
+		// closes the connection unless the client has resumed a held seat
+		try {
+			clientSocket.sendMessage(new CardGameMessage(CardGameMessage.FULL,
+					-1, null));
+		} catch (Exception ex) {
+			println("Error in sending a FULL message to the client at "
 					+ clientSocket.getRemoteSocketAddress());
-
-			// creates a thread for sending a FULL message to this client, waits
-			// for 1000 milliseconds and closes the socket
-			Thread t = new Thread(new ClientHandler2(clientSocket));
-			t.start();
+			if (!silentMode) ex.printStackTrace();
 		}
-
+		schedule(FULL_CLOSE_DELAY, new Runnable() {
+			public void run() {
+				if (clientSocket.table == null)
+					clientSocket.closeAfter(0);
+			}
+		});
+		return false;
 	} // addConnection
 
 	/**
 	 * Removes a connection from the server (possibly due to connection loss).
+	 * The seat of its player is held for the seat hold time.
 	 * 
 	 * @param clientSocket
-	 *            the socket connection being removed from the server
-	 */
-	private synchronized void removeConnection(Socket clientSocket) {
-		if (numOfPlayers > 0) {
-			// locates the client socket in the array
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == clientSocket) {
-					String name = clientNames[i];
-
-					clientSockets[i] = null;
-					clientOutputStreams[i] = null;
-					clientNames[i] = null;
-					clientReadyStates[i] = false;
-					numOfPlayers--;
-
-					println(name + " (" + clientSocket.getRemoteSocketAddress()
-							+ ") leaves the game.");
-
-					String remoteAddress = clientSocket
-							.getRemoteSocketAddress().toString();
-
-					// broadcasts a message about the leaving of this player
-					broadcastMessage(new CardGameMessage(CardGameMessage.QUIT,
-							i, remoteAddress));
-					break;
+	 *            the connection being removed from the server
+	 */
+	void removeConnection(ClientConnection clientSocket) {
+		CardGameTable table = clientSocket.table;
+		if (table != null
+				&& table.removeConnection(clientSocket, seatHoldTime > 0))
+			closeIfEmpty(table);
+	} // removeConnection
+
+	/**
+	 * Makes a client leave its table, releasing its seat at once.
+	 * 
+	 * @param clientSocket
+	 *            the connection to the client
+	 */
+	private void leaveTable(ClientConnection clientSocket) {
+		CardGameTable table = clientSocket.table;
+		if (table != null && table.removeConnection(clientSocket, false))
+			closeIfEmpty(table);
+	}
+
+	/**
+	 * Seats a connection at the first table with a free seat, opening a new
+	 * table if all tables are full.
+	 * 
+	 * @param clientSocket
+	 *            the connection to be seated
+	 * @return true if the connection is seated; false if all tables are full
+	 */
+	private boolean seat(ClientConnection clientSocket) {
+		while (true) {
+			CardGameTable table = null;
+			synchronized (tables) {
+				for (CardGameTable t : tables.values()) {
+					if (t.hasFreeSeat()) {
+						table = t;
+						break;
+					}
 				}
+				if (table == null)
+					table = openTable();
+				if (table == null)
+					return false;
+			}
+			// another client may have taken the last seat in the meantime
+			if (table.addConnection(clientSocket)) {
+				keepOpen(table);
+				return true;
 			}
 		}
-	} // removeConnection
+	} // seat
 
 	/**
-	 * adds a player to the game.
+	 * Moves a client to the specified table. The client leaves its current
+	 * table and gets the player list of the new one, as if it had just
+	 * connected.
 	 * 
 	 * @param clientSocket
-	 *            the socket connection to the player who is joining the game
-	 * @param name
-	 *            the name of the player who is joining the game
-	 */
-	private synchronized void addPlayer(Socket clientSocket, String name) {
-		if (numOfPlayers > 0) {
-			// locates the client socket in the array
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == clientSocket) {
-					// updates the name of the new player
-					clientNames[i] = name;
-
-					println(name + " (" + clientSocket.getRemoteSocketAddress()
-							+ ") joins the game.");
-
-					// broadcasts a message about this player joining the game
-					broadcastMessage(new CardGameMessage(CardGameMessage.JOIN,
-							i, name));
-					break;
-				}
+	 *            the connection to the client
+	 * @param tableId
+	 *            the id of the table, or -1 for a new table
+	 */
+	private void joinTable(ClientConnection clientSocket, int tableId) {
+		CardGameTable target;
+		synchronized (tables) {
+			target = tableId < 0 ? openTable() : tables.get(tableId);
+		}
+		String error = null;
+		if (target == null)
+			error = tableId < 0 ? "No more tables can be opened."
+					: "There is no table " + tableId + ".";
+		else if (target == clientSocket.table)
+			error = "You are already at table " + tableId + ".";
+		else if (!target.hasFreeSeat())
+			error = "Table " + tableId + " is full.";
+		if (error != null) {
+			try {
+				clientSocket.sendMessage(new CardGameMessage(
+						CardGameMessage.MSG, -1, error));
+			} catch (Exception ex) {
+				if (!silentMode) ex.printStackTrace();
 			}
+			return;
 		}
-	} // addPlayer
+
+		leaveTable(clientSocket);
+		if (target.addConnection(clientSocket))
+			keepOpen(target);
+		else
+			// the table filled up in the meantime
+			addConnection(clientSocket);
+	} // joinTable
 
 	/**
-	 * Marks the specified player as ready for a new game.
+	 * Gives a client the seat held with the specified session token, taking
+	 * it from the table it was seated at when it connected. The client is
+	 * sent a SESSION message with playerID -1 if no seat is held with the
+	 * token.
 	 * 
 	 * @param clientSocket
-	 *            the socket connection to the player who becomes ready for a
-	 *            new game
-	 */
-	private synchronized void setReadyState(Socket clientSocket) {
-		if (numOfPlayers > 0) {
-			// locates the client socket in the array
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == clientSocket) {
-					clientReadyStates[i] = true;
-					println(clientNames[i] + " ("
-							+ clientSocket.getRemoteSocketAddress()
-							+ " ) is ready for the next game.");
-					broadcastMessage(new CardGameMessage(CardGameMessage.READY,
-							i, null));
-					break;
-				}
+	 *            the connection to the client
+	 * @param session
+	 *            the data of the RESUME message
+	 */
+	private void resume(ClientConnection clientSocket, Object session) {
+		CardGameTable target = null;
+		if (session instanceof String) {
+			synchronized (tables) {
+				target = tables.get(CardGameTable.getTableId((String) session));
 			}
 		}
+		CardGameTable current = clientSocket.table;
+		if (target != null && target.resume(clientSocket, (String) session)) {
+			if (current != null && current != target
+					&& current.removeConnection(clientSocket, false))
+				closeIfEmpty(current);
+			keepOpen(target);
+			return;
+		}
+		println("Cannot resume a seat for the client at "
+				+ clientSocket.getRemoteSocketAddress());
+		try {
+			clientSocket.sendMessage(new CardGameMessage(
+					CardGameMessage.SESSION, -1, null));
+		} catch (Exception ex) {
+			if (!silentMode) ex.printStackTrace();
+		}
+	} // resume
 
-		// checks if all players are ready
-		if (numOfPlayers == maxNumOfPlayers) {
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientReadyStates[i] == false) {
-					// returns if any of the players is not ready
-					return;
+	/**
+	 * Sends the tables with free seats to a client, as a TABLES message whose
+	 * data holds the id and the number of players of each table.
+	 * 
+	 * @param clientSocket
+	 *            the connection to the client
+	 */
+	private void sendTableList(ClientConnection clientSocket) {
+		int[] list = new int[2 * MAX_LISTED_TABLES];
+		int n = 0;
+		synchronized (tables) {
+			for (CardGameTable table : tables.values()) {
+				if (n == list.length)
+					break;
+				int players = table.getNumOfPlayers();
+				if (players < maxNumOfPlayers) {
+					list[n++] = table.getId();
+					list[n++] = players;
 				}
 			}
+		}
+		int[] data = new int[n];
+		System.arraycopy(list, 0, data, 0, n);
+		try {
+			clientSocket.sendMessage(new CardGameMessage(
+					CardGameMessage.TABLES, -1, data));
+		} catch (Exception ex) {
+			println("Error in sending the tables to the client at "
+					+ clientSocket.getRemoteSocketAddress());
+			if (!silentMode) ex.printStackTrace();
+		}
+	} // sendTableList
+
+	/**
+	 * Opens a new table if the maximum number of tables is not reached. Must
+	 * be called while holding the lock of tables.
+	 * 
+	 * @return the new table, or null
+	 */
+	private CardGameTable openTable() {
+		if (tables.size() >= maxNumOfTables)
+			return null;
+		CardGameTable table = new CardGameTable(this, nextTableId++,
+				maxNumOfPlayers);
+		tables.put(table.getId(), table);
+		return table;
+	}
 
-			// resets the ready states of all the players for the next game
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				clientReadyStates[i] = false;
+	/**
+	 * Closes the specified table if nobody is seated at it.
+	 * 
+	 * @param table
+	 *            the table to be closed
+	 */
+	private void closeIfEmpty(CardGameTable table) {
+		synchronized (tables) {
+			if (table.getNumOfPlayers() == 0) {
+				tables.remove(table.getId());
+				table.deleteJournal();
 			}
+		}
+	}
 
-			// creates a new deck, shuffles the deck, and starts a new game
-			Deck deck = createDeck();
-			deck.shuffle();
-			println("All players are ready. Game starts.");
-			broadcastMessage(new CardGameMessage(CardGameMessage.START, -1,
-					deck));
+	/**
+	 * Reopens the specified table if it was closed while a client was being
+	 * seated at it.
+	 * 
+	 * @param table
+	 *            a table at which a client has just been seated
+	 */
+	private void keepOpen(CardGameTable table) {
+		synchronized (tables) {
+			if (!tables.containsKey(table.getId()))
+				tables.put(table.getId(), table);
 		}
 	}
 
@@ -364,123 +808,138 @@ public class CardGameServer {
 		return new Deck();
 	}
 
-	private synchronized void broadcastUserMessage(Socket clientSocket,
-			String msg) {
-		if (numOfPlayers > 0) {
-			// locates the client in the array
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == clientSocket) {
-					String longMsg = clientNames[i] + " ("
-							+ clientSocket.getRemoteSocketAddress() + "): "
-							+ msg;
-					broadcastMessage(new CardGameMessage(CardGameMessage.MSG,
-							i, longMsg));
-					break;
-				}
-			}
-		}
+	/**
+	 * Creates and returns the referee of a new table, which checks the moves
+	 * of its games. Returns null, i.e. MOVE messages are broadcast unchecked;
+	 * overrides this method to make the server check the moves.
+	 * 
+	 * @return the referee of a new table, or null
+	 */
+	public GameReferee createReferee() {
+		return null;
 	}
 
 	/**
-	 * Prints the specified message to the text area.
+	 * Logs the specified message (see ServerLog).
 	 * 
 	 * @param msg
 	 */
-	private void println(String msg) {
-		textArea.append(msg + "\n");
-		textArea.setCaretPosition(textArea.getDocument().getLength());
+	void println(String msg) {
+		log.log(msg);
 	}
 
 	/**
-	 * This inner class is used for receiving incoming messages from a client
+	 * This inner class is used to model a blocking connection to a client,
+	 * writing to an ObjectOutputStream of the client socket. Messages are
+	 * queued by the senders and written by the thread running this connection.
 	 * 
 	 * @author Kenneth Wong
 	 *
 	 */
-	private class ClientHandler implements Runnable {
+	private class StreamConnection extends ClientConnection implements
+			Runnable {
 		private Socket clientSocket; // socket connection to the client
-		private ObjectInputStream oistream; // ObjectInputStream of the client
+		private OutputStream outstream; // OutputStream of the client
+		// messages waiting to be written to the client
+		private final OutboundQueue queue = createOutboundQueue();
 
 		/**
-		 * Creates and returns an instance of the ClientHandler class.
+		 * Creates and returns an instance of the StreamConnection class, and
+		 * starts the serialization stream read by the client.
 		 * 
 		 * @param clientSocket
 		 *            the socket connection to the client
+		 * @throws IOException
+		 *             if the stream header cannot be sent
 		 */
-		public ClientHandler(Socket clientSocket) {
+		public StreamConnection(Socket clientSocket) throws IOException {
 			this.clientSocket = clientSocket;
-			try {
-				// creates an ObjectInputStream and chains it to the InputStream
-				// of the client socket
-				oistream = new ObjectInputStream(clientSocket.getInputStream());
-			} catch (Exception ex) {
-				println("Error in creating an ObjectInputStream for the client at "
-						+ clientSocket.getRemoteSocketAddress());
-				if (!silentMode) ex.printStackTrace();
-			}
+			this.outstream = clientSocket.getOutputStream();
+			// the messages are written as pre-serialized bytes after the
+			// stream header (see EncodedMessage)
+			new ObjectOutputStream(outstream).flush();
 		} // constructor
 
-		// implementation of method from the Runnable interface
-		public void run() {
-			CardGameMessage message;
+		public SocketAddress getRemoteSocketAddress() {
+			return clientSocket.getRemoteSocketAddress();
+		}
+
+		public void sendMessage(EncodedMessage message) throws IOException {
+			boolean chat = message.getMessage().getType() == CardGameMessage.MSG;
 			try {
-				// waits for messages from the client
-				while ((message = (CardGameMessage) oistream.readObject()) != null) {
-					println("Message received from "
-							+ clientSocket.getRemoteSocketAddress());
-					parseMessage(clientSocket, message);
-				} // close while
-			} catch (Exception ex) {
-				println("Error in receiving messages from the client at "
-						+ clientSocket.getRemoteSocketAddress());
-				if (!silentMode) ex.printStackTrace();
-				// possible connection loss, removes the connection
-				removeConnection(clientSocket);
+				if (queue.add(ByteBuffer.wrap(message.getStreamBytes()), chat,
+						true) && queue.isOverCapacity())
+					deferWait();
+			} catch (IOException ex) {
+				if (queue.isClosed() && !clientSocket.isClosed()) {
+					println("Disconnects the client at "
+							+ clientSocket.getRemoteSocketAddress() + ": "
+							+ ex.getMessage());
+					close();
+				}
+				throw ex;
 			}
-		} // run
-	} // ClientHandler
-
-	private class ClientHandler2 implements Runnable {
-		private Socket clientSocket; // socket connection to the client
+		}
 
-		/**
-		 * Creates and returns an instance of the ClientHandler2 class.
-		 * 
-		 * @param clientSocket
-		 *            the socket connection to the client
-		 */
-		public ClientHandler2(Socket clientSocket) {
-			this.clientSocket = clientSocket;
-		} // constructor
+		void awaitQueue() {
+			try {
+				queue.awaitRoom();
+			} catch (IOException ex) {
+				if (!clientSocket.isClosed()) {
+					println("Disconnects the client at "
+							+ clientSocket.getRemoteSocketAddress() + ": "
+							+ ex.getMessage());
+					close();
+				}
+			}
+		}
 
 		// implementation of method from the Runnable interface
 		public void run() {
 			try {
-				// creates an ObjectOutputStream and chains it to the
-				// OutputStream
-				// of the client socket
-				ObjectOutputStream oostream = new ObjectOutputStream(
-						clientSocket.getOutputStream());
-				// sends a FULL message to the client
-				oostream.writeObject(new CardGameMessage(CardGameMessage.FULL,
-						-1, null));
-				oostream.flush();
+				// writes the queued messages until the connection is closed
+				ByteBuffer buffer;
+				while ((buffer = queue.take()) != null) {
+					outstream.write(buffer.array(), buffer.arrayOffset()
+							+ buffer.position(), buffer.remaining());
+					outstream.flush();
+					queue.remove();
+				}
 			} catch (Exception ex) {
-				println("Error in sending a FULL message to the client at "
-						+ clientSocket.getRemoteSocketAddress());
-				if (!silentMode) ex.printStackTrace();
+				if (!queue.isClosed()) {
+					println("Error in sending messages to the client at "
+							+ clientSocket.getRemoteSocketAddress());
+					if (!silentMode) ex.printStackTrace();
+				}
+				close();
 			}
+		} // run
 
-			// sleeps for 1000 milliseconds before closing the socket
-			try {
-				Thread.sleep(1000);
-			} catch (Exception ex) {
-				println("Error in sleeping before closing the client socket at "
-						+ clientSocket.getRemoteSocketAddress());
-				if (!silentMode) ex.printStackTrace();
-			}
+		public void closeAfter(final long millis) {
+			// creates a thread that sleeps before closing the socket
+			Thread t = new Thread(new Runnable() {
+				public void run() {
+					try {
+						Thread.sleep(millis);
+					} catch (Exception ex) {
+						println("Error in sleeping before closing the client socket at "
+								+ clientSocket.getRemoteSocketAddress());
+						if (!silentMode) ex.printStackTrace();
+					}
 
-			// closes the socket
+					// closes the socket
+					close();
+				}
+			});
+			t.start();
+		}
+
+		/**
+		 * Closes the queue and the socket, which stops the writer and the
+		 * reader of the connection.
+		 */
+		public void close() {
+			queue.close();
 			try {
 				clientSocket.close();
 			} catch (Exception ex) {
@@ -488,31 +947,57 @@ public class CardGameServer {
 						+ clientSocket.getRemoteSocketAddress());
 				if (!silentMode) ex.printStackTrace();
 			}
-		} // run
-	} // ClientHandler2
-
-	/**
-	 * This inner class is used for handling the Clear menu
-	 * 
-	 * @author Kenneth Wong
-	 *
-	 */
-	private class ClearMenuItemListener implements ActionListener {
-		public void actionPerformed(ActionEvent e) {
-			textArea.setText("");
 		}
-	} // ClearMenuItemListener
+	} // StreamConnection
 
 	/**
-	 * This inner class is used for handling the Quit menu
+	 * This inner class is used for receiving incoming messages from a client
 	 * 
 	 * @author Kenneth Wong
 	 *
 	 */
-	private class QuitMenuItemListener implements ActionListener {
-		public void actionPerformed(ActionEvent e) {
-			frame.dispose();
-			System.exit(0);
-		}
-	} // QuitMenuItemListener
+	private class ClientHandler implements Runnable {
+		private StreamConnection connection; // connection to the client
+		private Socket clientSocket; // socket connection to the client
+		private ObjectInputStream oistream; // ObjectInputStream of the client
+
+		/**
+		 * Creates and returns an instance of the ClientHandler class.
+		 * 
+		 * @param connection
+		 *            the connection to the client
+		 */
+		public ClientHandler(StreamConnection connection) {
+			this.connection = connection;
+			this.clientSocket = connection.clientSocket;
+		} // constructor
+
+		// implementation of method from the Runnable interface
+		public void run() {
+			CardGameMessage message;
+			try {
+				// creates an ObjectInputStream and chains it to the InputStream
+				// of the client socket; this waits for the stream header of
+				// the client, so it is done here and not on the accepting
+				// thread
+				oistream = new ObjectInputStream(clientSocket.getInputStream());
+				// waits for messages from the client
+				while ((message = (CardGameMessage) oistream.readObject()) != null) {
+					println("Message received from "
+							+ clientSocket.getRemoteSocketAddress());
+					parseMessage(connection, message);
+					// waits for the slow clients of the table, if any, now
+					// that the table is free
+					ClientConnection.awaitRoom();
+				} // close while
+			} catch (Exception ex) {
+				println("Error in receiving messages from the client at "
+						+ clientSocket.getRemoteSocketAddress());
+				if (!silentMode) ex.printStackTrace();
+				// possible connection loss, removes the connection
+				removeConnection(connection);
+				connection.close();
+			}
+		} // run
+	} // ClientHandler
 }
@@ -0,0 +1,703 @@
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.Objects;
+
+/**
+ * This class is used to model a table of a card game server. A table seats up
+ * to maxNumOfPlayers clients, who become ready and start games independently
+ * of the other tables of the server. A table holds nothing but its seats, so
+ * a server can host thousands of them.
+ * <p>
+ * The methods of a table are synchronized on the table, so games at different
+ * tables do not wait for each other.
+ * <p>
+ * If the server provides a GameReferee, the table keeps the state of its game
+ * and broadcasts only legal moves, as RESULT messages; otherwise MOVE messages
+ * are broadcast as they are received.
+ * <p>
+ * A player who has joined gets a session token (SESSION). When his/her
+ * connection drops, the seat is held, i.e. taken but not connected, for the
+ * seat hold time of the server, and the game waits; a client that sends the
+ * token in a RESUME message in the meantime gets the seat back, with a
+ * snapshot of the game from the referee. A seat that is not resumed in time is
+ * released as if the player had quit.
+ * <p>
+ * If the server keeps a GameJournal, the table records its players, deal seeds
+ * and accepted moves in its TableJournal, from which it is rebuilt after a
+ * crash. The seats of a rebuilt table are all held until their players resume
+ * them.
+ */
+public class CardGameTable {
+	// the server hosting this table
+	private final CardGameServer server;
+	// the id of this table in the lobby of the server
+	private final int id;
+	// Array for holding connections to the clients
+	private final ClientConnection[] clientConnections;
+	// Array for holding player names of the clients
+	private final String[] clientNames;
+	// Array for holding ready states of the clients
+	private final boolean[] clientReadyStates;
+	// Array for holding session tokens of the players who have joined
+	private final String[] clientSessions;
+	// number of seats taken, by a connection or held for a player
+	private int numOfPlayers = 0;
+	// the referee checking the moves, created with the first game, or null
+	private GameReferee referee = null;
+	// the journal of this table, or null
+	private final TableJournal journal;
+	// the generator of the session tokens
+	private static final SecureRandom random = new SecureRandom();
+
+	/**
+	 * Creates and returns an instance of the CardGameTable class.
+	 *
+	 * @param server
+	 *            the server hosting this table
+	 * @param id
+	 *            the id of this table
+	 * @param maxNumOfPlayers
+	 *            the maximum number of players in a card game
+	 */
+	public CardGameTable(CardGameServer server, int id, int maxNumOfPlayers) {
+		this.server = server;
+		this.id = id;
+		clientConnections = new ClientConnection[maxNumOfPlayers];
+		clientNames = new String[maxNumOfPlayers];
+		clientReadyStates = new boolean[maxNumOfPlayers];
+		clientSessions = new String[maxNumOfPlayers];
+		journal = server.getTableJournal(id);
+	}
+
+	/**
+	 * Returns the id of this table.
+	 *
+	 * @return the id of this table
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Returns the number of players at this table, including the players
+	 * whose seats are held.
+	 *
+	 * @return the number of players
+	 */
+	public synchronized int getNumOfPlayers() {
+		return numOfPlayers;
+	}
+
+	/**
+	 * Returns whether this table has a free seat.
+	 *
+	 * @return true if another player can join this table
+	 */
+	public synchronized boolean hasFreeSeat() {
+		return numOfPlayers < clientConnections.length;
+	}
+
+	/**
+	 * Parses the specified game message from the specified client at this
+	 * table.
+	 *
+	 * @param clientSocket
+	 *            the connection to the specified client
+	 * @param message
+	 *            the message received from the specified client
+	 */
+	synchronized void parseMessage(ClientConnection clientSocket,
+			CardGameMessage message) {
+		// updates the playerID
+		int playerID = indexOf(clientSocket);
+		if (playerID < 0) {
+			// the client has just left this table
+			return;
+		}
+		message.setPlayerID(playerID);
+
+		// parses the message based on it type
+		switch (message.getType()) {
+		case CardGameMessage.JOIN:
+			// adds a player to the game
+			addPlayer(playerID, (String) message.getData());
+			break;
+		case CardGameMessage.READY:
+			// marks the specified player as ready for a new game
+			setReadyState(playerID);
+			break;
+		case CardGameMessage.MOVE:
+			if (getReferee() != null) {
+				// checks the move and broadcasts the result if it is legal
+				checkMove(clientSocket, playerID, message);
+				break;
+			}
+			println("Broadcasts a \"MOVE\" message from "
+					+ clientSocket.getRemoteSocketAddress());
+			// broadcast the MOVE message to all clients
+			broadcastMessage(message);
+			break;
+		case CardGameMessage.MSG:
+			println("Broadcasts a user message from "
+					+ clientSocket.getRemoteSocketAddress());
+			// broadcast the user message to all clients
+			broadcastUserMessage(playerID, (String) message.getData());
+			break;
+		default:
+			println("Wrong message type: " + message.getType());
+			// invalid message
+			break;
+		}
+	} // parseMessage
+
+	/**
+	 * Broadcasts the specified message to all clients at this table. The
+	 * message is encoded once per format and the same bytes are sent to every
+	 * client.
+	 *
+	 * @param message
+	 *            the specified message to be broadcast to all clients
+	 */
+	private void broadcastMessage(CardGameMessage message) {
+		broadcastMessage(message, message);
+	} // broadcastMessage
+
+	/**
+	 * Broadcasts the specified message to all clients at this table, and the
+	 * specified classic message instead to the classic clients, which do not
+	 * know all the message types (see CardGameMessage.PROTOCOL).
+	 *
+	 * @param message
+	 *            the message to be broadcast to the clients
+	 * @param classic
+	 *            the message to be broadcast to the classic clients
+	 */
+	private void broadcastMessage(CardGameMessage message,
+			CardGameMessage classic) {
+		if (numOfPlayers > 0) {
+			EncodedMessage encoded = new EncodedMessage(message);
+			EncodedMessage encodedClassic = classic == message ? encoded
+					: new EncodedMessage(classic);
+			for (int i = 0; i < clientConnections.length; i++) {
+				if (clientConnections[i] != null) {
+					try {
+						clientConnections[i].sendMessage(
+								clientConnections[i].protocolVersion > 0
+										? encoded : encodedClassic);
+					} catch (Exception ex) {
+						println("Error in broadcasting a message to the client at "
+								+ clientConnections[i].getRemoteSocketAddress());
+						if (!server.silentMode) ex.printStackTrace();
+					}
+				}
+			}
+		}
+	} // broadcastMessage
+
+	/**
+	 * Checks the specified move with the referee. A legal move is broadcast as
+	 * a RESULT message; an illegal move is answered with an ILLEGAL message to
+	 * the specified client only. A classic client is relayed the MOVE message
+	 * instead, which it checks itself; its own illegal move is echoed back to
+	 * it, so that it rejects the move as it does without a referee.
+	 *
+	 * @param clientSocket
+	 *            the connection to the client making the move
+	 * @param playerID
+	 *            the seat of the client
+	 * @param move
+	 *            the MOVE message
+	 */
+	private void checkMove(ClientConnection clientSocket, int playerID,
+			CardGameMessage move) {
+		Object data = move.getData();
+		Object result = referee.checkMove(playerID, data);
+		if (result != null) {
+			if (journal != null && (data == null || data instanceof int[])) {
+				try {
+					journal.move(playerID, (int[]) data);
+				} catch (IOException ex) {
+					journalError(ex);
+				}
+			}
+			println("Broadcasts the result of a move from "
+					+ clientSocket.getRemoteSocketAddress());
+			broadcastMessage(new CardGameMessage(CardGameMessage.RESULT,
+					playerID, result), move);
+			return;
+		}
+		println("Rejects an illegal move from "
+				+ clientSocket.getRemoteSocketAddress());
+		try {
+			clientSocket.sendMessage(clientSocket.protocolVersion > 0
+					? new CardGameMessage(CardGameMessage.ILLEGAL, playerID,
+							data) : move);
+		} catch (Exception ex) {
+			println("Error in sending a message to the client at "
+					+ clientSocket.getRemoteSocketAddress());
+			if (!server.silentMode) ex.printStackTrace();
+		}
+	} // checkMove
+
+	/**
+	 * Seats a connection at the first empty seat of this table and sends it the
+	 * player list.
+	 *
+	 * @param clientSocket
+	 *            the connection to be seated
+	 * @return true if the connection is seated; false if the table is full
+	 */
+	synchronized boolean addConnection(ClientConnection clientSocket) {
+		// locates the first empty slot for the new connection
+		for (int i = 0; i < clientConnections.length; i++) {
+			if (clientConnections[i] == null && clientNames[i] == null) {
+				clientConnections[i] = clientSocket;
+				clientNames[i] = null;
+				clientReadyStates[i] = false;
+				numOfPlayers++;
+				clientSocket.table = this;
+				println("Establishes a connection with a client at "
+						+ clientSocket.getRemoteSocketAddress());
+
+				try {
+					// sends the player list to the new player
+					clientSocket.sendMessage(new CardGameMessage(
+							CardGameMessage.PLAYER_LIST, i,
+							clientNames.clone()));
+				} catch (Exception ex) {
+					println("Error in establishing a connection with a client at "
+							+ clientSocket.getRemoteSocketAddress());
+					if (!server.silentMode) ex.printStackTrace();
+				}
+				return true;
+			}
+		} // for
+		return false;
+	} // addConnection
+
+	/**
+	 * Removes a connection from this table (possibly due to connection loss).
+	 * If the seat is to be held and the player has joined, the seat is held
+	 * for the player to resume it; otherwise the player leaves the table.
+	 *
+	 * @param clientSocket
+	 *            the connection being removed from this table
+	 * @param holdSeat
+	 *            whether the seat is held, i.e. the connection was lost
+	 * @return true if the connection was seated at this table
+	 */
+	synchronized boolean removeConnection(ClientConnection clientSocket,
+			boolean holdSeat) {
+		int i = indexOf(clientSocket);
+		if (i < 0)
+			return false;
+		String name = clientNames[i];
+
+		clientConnections[i] = null;
+		if (clientSocket.table == this)
+			clientSocket.table = null;
+		if (holdSeat && name != null) {
+			// the game waits for this player to come back
+			println(name + " (" + clientSocket.getRemoteSocketAddress()
+					+ ") loses the connection; the seat is held.");
+			broadcastMessage(new CardGameMessage(CardGameMessage.MSG, -1,
+					name + " lost the connection. The game waits for "
+							+ (server.getSeatHoldTime() / 1000)
+							+ " seconds for him/her to come back."));
+			holdSeat(i);
+			return true;
+		}
+		clientNames[i] = null;
+		clientSessions[i] = null;
+		clientReadyStates[i] = false;
+		numOfPlayers--;
+		// the game cannot go on without this player
+		if (referee != null)
+			referee.stop();
+		if (journal != null) {
+			try {
+				journal.quit(i);
+			} catch (IOException ex) {
+				journalError(ex);
+			}
+		}
+
+		println(name + " (" + clientSocket.getRemoteSocketAddress()
+				+ ") leaves the game.");
+
+		String remoteAddress = clientSocket.getRemoteSocketAddress()
+				.toString();
+
+		// broadcasts a message about the leaving of this player
+		broadcastMessage(new CardGameMessage(CardGameMessage.QUIT, i,
+				remoteAddress));
+		return true;
+	} // removeConnection
+
+	/**
+	 * adds a player to the game.
+	 *
+	 * @param i
+	 *            the seat of the player who is joining the game
+	 * @param name
+	 *            the name of the player who is joining the game
+	 */
+	private void addPlayer(int i, String name) {
+		// updates the name of the new player
+		clientNames[i] = name;
+		clientSessions[i] = newSession();
+		if (journal != null) {
+			try {
+				journal.join(i, name, clientSessions[i]);
+			} catch (IOException ex) {
+				journalError(ex);
+			}
+		}
+
+		println(name + " (" + clientConnections[i].getRemoteSocketAddress()
+				+ ") joins the game.");
+
+		// gives the session token to the new player only
+		try {
+			clientConnections[i].sendMessage(new CardGameMessage(
+					CardGameMessage.SESSION, i, clientSessions[i]));
+		} catch (Exception ex) {
+			println("Error in sending a message to the client at "
+					+ clientConnections[i].getRemoteSocketAddress());
+			if (!server.silentMode) ex.printStackTrace();
+		}
+
+		// broadcasts a message about this player joining the game
+		broadcastMessage(new CardGameMessage(CardGameMessage.JOIN, i, name));
+	} // addPlayer
+
+	/**
+	 * Marks the specified player as ready for a new game.
+	 *
+	 * @param i
+	 *            the seat of the player who becomes ready for a new game
+	 */
+	private void setReadyState(int i) {
+		clientReadyStates[i] = true;
+		println(clientNames[i] + " ("
+				+ clientConnections[i].getRemoteSocketAddress()
+				+ " ) is ready for the next game.");
+		broadcastMessage(new CardGameMessage(CardGameMessage.READY, i, null));
+
+		// checks if all players are ready
+		if (numOfPlayers == clientConnections.length) {
+			for (int j = 0; j < clientConnections.length; j++) {
+				if (clientReadyStates[j] == false
+						|| clientConnections[j] == null) {
+					// returns if any of the players is not ready or is away
+					return;
+				}
+			}
+
+			// resets the ready states of all the players for the next game
+			for (int j = 0; j < clientConnections.length; j++) {
+				clientReadyStates[j] = false;
+			}
+
+			// creates a new deck, shuffles the deck with a logged seed, and
+			// starts a new game
+			Deck deck = server.createDeck();
+			long seed = DealGenerator.newSeed();
+			deck.shuffle(seed);
+			println("All players are ready. Game starts (deal seed " + seed
+					+ ").");
+			if (getReferee() != null)
+				getReferee().start(deck);
+			if (journal != null) {
+				try {
+					journal.start(clientNames, clientSessions, seed);
+				} catch (IOException ex) {
+					journalError(ex);
+				}
+			}
+			broadcastMessage(new CardGameMessage(CardGameMessage.START, -1,
+					deck));
+		}
+	} // setReadyState
+
+	private void broadcastUserMessage(int i, String msg) {
+		String longMsg = clientNames[i] + " ("
+				+ clientConnections[i].getRemoteSocketAddress() + "): " + msg;
+		broadcastMessage(new CardGameMessage(CardGameMessage.MSG, i, longMsg));
+	}
+
+	/**
+	 * Gives the held seat with the specified session token back to the
+	 * specified connection, with a new token, and sends it the player list
+	 * and a snapshot of the current game.
+	 *
+	 * @param clientSocket
+	 *            the connection of the returning player
+	 * @param session
+	 *            the session token sent by the client
+	 * @return true if the seat is resumed; false if no seat is held with the
+	 *         token
+	 */
+	synchronized boolean resume(ClientConnection clientSocket, String session) {
+		for (int i = 0; i < clientConnections.length; i++) {
+			if (clientConnections[i] == null && clientNames[i] != null
+					&& session.equals(clientSessions[i])) {
+				// the client may have been given a free seat of this table
+				int j = indexOf(clientSocket);
+				if (j >= 0) {
+					if (clientNames[j] != null)
+						return false;
+					clientConnections[j] = null;
+					numOfPlayers--;
+				}
+				clientConnections[i] = clientSocket;
+				clientSessions[i] = newSession();
+				clientSocket.table = this;
+				if (journal != null) {
+					try {
+						journal.join(i, clientNames[i], clientSessions[i]);
+					} catch (IOException ex) {
+						journalError(ex);
+					}
+				}
+				println(clientNames[i] + " ("
+						+ clientSocket.getRemoteSocketAddress()
+						+ ") comes back.");
+
+				try {
+					clientSocket.sendMessage(new CardGameMessage(
+							CardGameMessage.PLAYER_LIST, i,
+							clientNames.clone()));
+					clientSocket.sendMessage(new CardGameMessage(
+							CardGameMessage.SESSION, i, clientSessions[i]));
+					clientSocket.sendMessage(new CardGameMessage(
+							CardGameMessage.SNAPSHOT, i,
+							referee == null ? null : referee.getSnapshot()));
+				} catch (Exception ex) {
+					println("Error in sending a message to the client at "
+							+ clientSocket.getRemoteSocketAddress());
+					if (!server.silentMode) ex.printStackTrace();
+				}
+				broadcastMessage(new CardGameMessage(CardGameMessage.MSG, -1,
+						clientNames[i] + " is back."));
+				return true;
+			}
+		}
+		return false;
+	} // resume
+
+	/**
+	 * Holds the seats of all the players, who have no connection, e.g. after
+	 * the table has been rebuilt from its journal.
+	 */
+	synchronized void holdSeats() {
+		for (int i = 0; i < clientConnections.length; i++) {
+			if (clientConnections[i] == null && clientNames[i] != null)
+				holdSeat(i);
+		}
+	}
+
+	/**
+	 * Releases the specified seat if it is still held with the specified
+	 * session token, telling the other players that the player quit and
+	 * stopping the current game.
+	 *
+	 * @param i
+	 *            the seat
+	 * @param session
+	 *            the session token the seat was held with
+	 * @return true if the seat was released
+	 */
+	synchronized boolean releaseHeldSeat(int i, String session) {
+		if (clientConnections[i] != null || clientNames[i] == null
+				|| !Objects.equals(session, clientSessions[i]))
+			return false;
+		String name = clientNames[i];
+		clientNames[i] = null;
+		clientSessions[i] = null;
+		clientReadyStates[i] = false;
+		numOfPlayers--;
+		println(name + " did not come back; the seat is released.");
+		if (referee != null)
+			referee.stop();
+		if (journal != null) {
+			try {
+				journal.quit(i);
+			} catch (IOException ex) {
+				journalError(ex);
+			}
+		}
+		broadcastMessage(new CardGameMessage(CardGameMessage.QUIT, i, name));
+		return true;
+	}
+
+	/**
+	 * Returns the id of the table that issued the specified session token.
+	 *
+	 * @param session
+	 *            a session token
+	 * @return the id of the table, or -1 if the token is not valid
+	 */
+	static int getTableId(String session) {
+		int end = session.indexOf('-');
+		try {
+			return end < 0 ? -1 : Integer.parseInt(session.substring(0, end));
+		} catch (NumberFormatException ex) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Rebuilds this table from its journal after a crash.
+	 *
+	 * @throws IOException
+	 *             if the journal cannot be read
+	 */
+	synchronized void recover() throws IOException {
+		if (journal != null)
+			journal.recover(this);
+	}
+
+	/**
+	 * Replays a journal record of a player joining or resuming the specified
+	 * seat, whose seat is then held.
+	 *
+	 * @param i
+	 *            the seat of the player
+	 * @param name
+	 *            the name of the player
+	 * @param session
+	 *            the session token of the player
+	 */
+	void recoverJoin(int i, String name, String session) {
+		if (i >= clientNames.length)
+			return;
+		if (clientNames[i] == null)
+			numOfPlayers++;
+		clientNames[i] = name;
+		clientSessions[i] = session;
+	}
+
+	/**
+	 * Replays a journal record of the player at the specified seat leaving.
+	 *
+	 * @param i
+	 *            the seat of the player
+	 */
+	void recoverQuit(int i) {
+		if (i < clientNames.length && clientNames[i] != null) {
+			clientNames[i] = null;
+			clientSessions[i] = null;
+			numOfPlayers--;
+		}
+		if (referee != null)
+			referee.stop();
+	}
+
+	/**
+	 * Replays a journal record of a game starting with the specified seed.
+	 *
+	 * @param seed
+	 *            the seed the deck was shuffled with
+	 */
+	void recoverStart(long seed) {
+		Deck deck = server.createDeck();
+		deck.shuffle(seed);
+		if (getReferee() != null)
+			getReferee().start(deck);
+	}
+
+	/**
+	 * Replays a journal record of a move accepted by the referee.
+	 *
+	 * @param i
+	 *            the seat of the player who made the move
+	 * @param cardIdx
+	 *            the data of the MOVE message
+	 */
+	void recoverMove(int i, int[] cardIdx) {
+		if (getReferee() != null)
+			getReferee().checkMove(i, cardIdx);
+	}
+
+	/**
+	 * Deletes the journal of this table if nobody is seated at it, e.g. when
+	 * the table is closed.
+	 */
+	synchronized void deleteJournal() {
+		if (journal != null && numOfPlayers == 0)
+			journal.delete();
+	}
+
+	/**
+	 * Holds the specified seat for the seat hold time of the server, after
+	 * which it is released unless the player has resumed it.
+	 *
+	 * @param i
+	 *            the seat of a player without a connection
+	 */
+	private void holdSeat(final int i) {
+		final String session = clientSessions[i];
+		// the player gets ready again when he/she comes back
+		clientReadyStates[i] = false;
+		server.schedule(server.getSeatHoldTime(), new Runnable() {
+			public void run() {
+				server.releaseHeldSeat(CardGameTable.this, i, session);
+			}
+		});
+	}
+
+	/**
+	 * Creates and returns a new session token, which starts with the id of
+	 * this table so that the server finds the table of a returning player.
+	 *
+	 * @return a new session token
+	 */
+	private String newSession() {
+		return id + "-" + Long.toHexString(random.nextLong())
+				+ Long.toHexString(random.nextLong());
+	}
+
+	private void journalError(IOException ex) {
+		println("Error in writing the journal: " + ex.getMessage());
+		if (!server.silentMode) ex.printStackTrace();
+	}
+
+	/**
+	 * Returns the referee of this table, creating it on first use so that an
+	 * empty table stays small.
+	 *
+	 * @return the referee, or null if the server does not check the moves
+	 */
+	private GameReferee getReferee() {
+		if (referee == null)
+			referee = server.createReferee();
+		return referee;
+	}
+
+	/**
+	 * Returns the seat of the specified connection at this table.
+	 *
+	 * @param clientSocket
+	 *            the connection to look for
+	 * @return the seat of the connection, or -1 if it is not at this table
+	 */
+	private int indexOf(ClientConnection clientSocket) {
+		for (int i = 0; i < clientConnections.length; i++) {
+			if (clientConnections[i] == clientSocket)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Prints the specified message to the console of the server, prefixed with
+	 * the id of this table if the server hosts more than one table.
+	 *
+	 * @param msg
+	 */
+	private void println(String msg) {
+		server.println(server.getMaxNumOfTables() > 1 ? "Table " + id + ": "
+				+ msg : msg);
+	}
+}
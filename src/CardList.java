@@ -9,6 +9,10 @@ import java.util.ArrayList;
 public class CardList implements Serializable {
 	private static final long serialVersionUID = -3711761437629470849L;
 	private ArrayList<Card> cards = new ArrayList<Card>();
+	// the cards in this list as a CardSet mask; a card that is listed more than
+	// once shows up as a single bit, so the mask is exact whenever its bit count
+	// equals the size of the list
+	private long mask = 0L;
 
 	/**
 	 * Appends the specified card to the end of this list.
@@ -18,6 +22,7 @@ public class CardList implements Serializable {
 	public void addCard(Card card) {
 		if (card != null) {
 			cards.add(card);
+			mask |= CardSet.maskOf(card);
 		}
 	}
 
@@ -46,7 +51,9 @@ public class CardList implements Serializable {
 	 */
 	public Card removeCard(int i) {
 		if (i >= 0 && i < cards.size()) {
-			return cards.remove(i);
+			Card card = cards.remove(i);
+			forget(card);
+			return card;
 		} else {
 			return null;
 		}
@@ -62,14 +69,57 @@ public class CardList implements Serializable {
 	 * @return true if this list contained the specified card; otherwise false
 	 */
 	public boolean removeCard(Card card) {
-		return cards.remove(card);
+		if (card == null || (mask & CardSet.maskOf(card)) == 0) {
+			return false;
+		}
+		cards.remove(card);
+		forget(card);
+		return true;
+	}
+
+	/**
+	 * Removes every card of the specified set from this list in a single pass,
+	 * keeping the order of the remaining cards.
+	 * 
+	 * @param set the set of cards to be removed from this list
+	 * @return the number of cards removed
+	 */
+	public int removeCards(CardSet set) {
+		return removeCards(set.getMask());
+	}
+
+	/**
+	 * Removes every card of the specified CardSet mask from this list in a single
+	 * pass, keeping the order of the remaining cards.
+	 * 
+	 * @param remove the mask of the cards to be removed from this list
+	 * @return the number of cards removed
+	 */
+	public int removeCards(long remove) {
+		if ((mask & remove) == 0) {
+			return 0;
+		}
+		int size = cards.size();
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			Card card = cards.get(i);
+			if (card == null || (remove & CardSet.maskOf(card)) == 0) {
+				cards.set(kept++, card);
+			}
+		}
+		for (int i = size - 1; i >= kept; i--) {
+			cards.remove(i);
+		}
+		mask &= ~remove;
+		return size - kept;
 	}
 
 	/**
 	 * Removes all cards from this list.
 	 */
 	public void removeAllCards() {
-		cards = new ArrayList<Card>();
+		cards.clear();
+		mask = 0L;
 	}
 
 	/**
@@ -83,12 +133,32 @@ public class CardList implements Serializable {
 	 */
 	public Card setCard(int i, Card card) {
 		if (i >= 0 && i < cards.size()) {
-			return cards.set(i, card);
+			boolean exact = Long.bitCount(mask) == cards.size();
+			Card old = cards.set(i, card);
+			if (exact && old != null && card != null) {
+				mask = (mask & ~CardSet.maskOf(old)) | CardSet.maskOf(card);
+			} else {
+				rebuildMask();
+			}
+			return old;
 		} else {
 			return null;
 		}
 	}
 
+	/**
+	 * Swaps the cards at the specified positions in this list. The set of cards
+	 * held is unchanged, so this is cheaper than two calls to setCard().
+	 * 
+	 * @param i the index of one card to be swapped
+	 * @param j the index of the other card to be swapped
+	 */
+	public void swapCards(int i, int j) {
+		if (i != j && i >= 0 && i < cards.size() && j >= 0 && j < cards.size()) {
+			cards.set(i, cards.set(j, cards.get(i)));
+		}
+	}
+
 	/**
 	 * Returns true if this list contains the specified card.
 	 * 
@@ -96,7 +166,25 @@ public class CardList implements Serializable {
 	 * @return true if this list contains the specified card; otherwise false
 	 */
 	public boolean contains(Card card) {
-		return cards.contains(card);
+		return card != null && (mask & CardSet.maskOf(card)) != 0;
+	}
+
+	/**
+	 * Returns the cards in this list as a CardSet mask.
+	 * 
+	 * @return a mask in which each set bit represents a card in this list
+	 */
+	public long getMask() {
+		return mask;
+	}
+
+	/**
+	 * Returns the cards in this list as a CardSet.
+	 * 
+	 * @return a set holding the cards in this list
+	 */
+	public CardSet getCardSet() {
+		return new CardSet(mask);
 	}
 
 	/**
@@ -165,6 +253,36 @@ public class CardList implements Serializable {
 		}
 	}
 
+	/**
+	 * Updates the mask after the specified card has been taken out of the list.
+	 * The bit is cleared directly when no card is listed twice; otherwise the
+	 * mask is rebuilt as the card may still be present.
+	 * 
+	 * @param card the card taken out of the list
+	 */
+	private void forget(Card card) {
+		if (card == null) {
+			return;
+		}
+		if (Long.bitCount(mask) == cards.size() + 1) {
+			mask &= ~CardSet.maskOf(card);
+		} else {
+			rebuildMask();
+		}
+	}
+
+	/**
+	 * Recomputes the mask from the cards in the list.
+	 */
+	private void rebuildMask() {
+		mask = 0L;
+		for (int i = 0; i < cards.size(); i++) {
+			if (cards.get(i) != null) {
+				mask |= CardSet.maskOf(cards.get(i));
+			}
+		}
+	}
+
 	/**
 	 * Returns a string representation of the cards in the list
 	 * 
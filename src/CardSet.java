@@ -0,0 +1,452 @@
+import java.io.Serializable;
+
+/**
+ * The CardSet class is used to model a set of Big Two cards packed into the
+ * low 52 bits of a long. Each card occupies one bit, and the bits are laid out
+ * in Big Two order: bit (4 * r + s) holds the card of suit s whose Big Two rank
+ * is r (0 = '3', 1 = '4', ..., 11 = 'A', 12 = '2'). Adding, removing and
+ * looking up a card are single bit operations, and walking the bits from the
+ * lowest to the highest visits the cards from the smallest to the largest.
+ * <p>
+ * The static methods work on raw long masks so that hot paths (hand
+ * classification, move generation, simulations) can use card sets without
+ * creating any objects.
+ */
+public class CardSet implements Serializable {
+	private static final long serialVersionUID = 2671547420683517362L;
+	/**
+	 * The number of cards in a full deck.
+	 */
+	public static final int DECK_SIZE = 52;
+	/**
+	 * A mask holding all 52 cards.
+	 */
+	public static final long FULL_DECK = (1L << DECK_SIZE) - 1;
+	// a mask holding all 13 cards of the Diamond suit; shift left by the suit
+	// to get the mask of another suit
+	private static final long DIAMONDS = 0x1111111111111L;
+	// the canonical Big Two card for each bit
+	private static final BigTwoCard[] CARDS = new BigTwoCard[DECK_SIZE];
+
+	static {
+		for (int i = 0; i < DECK_SIZE; i++)
+			CARDS[i] = BigTwoCard.valueOf(i & 3, (i / 4 + 2) % 13);
+	}
+
+	private long mask;
+
+	/**
+	 * a constructor for building an empty card set.
+	 */
+	public CardSet() {
+		this.mask = 0L;
+	}
+
+	/**
+	 * a constructor for building a card set from the specified mask.
+	 *
+	 * @param mask a mask in which each set bit represents a card
+	 */
+	public CardSet(long mask) {
+		this.mask = mask & FULL_DECK;
+	}
+
+	/**
+	 * a constructor for building a card set holding the cards of the specified
+	 * list.
+	 *
+	 * @param cards list of cards to be added to the set
+	 */
+	public CardSet(CardList cards) {
+		this.mask = cards.getMask();
+	}
+
+	/**
+	 * a method for getting the bit index of the specified card.
+	 *
+	 * @param card card to locate
+	 * @return an int between 0 and 51 specifying the position of the card in Big
+	 *         Two order
+	 */
+	public static int indexOf(Card card) {
+		return indexOf(card.getSuit(), card.getRank());
+	}
+
+	/**
+	 * a method for getting the bit index of the card with the specified suit and
+	 * rank.
+	 *
+	 * @param suit suit of the card (0-3)
+	 * @param rank rank of the card (0-12)
+	 * @return an int between 0 and 51 specifying the position of the card in Big
+	 *         Two order
+	 */
+	public static int indexOf(int suit, int rank) {
+		return ((rank + 11) % 13) * 4 + suit;
+	}
+
+	/**
+	 * a method for getting the single-bit mask of the specified card.
+	 *
+	 * @param card card to convert
+	 * @return a mask with only the bit of the card set
+	 */
+	public static long maskOf(Card card) {
+		return 1L << indexOf(card);
+	}
+
+	/**
+	 * a method for getting the canonical Big Two card at the specified bit index.
+	 *
+	 * @param index bit index between 0 and 51
+	 * @return the card at the specified bit index
+	 */
+	public static BigTwoCard getCard(int index) {
+		return CARDS[index];
+	}
+
+	/**
+	 * a method for getting the Big Two rank of the card at the specified bit
+	 * index.
+	 *
+	 * @param index bit index between 0 and 51
+	 * @return an int between 0 ('3') and 12 ('2')
+	 */
+	public static int rankOf(int index) {
+		return index >>> 2;
+	}
+
+	/**
+	 * a method for getting the suit of the card at the specified bit index.
+	 *
+	 * @param index bit index between 0 and 51
+	 * @return an int between 0 (Diamond) and 3 (Spade)
+	 */
+	public static int suitOf(int index) {
+		return index & 3;
+	}
+
+	/**
+	 * a method for getting the mask of all four cards of the specified Big Two
+	 * rank.
+	 *
+	 * @param bigTwoRank Big Two rank between 0 ('3') and 12 ('2')
+	 * @return a mask holding the four cards of the rank
+	 */
+	public static long rankMask(int bigTwoRank) {
+		return 0xFL << (bigTwoRank * 4);
+	}
+
+	/**
+	 * a method for getting the mask of all thirteen cards of the specified suit.
+	 *
+	 * @param suit suit between 0 (Diamond) and 3 (Spade)
+	 * @return a mask holding the thirteen cards of the suit
+	 */
+	public static long suitMask(int suit) {
+		return DIAMONDS << suit;
+	}
+
+	/**
+	 * a method for counting the cards of the specified Big Two rank in a mask.
+	 *
+	 * @param mask       mask to inspect
+	 * @param bigTwoRank Big Two rank between 0 ('3') and 12 ('2')
+	 * @return the number of cards of the rank, between 0 and 4
+	 */
+	public static int countRank(long mask, int bigTwoRank) {
+		return Long.bitCount(mask & rankMask(bigTwoRank));
+	}
+
+	/**
+	 * a method for counting the cards of the specified suit in a mask.
+	 *
+	 * @param mask mask to inspect
+	 * @param suit suit between 0 (Diamond) and 3 (Spade)
+	 * @return the number of cards of the suit, between 0 and 13
+	 */
+	public static int countSuit(long mask, int suit) {
+		return Long.bitCount(mask & suitMask(suit));
+	}
+
+	/**
+	 * a method for getting the index of the smallest card in a mask at or after
+	 * the specified index. Together with {@link #first(long)} it allows iterating
+	 * a mask in Big Two order without creating an iterator:
+	 *
+	 * <pre>
+	 * for (int i = CardSet.first(mask); i >= 0; i = CardSet.next(mask, i + 1))
+	 * 	...
+	 * </pre>
+	 *
+	 * @param mask  mask to inspect
+	 * @param index bit index to start from
+	 * @return the index of the next card, or -1 if there is none
+	 */
+	public static int next(long mask, int index) {
+		if (index >= DECK_SIZE)
+			return -1;
+		long rest = mask & (-1L << index);
+		return rest == 0 ? -1 : Long.numberOfTrailingZeros(rest);
+	}
+
+	/**
+	 * a method for getting the index of the smallest card in a mask.
+	 *
+	 * @param mask mask to inspect
+	 * @return the index of the smallest card, or -1 if the mask is empty
+	 */
+	public static int first(long mask) {
+		return mask == 0 ? -1 : Long.numberOfTrailingZeros(mask);
+	}
+
+	/**
+	 * a method for getting the index of the largest card in a mask.
+	 *
+	 * @param mask mask to inspect
+	 * @return the index of the largest card, or -1 if the mask is empty
+	 */
+	public static int last(long mask) {
+		return 63 - Long.numberOfLeadingZeros(mask);
+	}
+
+	/**
+	 * a method for retrieving the mask backing this set.
+	 *
+	 * @return a mask in which each set bit represents a card in this set
+	 */
+	public long getMask() {
+		return mask;
+	}
+
+	/**
+	 * a method for adding the specified card to this set.
+	 *
+	 * @param card card to add
+	 * @return true if the set changed as a result of the call
+	 */
+	public boolean add(Card card) {
+		return add(indexOf(card));
+	}
+
+	/**
+	 * a method for adding the card at the specified bit index to this set.
+	 *
+	 * @param index bit index between 0 and 51
+	 * @return true if the set changed as a result of the call
+	 */
+	public boolean add(int index) {
+		long old = mask;
+		mask |= 1L << index;
+		return mask != old;
+	}
+
+	/**
+	 * a method for removing the specified card from this set.
+	 *
+	 * @param card card to remove
+	 * @return true if the set contained the card
+	 */
+	public boolean remove(Card card) {
+		return remove(indexOf(card));
+	}
+
+	/**
+	 * a method for removing the card at the specified bit index from this set.
+	 *
+	 * @param index bit index between 0 and 51
+	 * @return true if the set contained the card
+	 */
+	public boolean remove(int index) {
+		long old = mask;
+		mask &= ~(1L << index);
+		return mask != old;
+	}
+
+	/**
+	 * a method for checking if this set contains the specified card.
+	 *
+	 * @param card card to look for
+	 * @return true if the set contains the card
+	 */
+	public boolean contains(Card card) {
+		return contains(indexOf(card));
+	}
+
+	/**
+	 * a method for checking if this set contains the card at the specified bit
+	 * index.
+	 *
+	 * @param index bit index between 0 and 51
+	 * @return true if the set contains the card
+	 */
+	public boolean contains(int index) {
+		return (mask & (1L << index)) != 0;
+	}
+
+	/**
+	 * a method for checking if this set contains every card of the specified set.
+	 *
+	 * @param other set to look for
+	 * @return true if the other set is a subset of this set
+	 */
+	public boolean containsAll(CardSet other) {
+		return (other.mask & ~mask) == 0;
+	}
+
+	/**
+	 * a method for adding all cards of the specified set to this set.
+	 *
+	 * @param other set whose cards are added
+	 */
+	public void addAll(CardSet other) {
+		mask |= other.mask;
+	}
+
+	/**
+	 * a method for keeping only the cards that are also in the specified set.
+	 *
+	 * @param other set whose cards are kept
+	 */
+	public void retainAll(CardSet other) {
+		mask &= other.mask;
+	}
+
+	/**
+	 * a method for removing all cards of the specified set from this set.
+	 *
+	 * @param other set whose cards are removed
+	 */
+	public void removeAll(CardSet other) {
+		mask &= ~other.mask;
+	}
+
+	/**
+	 * a method for building the union of this set and the specified set.
+	 *
+	 * @param other set to combine with
+	 * @return a new set holding the cards of both sets
+	 */
+	public CardSet union(CardSet other) {
+		return new CardSet(mask | other.mask);
+	}
+
+	/**
+	 * a method for building the intersection of this set and the specified set.
+	 *
+	 * @param other set to combine with
+	 * @return a new set holding the cards found in both sets
+	 */
+	public CardSet intersection(CardSet other) {
+		return new CardSet(mask & other.mask);
+	}
+
+	/**
+	 * a method for building the difference of this set and the specified set.
+	 *
+	 * @param other set whose cards are left out
+	 * @return a new set holding the cards of this set that are not in the other
+	 */
+	public CardSet difference(CardSet other) {
+		return new CardSet(mask & ~other.mask);
+	}
+
+	/**
+	 * a method for getting the number of cards in this set.
+	 *
+	 * @return the number of cards in this set
+	 */
+	public int size() {
+		return Long.bitCount(mask);
+	}
+
+	/**
+	 * a method for checking if this set is empty.
+	 *
+	 * @return true if the set contains no cards
+	 */
+	public boolean isEmpty() {
+		return mask == 0;
+	}
+
+	/**
+	 * a method for removing all cards from this set.
+	 */
+	public void clear() {
+		mask = 0L;
+	}
+
+	/**
+	 * a method for counting the cards of the specified Big Two rank in this set.
+	 *
+	 * @param bigTwoRank Big Two rank between 0 ('3') and 12 ('2')
+	 * @return the number of cards of the rank
+	 */
+	public int countRank(int bigTwoRank) {
+		return countRank(mask, bigTwoRank);
+	}
+
+	/**
+	 * a method for counting the cards of the specified suit in this set.
+	 *
+	 * @param suit suit between 0 (Diamond) and 3 (Spade)
+	 * @return the number of cards of the suit
+	 */
+	public int countSuit(int suit) {
+		return countSuit(mask, suit);
+	}
+
+	/**
+	 * a method for converting this set to a list of cards sorted in Big Two
+	 * order.
+	 *
+	 * @return a list holding the cards of this set
+	 */
+	public CardList toCardList() {
+		CardList cards = new CardList();
+		for (long m = mask; m != 0; m &= m - 1)
+			cards.addCard(CARDS[Long.numberOfTrailingZeros(m)]);
+		return cards;
+	}
+
+	/**
+	 * a method for checking if this set holds the same cards as the specified
+	 * object.
+	 *
+	 * @param obj object to compare with
+	 * @return true if the object is a card set with the same cards
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof CardSet && ((CardSet) obj).mask == mask;
+	}
+
+	/**
+	 * a method for returning a hash code of this set.
+	 *
+	 * @return a hash code of this set
+	 */
+	@Override
+	public int hashCode() {
+		return Long.hashCode(mask);
+	}
+
+	/**
+	 * a method for returning a string representation of this set in Big Two
+	 * order.
+	 *
+	 * @return a string representation of this set
+	 */
+	@Override
+	public String toString() {
+		if (mask == 0)
+			return "[Empty]";
+		StringBuilder sb = new StringBuilder();
+		for (long m = mask; m != 0; m &= m - 1) {
+			if (sb.length() > 0)
+				sb.append(' ');
+			sb.append('[').append(CARDS[Long.numberOfTrailingZeros(m)]).append(']');
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,218 @@
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DirectColorModel;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import javax.imageio.ImageIO;
+
+/**
+ * The CardSprites class is used to hold the images of the cards and the players
+ * drawn on a Big Two table, scaled to the size they are drawn at. The image
+ * files are decoded only once per process, in parallel on the common fork/join
+ * pool (see preload()), and each CardSprites scales an image the first time it
+ * is drawn at a new size and keeps the result until the size changes again.
+ * Painting a table then only copies images that are already decoded and
+ * scaled. A CardSprites that does not wait (see setWaiting()) leaves out the
+ * images still being decoded, so a window can be painted before they are all
+ * ready and painted again when they are (see whenLoaded()).
+ */
+public class CardSprites {
+	/**
+	 * The directory of the image files.
+	 */
+	public static final String IMAGE_DIR = "src/image/";
+	// the index of the back of a card and of the first avatar among the images
+	private static final int BACK = CardSet.DECK_SIZE;
+	private static final int AVATARS = BACK + 1;
+	private static final int NUM_OF_IMAGES = AVATARS + BigTwo.MAX_PLAYER_NUM;
+	private static final char[] RANK_TO_CHAR = { 'a', '2', '3', '4', '5', '6', '7', '8', '9', '0', 'j', 'q', 'k' };
+	private static final char[] SUIT_TO_CHAR = { 'd', 'c', 'h', 's' };
+	// RGB with a 1-bit alpha, the format of a compatible BITMASK image
+	private static final ColorModel BITMASK_MODEL = new DirectColorModel(25, 0xFF0000, 0xFF00, 0xFF, 0x1000000);
+	// the decoding of each image, started by preload()
+	private static List<CompletableFuture<BufferedImage>> decoded = null;
+	// completed when all images have been decoded
+	private static CompletableFuture<Void> loaded = null;
+
+	private final BufferedImage[] scaled = new BufferedImage[NUM_OF_IMAGES];
+	private boolean waiting = true;
+	private int cardWidth = -1;
+	private int cardHeight = -1;
+	private int avatarSize = -1;
+
+	/**
+	 * a method for starting to decode all images in the background, if it has not
+	 * been started yet. It returns at once; the first CardSprites to draw an image
+	 * waits for it.
+	 */
+	public static synchronized void preload() {
+		if (decoded != null)
+			return;
+		decoded = new ArrayList<CompletableFuture<BufferedImage>>();
+		for (int i = 0; i < NUM_OF_IMAGES; i++) {
+			final String file = IMAGE_DIR + getFileName(i);
+			decoded.add(CompletableFuture.supplyAsync(new Supplier<BufferedImage>() {
+				@Override
+				public BufferedImage get() {
+					try {
+						return ImageIO.read(new File(file));
+					} catch (IOException e) {
+						return null; // a missing image is not drawn, as before
+					}
+				}
+			}, ForkJoinPool.commonPool()));
+		}
+		loaded = CompletableFuture.allOf(decoded.toArray(new CompletableFuture<?>[0]));
+	}
+
+	/**
+	 * a method for running the specified action once all images have been decoded,
+	 * on the thread that decoded the last one, or at once if they all have been.
+	 * 
+	 * @param action action to run
+	 */
+	public static void whenLoaded(Runnable action) {
+		preload();
+		loaded.thenRun(action);
+	}
+
+	/**
+	 * a method for choosing whether getCard() and getAvatar() wait for an image
+	 * that is still being decoded, which they do by default, or return null.
+	 * 
+	 * @param waiting whether to wait for the images
+	 */
+	public void setWaiting(boolean waiting) {
+		this.waiting = waiting;
+	}
+
+	/**
+	 * a method for setting the size the images are drawn at. The scaled images
+	 * are thrown away only if the size has changed.
+	 *
+	 * @param cardWidth  width of a card
+	 * @param cardHeight height of a card
+	 * @param avatarSize width and height of the image of a player
+	 */
+	public void setSize(int cardWidth, int cardHeight, int avatarSize) {
+		if (cardWidth != this.cardWidth || cardHeight != this.cardHeight) {
+			this.cardWidth = cardWidth;
+			this.cardHeight = cardHeight;
+			for (int i = 0; i <= BACK; i++)
+				scaled[i] = null;
+		}
+		if (avatarSize != this.avatarSize) {
+			this.avatarSize = avatarSize;
+			for (int i = AVATARS; i < NUM_OF_IMAGES; i++)
+				scaled[i] = null;
+		}
+	}
+
+	/**
+	 * a method for getting the image of a card at the size set by setSize().
+	 *
+	 * @param card   the card
+	 * @param faceup whether the face of the card is shown rather than its back
+	 * @return the image of the card, or null if it cannot be loaded (yet)
+	 */
+	public BufferedImage getCard(Card card, boolean faceup) {
+		return get(faceup ? CardSet.indexOf(card) : BACK, cardWidth, cardHeight);
+	}
+
+	/**
+	 * a method for getting the image of the specified player at the size set by
+	 * setSize().
+	 *
+	 * @param playerIdx index of the player
+	 * @return the image of the player, or null if it cannot be loaded (yet)
+	 */
+	public BufferedImage getAvatar(int playerIdx) {
+		return get(AVATARS + playerIdx, avatarSize, avatarSize);
+	}
+
+	private BufferedImage get(int i, int width, int height) {
+		if (scaled[i] == null && width > 0 && height > 0) {
+			BufferedImage original = getOriginal(i, waiting);
+			if (original != null)
+				scaled[i] = scale(original, width, height);
+		}
+		return scaled[i];
+	}
+
+	/**
+	 * a method for getting an image as decoded from its file, waiting for it if it
+	 * is still being decoded and wait is true.
+	 */
+	private static BufferedImage getOriginal(int i, boolean wait) {
+		preload();
+		if (!wait && !decoded.get(i).isDone())
+			return null;
+		try {
+			return decoded.get(i).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// an image that cannot be decoded is not drawn either
+		}
+		return null;
+	}
+
+	/**
+	 * a method for scaling an image once with bilinear interpolation, into an image
+	 * in the format of the screen if there is one. An image keeps the transparency
+	 * of its file: the images of the players stay opaque and the cards, whose
+	 * corners are transparent, get a 1-bit alpha. Such images are copied without
+	 * blending, which takes about half the time of drawing a translucent image.
+	 */
+	private static BufferedImage scale(BufferedImage original, int width, int height) {
+		int transparency = original.getColorModel().getTransparency();
+		BufferedImage image;
+		if (GraphicsEnvironment.isHeadless()) {
+			if (transparency == Transparency.OPAQUE)
+				image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			else if (transparency == Transparency.BITMASK)
+				image = new BufferedImage(BITMASK_MODEL, BITMASK_MODEL.createCompatibleWritableRaster(width, height),
+						false, null);
+			else
+				image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		} else {
+			GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+					.getDefaultConfiguration();
+			image = config.createCompatibleImage(width, height, transparency);
+		}
+		Graphics2D g = image.createGraphics();
+		try {
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			g.drawImage(original, 0, 0, width, height, null);
+		} finally {
+			g.dispose();
+		}
+		return image;
+	}
+
+	/**
+	 * a method for getting the name of the file of an image: the rank and suit of a
+	 * card, "b" for the back of a card and "player<i>" for a player.
+	 */
+	private static String getFileName(int i) {
+		if (i < BACK)
+			return "" + RANK_TO_CHAR[CardSet.getCard(i).getRank()] + SUIT_TO_CHAR[CardSet.getCard(i).getSuit()]
+					+ ".gif";
+		if (i == BACK)
+			return "b.gif";
+		return "player" + (i - AVATARS) + ".jpg";
+	}
+}
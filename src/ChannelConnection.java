@@ -0,0 +1,253 @@
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class is used to model a non-blocking connection to a client, served
+ * by a ServerEventLoop. Messages travel as frames (see FrameCodec).
+ * <p>
+ * Incoming bytes are collected until a whole frame has arrived, which is then
+ * decoded and passed to the server on the loop thread. A frame that stays
+ * incomplete for longer than FRAME_TIMEOUT closes the connection, so a client
+ * trickling bytes cannot hold a buffer forever. Outgoing messages are encoded
+ * by the sending thread and put in a bounded OutboundQueue; the loop writes as
+ * much as the socket takes and waits for OP_WRITE for the rest, so a slow
+ * client never blocks the sender unless the server uses the BLOCK policy.
+ * <p>
+ * Messages are serialized until the client sends a message in the binary
+ * format of BinaryCodec; from then on the connection answers in that format.
+ */
+public class ChannelConnection extends ClientConnection {
+	/**
+	 * The time in milliseconds a client may take to send a frame once it has
+	 * started it.
+	 */
+	public static final long FRAME_TIMEOUT = 30000;
+	private static final int INITIAL_BUFFER_SIZE = 1024;
+	private final ServerEventLoop loop;
+	private final CardGameServer server;
+	private final SocketChannel channel;
+	private final SelectionKey key;
+	private final SocketAddress remoteAddress;
+	private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+	private long frameStarted = 0; // when the pending frame started, or 0
+	private final OutboundQueue writeQueue;
+	private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+	private volatile boolean closed = false;
+	private volatile boolean binary = false; // whether the client speaks binary
+	private final Runnable flushTask = new Runnable() {
+		public void run() {
+			flushScheduled.set(false);
+			flush();
+		}
+	};
+
+	/**
+	 * Creates and returns an instance of the ChannelConnection class.
+	 *
+	 * @param loop
+	 *            the loop serving the connection
+	 * @param server
+	 *            the server receiving the messages
+	 * @param channel
+	 *            the channel of the connection
+	 * @param key
+	 *            the key of the channel in the selector of the loop
+	 */
+	public ChannelConnection(ServerEventLoop loop, CardGameServer server,
+			SocketChannel channel, SelectionKey key) {
+		this.loop = loop;
+		this.server = server;
+		this.channel = channel;
+		this.key = key;
+		this.remoteAddress = channel.socket().getRemoteSocketAddress();
+		this.writeQueue = server.createOutboundQueue();
+	}
+
+	public SocketAddress getRemoteSocketAddress() {
+		return remoteAddress;
+	}
+
+	/**
+	 * Queues the specified message for the client. The message is encoded on
+	 * the calling thread, unless another recipient has already encoded it in
+	 * the same format, and written by the loop.
+	 *
+	 * @param message
+	 *            the message to be sent
+	 * @throws IOException
+	 *             if the connection is closed, the message cannot be encoded
+	 *             or the queue overflows
+	 */
+	public void sendMessage(EncodedMessage message) throws IOException {
+		if (closed)
+			throw new IOException("Connection closed");
+		boolean chat = message.getMessage().getType() == CardGameMessage.MSG;
+		try {
+			// each recipient gets its own position over the shared frame; no
+			// loop thread may wait for a queue, since it may be the one
+			// emptying it or hold up the connections of its own loop
+			if (!writeQueue.add(ByteBuffer.wrap(message.getFrame(binary)), chat,
+					!ServerEventLoop.inAnyLoop()))
+				return;
+			if (writeQueue.isOverCapacity())
+				deferWait();
+		} catch (IOException ex) {
+			if (writeQueue.isClosed()) {
+				server.println("Disconnects the client at " + remoteAddress
+						+ ": " + ex.getMessage());
+				// closes on the loop, not in the middle of a broadcast
+				closeAfter(0);
+			}
+			throw ex;
+		}
+		if (loop.inLoop())
+			flush();
+		else if (flushScheduled.compareAndSet(false, true))
+			loop.execute(flushTask);
+	}
+
+	void awaitQueue() {
+		try {
+			writeQueue.awaitRoom();
+		} catch (IOException ex) {
+			server.println("Disconnects the client at " + remoteAddress + ": "
+					+ ex.getMessage());
+			closeAfter(0);
+		}
+	}
+
+	public void closeAfter(long millis) {
+		loop.schedule(millis, new Runnable() {
+			public void run() {
+				close();
+			}
+		});
+	}
+
+	/**
+	 * Reads the available bytes and passes every complete frame to the server.
+	 * Must be called on the loop thread.
+	 */
+	void read() {
+		try {
+			if (channel.read(readBuffer) < 0) {
+				close();
+				return;
+			}
+			readBuffer.flip();
+			while (readBuffer.remaining() >= FrameCodec.HEADER_SIZE) {
+				int start = readBuffer.position();
+				int length = readBuffer.getInt(start);
+				if (!FrameCodec.isValidLength(length))
+					throw new IOException("Invalid frame length: " + length);
+				if (readBuffer.remaining() < FrameCodec.HEADER_SIZE + length) {
+					ensureCapacity(FrameCodec.HEADER_SIZE + length);
+					break;
+				}
+				int body = start + FrameCodec.HEADER_SIZE;
+				if (!binary && BinaryCodec.isBinary(readBuffer.array(), body,
+						length)) {
+					binary = true;
+					server.println("The client at " + remoteAddress
+							+ " uses the binary protocol");
+				}
+				CardGameMessage message = FrameCodec.decode(
+						readBuffer.array(), body, length);
+				readBuffer.position(start + FrameCodec.HEADER_SIZE + length);
+				server.println("Message received from " + remoteAddress);
+				server.parseMessage(this, message);
+				if (closed)
+					return;
+			}
+			readBuffer.compact();
+			if (readBuffer.position() == 0)
+				frameStarted = 0;
+			else if (frameStarted == 0)
+				frameStarted = System.currentTimeMillis();
+		} catch (IOException ex) {
+			server.println("Error in receiving messages from the client at "
+					+ remoteAddress);
+			if (!server.silentMode) ex.printStackTrace();
+			close();
+		}
+	}
+
+	/**
+	 * Grows the read buffer so that it can hold a frame of the specified size.
+	 * The buffer is in read mode, holding the unread bytes.
+	 *
+	 * @param size
+	 *            the size of the frame including its length field
+	 */
+	private void ensureCapacity(int size) {
+		if (readBuffer.capacity() < size) {
+			ByteBuffer bigger = ByteBuffer.allocate(size);
+			bigger.put(readBuffer);
+			bigger.flip();
+			readBuffer = bigger;
+		}
+	}
+
+	/**
+	 * Writes the queued frames as far as the socket takes them, and waits for
+	 * OP_WRITE if it does not take them all. Must be called on the loop thread.
+	 */
+	void flush() {
+		if (closed)
+			return;
+		try {
+			ByteBuffer buffer;
+			while ((buffer = writeQueue.peek()) != null) {
+				channel.write(buffer);
+				if (buffer.hasRemaining()) {
+					key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+					return;
+				}
+				writeQueue.remove();
+			}
+			key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+		} catch (IOException ex) {
+			server.println("Error in sending messages to the client at "
+					+ remoteAddress);
+			if (!server.silentMode) ex.printStackTrace();
+			close();
+		}
+	}
+
+	/**
+	 * Closes the connection if a frame has been pending for too long. Must be
+	 * called on the loop thread.
+	 *
+	 * @param now
+	 *            the current time in milliseconds
+	 */
+	void checkStalled(long now) {
+		if (frameStarted != 0 && now - frameStarted > FRAME_TIMEOUT) {
+			server.println("Timed out waiting for a message from the client at "
+					+ remoteAddress);
+			close();
+		}
+	}
+
+	/**
+	 * Closes the connection and removes it from the server. Must be called on
+	 * the loop thread.
+	 */
+	void close() {
+		if (closed)
+			return;
+		closed = true;
+		key.cancel();
+		try {
+			channel.close();
+		} catch (IOException ex) {
+			if (!server.silentMode) ex.printStackTrace();
+		}
+		writeQueue.close();
+		server.removeConnection(this);
+	}
+}
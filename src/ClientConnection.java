@@ -0,0 +1,99 @@
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+
+/**
+ * This class is used to model the connection between a card game server and
+ * one of its clients. The server only talks to its clients through this
+ * class, so that the same game logic serves both the classic blocking
+ * connections (one thread per client) and the non-blocking connections of the
+ * event loops.
+ */
+public abstract class ClientConnection {
+	// the connections each thread has to wait for in awaitRoom()
+	private static final ThreadLocal<ArrayList<ClientConnection>> waiting =
+			new ThreadLocal<ArrayList<ClientConnection>>() {
+		protected ArrayList<ClientConnection> initialValue() {
+			return new ArrayList<ClientConnection>();
+		}
+	};
+	// the table at which the client is seated, or null
+	volatile CardGameTable table = null;
+	// the version of the protocol spoken by the client, 0 for a classic
+	// client (see CardGameMessage.PROTOCOL)
+	volatile int protocolVersion = 0;
+
+	/**
+	 * Makes the calling thread wait for room in the outbound queue of this
+	 * connection the next time it calls awaitRoom(), i.e. once it has left
+	 * the table it is sending for.
+	 */
+	void deferWait() {
+		ArrayList<ClientConnection> connections = waiting.get();
+		if (!connections.contains(this))
+			connections.add(this);
+	}
+
+	/**
+	 * Waits for room in the outbound queues the calling thread has filled
+	 * over their capacity (see OverflowPolicy.BLOCK), disconnecting the
+	 * clients that make no room in time. It must be called while holding no
+	 * table and not on an event loop.
+	 */
+	static void awaitRoom() {
+		ArrayList<ClientConnection> connections = waiting.get();
+		if (connections.isEmpty())
+			return;
+		ClientConnection[] pending = connections
+				.toArray(new ClientConnection[connections.size()]);
+		connections.clear();
+		for (ClientConnection connection : pending)
+			connection.awaitQueue();
+	}
+
+	/**
+	 * Waits for room in the outbound queue of this connection, and
+	 * disconnects the client if no room is made in time.
+	 */
+	abstract void awaitQueue();
+
+	/**
+	 * Returns the address of the client.
+	 *
+	 * @return the remote address of the connection
+	 */
+	public abstract SocketAddress getRemoteSocketAddress();
+
+	/**
+	 * Sends the specified message to the client.
+	 *
+	 * @param message
+	 *            the message to be sent
+	 * @throws IOException
+	 *             if the message cannot be sent
+	 */
+	public void sendMessage(CardGameMessage message) throws IOException {
+		sendMessage(new EncodedMessage(message));
+	}
+
+	/**
+	 * Sends the specified encoded message to the client, reusing the encoding
+	 * shared with the other recipients of the message.
+	 *
+	 * @param message
+	 *            the message to be sent
+	 * @throws IOException
+	 *             if the message cannot be sent
+	 */
+	public abstract void sendMessage(EncodedMessage message)
+			throws IOException;
+
+	/**
+	 * Closes the connection after the specified delay, e.g. to give the client
+	 * time to read a FULL message.
+	 *
+	 * @param millis
+	 *            the delay in milliseconds
+	 */
+	public abstract void closeAfter(long millis);
+}
@@ -0,0 +1,177 @@
+import java.security.SecureRandom;
+import java.util.SplittableRandom;
+
+/**
+ * The DealGenerator class is used to shuffle and deal Big Two cards from a
+ * seed. It runs an unbiased Fisher-Yates shuffle driven by a SplittableRandom,
+ * so the same seed always gives the same deal, and a generator can be split
+ * into independent generators for other threads.
+ * <p>
+ * The shuffle works on the positions of the cards in a fresh deck (see
+ * Deck.initialize()), where the card at position p has hashCode() p. Dealing
+ * gives the card at position p of the shuffled deck to seat p % 4, just like
+ * BigTwoEngine.start() does with a Deck. Hence the seat masks from deal(seed)
+ * hold the same cards as the players after starting a game with a fresh deck
+ * shuffled by Deck.shuffle(seed), and a logged seed is enough to replay a game.
+ */
+public class DealGenerator {
+	/**
+	 * The number of cards in a deck.
+	 */
+	public static final int DECK_SIZE = 52;
+	// CardSet mask of the card at each position of a fresh deck
+	private static final long[] MASK_AT = new long[DECK_SIZE];
+	private static final int[] FRESH_DECK = new int[DECK_SIZE];
+	private static final SecureRandom SEEDS = new SecureRandom();
+
+	static {
+		for (int p = 0; p < DECK_SIZE; p++)
+			MASK_AT[p] = CardSet.maskOf(Card.valueOf(p / 13, p % 13));
+		for (int p = 0; p < DECK_SIZE; p++)
+			FRESH_DECK[p] = p;
+	}
+
+	private final SplittableRandom random;
+	private final int[] order = new int[DECK_SIZE]; // scratch for deal()
+
+	/**
+	 * a constructor for creating a generator whose deals are fixed by the
+	 * specified seed.
+	 *
+	 * @param seed seed of the generator
+	 */
+	public DealGenerator(long seed) {
+		this(new SplittableRandom(seed));
+	}
+
+	/**
+	 * a constructor for creating a generator on top of the specified random
+	 * number generator.
+	 *
+	 * @param random random number generator to draw from
+	 */
+	private DealGenerator(SplittableRandom random) {
+		this.random = random;
+	}
+
+	/**
+	 * a method for creating an unpredictable seed, e.g. for a game on the server.
+	 *
+	 * @return a new seed
+	 */
+	public static long newSeed() {
+		return SEEDS.nextLong();
+	}
+
+	/**
+	 * a method for creating a new generator that shares no state with this one, so
+	 * that it can be handed to another thread.
+	 *
+	 * @return a new generator
+	 */
+	public DealGenerator split() {
+		return new DealGenerator(random.split());
+	}
+
+	/**
+	 * a method for drawing a seed from this generator, e.g. to log the deal of a
+	 * game before dealing it with deal(seed, hands).
+	 *
+	 * @return a seed
+	 */
+	public long nextSeed() {
+		return random.nextLong();
+	}
+
+	/**
+	 * a method for shuffling the specified positions with an unbiased Fisher-Yates
+	 * shuffle.
+	 *
+	 * @param positions array to shuffle in place
+	 */
+	public void shuffle(int[] positions) {
+		for (int i = positions.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = positions[i];
+			positions[i] = positions[j];
+			positions[j] = tmp;
+		}
+	}
+
+	/**
+	 * a method for shuffling the specified deck in place, with the same sequence
+	 * of swaps as shuffle(int[]).
+	 *
+	 * @param deck deck to shuffle
+	 */
+	public void shuffle(Deck deck) {
+		for (int i = deck.size() - 1; i > 0; i--)
+			deck.swapCards(i, random.nextInt(i + 1));
+	}
+
+	/**
+	 * a method for dealing a shuffled deck to 4 seats as CardSet masks.
+	 *
+	 * @param hands array of 4 receiving the mask of each seat
+	 */
+	public void deal(long[] hands) {
+		System.arraycopy(FRESH_DECK, 0, order, 0, DECK_SIZE);
+		shuffle(order);
+		long h0 = 0, h1 = 0, h2 = 0, h3 = 0;
+		for (int p = 0; p < DECK_SIZE; p += 4) {
+			h0 |= MASK_AT[order[p]];
+			h1 |= MASK_AT[order[p + 1]];
+			h2 |= MASK_AT[order[p + 2]];
+			h3 |= MASK_AT[order[p + 3]];
+		}
+		hands[0] = h0;
+		hands[1] = h1;
+		hands[2] = h2;
+		hands[3] = h3;
+	}
+
+	/**
+	 * a method for dealing the deck shuffled by the specified seed to 4 seats.
+	 *
+	 * @param seed  seed of the deal
+	 * @param hands array of 4 receiving the mask of each seat
+	 */
+	public static void deal(long seed, long[] hands) {
+		new DealGenerator(seed).deal(hands);
+	}
+
+	/**
+	 * main() method for measuring the throughput of the generator.
+	 *
+	 * @param args the number of deals per thread (default 10000000)
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		final long deals = args.length > 0 ? Long.parseLong(args[0]) : 10000000;
+		int threads = Runtime.getRuntime().availableProcessors();
+		final DealGenerator root = new DealGenerator(newSeed());
+		final long[] sinks = new long[threads];
+		Thread[] workers = new Thread[threads];
+		long start = System.nanoTime();
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			final DealGenerator generator = root.split();
+			workers[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					long[] hands = new long[4];
+					long sink = 0;
+					for (long i = 0; i < deals; i++) {
+						generator.deal(hands);
+						sink ^= hands[0];
+					}
+					sinks[id] = sink;
+				}
+			});
+			workers[t].start();
+		}
+		for (Thread worker : workers)
+			worker.join();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d threads: %.1f million deals/s%n", threads, deals * threads / seconds / 1e6);
+	}
+}
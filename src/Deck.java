@@ -20,22 +20,26 @@ public class Deck extends CardList {
 		removeAllCards();
 		for (int i = 0; i < 4; i++) {
 			for (int j = 0; j < 13; j++) {
-				Card card = new Card(i, j);
+				Card card = Card.valueOf(i, j);
 				addCard(card);
 			}
 		}
 	}
 
 	/**
-	 * Shuffles the deck of cards.
+	 * Shuffles the deck of cards with a new, unpredictable seed.
 	 */
 	public void shuffle() {
-		for (int i = 0; i < this.size(); i++) {
-			int j = (int) (Math.random() * this.size());
-			if (i != j) {
-				Card card = setCard(i, getCard(j));
-				setCard(j, card);
-			}
-		}
+		shuffle(DealGenerator.newSeed());
+	}
+
+	/**
+	 * Shuffles the deck of cards with the specified seed. Shuffling a fresh deck
+	 * with the same seed always gives the same order (see DealGenerator).
+	 * 
+	 * @param seed the seed of the shuffle
+	 */
+	public void shuffle(long seed) {
+		new DealGenerator(seed).shuffle(this);
 	}
 }
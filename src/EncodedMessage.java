@@ -0,0 +1,97 @@
+import java.io.IOException;
+import java.io.ObjectStreamConstants;
+
+/**
+ * This class is used to model a message of a card game encoded once for all
+ * its recipients. Each encoding is computed the first time a recipient needs
+ * it and then shared: a binary frame (see BinaryCodec), a serialized frame
+ * (see FrameCodec), and the bytes that continue the serialization stream of a
+ * classic client. Broadcasting a message to a table therefore costs one
+ * encoding per format in use, however many clients receive it. The arrays are
+ * never modified once computed.
+ * <p>
+ * A classic client reads one endless ObjectInputStream, whose table of
+ * back-references grows with every object. The stream bytes therefore start
+ * with TC_RESET, which clears that table, followed by the message as a fresh
+ * ObjectOutputStream writes it (without the stream header). They mean the same
+ * to every client, whatever it has received before.
+ * <p>
+ * An instance is meant to be used by the thread broadcasting it; the arrays
+ * it returns may be handed to other threads.
+ */
+public class EncodedMessage {
+	// length of the stream header (magic number and version) of a stream
+	private static final int STREAM_HEADER_SIZE = 4;
+	private final CardGameMessage message;
+	private byte[] binaryFrame = null;
+	private byte[] serializedFrame = null;
+	private byte[] streamBytes = null;
+
+	/**
+	 * Creates and returns an instance of the EncodedMessage class.
+	 *
+	 * @param message
+	 *            the message to be encoded
+	 */
+	public EncodedMessage(CardGameMessage message) {
+		this.message = message;
+	}
+
+	/**
+	 * Returns the message.
+	 *
+	 * @return the message
+	 */
+	public CardGameMessage getMessage() {
+		return message;
+	}
+
+	/**
+	 * Returns the message as a frame in the specified format.
+	 *
+	 * @param binary
+	 *            true for the format of BinaryCodec; false for serialization
+	 * @return the frame, including its length field; must not be modified
+	 * @throws IOException
+	 *             if the message cannot be encoded
+	 */
+	public byte[] getFrame(boolean binary) throws IOException {
+		if (!binary)
+			return getSerializedFrame();
+		if (binaryFrame == null) {
+			binaryFrame = FrameCodec.encode(message, true);
+			// messages the binary format cannot hold are serialized
+			if (!BinaryCodec.isBinary(binaryFrame, FrameCodec.HEADER_SIZE,
+					binaryFrame.length - FrameCodec.HEADER_SIZE))
+				serializedFrame = binaryFrame;
+		}
+		return binaryFrame;
+	}
+
+	/**
+	 * Returns the bytes that write the message to the serialization stream of
+	 * a classic client.
+	 *
+	 * @return TC_RESET followed by the serialized message; must not be
+	 *         modified
+	 * @throws IOException
+	 *             if the message cannot be serialized
+	 */
+	public byte[] getStreamBytes() throws IOException {
+		if (streamBytes == null) {
+			byte[] frame = getSerializedFrame();
+			int offset = FrameCodec.HEADER_SIZE + STREAM_HEADER_SIZE;
+			byte[] bytes = new byte[1 + frame.length - offset];
+			bytes[0] = ObjectStreamConstants.TC_RESET;
+			System.arraycopy(frame, offset, bytes, 1, frame.length - offset);
+			streamBytes = bytes;
+		}
+		return streamBytes;
+	}
+
+	private byte[] getSerializedFrame() throws IOException {
+		if (serializedFrame == null)
+			serializedFrame = FrameCodec.encode(message);
+		return serializedFrame;
+	}
+}
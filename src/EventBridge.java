@@ -0,0 +1,75 @@
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * The EventBridge class is used to run a task on the event dispatch thread on
+ * behalf of other threads, e.g. to apply the updates of the GUI collected
+ * while the messages from the server are being read. A request only schedules
+ * the task and returns at once, and however many requests are made, the task
+ * runs at most once per FRAME_INTERVAL: a burst of messages becomes a single
+ * update of the GUI. A request made while the task runs makes it run once
+ * more, so nothing requested is missed.
+ */
+public class EventBridge implements Runnable, ActionListener {
+	/**
+	 * The shortest time in milliseconds between two runs of the task, about one
+	 * frame of the screen.
+	 */
+	public static final int FRAME_INTERVAL = 16;
+	private final Runnable task;
+	private final Timer timer; // delays a run that would come too soon
+	private boolean scheduled = false; // whether a run is pending
+	private long lastRun; // the value of System.nanoTime() at the last run
+
+	/**
+	 * a constructor for creating a bridge running the specified task.
+	 *
+	 * @param task task to run on the event dispatch thread
+	 */
+	public EventBridge(Runnable task) {
+		this.task = task;
+		timer = new Timer(FRAME_INTERVAL, this);
+		timer.setRepeats(false);
+		lastRun = System.nanoTime() - FRAME_INTERVAL * 1000000L;
+	}
+
+	/**
+	 * a method for asking for the task to run. It may be called from any thread
+	 * and never waits for the task.
+	 */
+	public synchronized void request() {
+		if (scheduled)
+			return;
+		scheduled = true;
+		long wait = lastRun + FRAME_INTERVAL * 1000000L - System.nanoTime();
+		if (wait <= 0)
+			SwingUtilities.invokeLater(this);
+		else {
+			timer.setInitialDelay((int) ((wait + 999999) / 1000000));
+			timer.restart();
+		}
+	}
+
+	/**
+	 * a method for running the task, which is called on the event dispatch thread.
+	 */
+	@Override
+	public void run() {
+		synchronized (this) {
+			scheduled = false;
+			lastRun = System.nanoTime();
+		}
+		task.run();
+	}
+
+	/**
+	 * a method for running the task when the timer fires.
+	 */
+	@Override
+	public void actionPerformed(ActionEvent e) {
+		run();
+	}
+}
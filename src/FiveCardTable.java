@@ -0,0 +1,307 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * The FiveCardTable class is used to model a lookup table holding the strength
+ * key (see HandClassifier) of every one of the C(52,5) = 2,598,960 five-card
+ * combinations. A combination is mapped to its slot by the combinatorial
+ * number system, which is a perfect hash: the sorted CardSet indices c0 &lt; c1
+ * &lt; ... &lt; c4 go to slot C(c0,1) + C(c1,2) + ... + C(c4,5). Each slot is a
+ * 16-bit strength key, or 0 if the cards do not form a valid hand.
+ * <p>
+ * The table is generated once, saved to a compact binary file (a 16-byte
+ * header followed by the slots, about 5 MB) and memory-mapped on startup, so
+ * that classifying or comparing five-card hands is a single indexed read. The
+ * header holds a CRC-32 of the slots, so that a truncated or damaged file is
+ * generated again rather than trusted.
+ * The file is read from the path given by the system property FILE_PROPERTY,
+ * or from DEFAULT_FILE if the property is not set. Running this class with
+ * "rebuild" regenerates the file, and with "verify" checks every slot against
+ * the Hand subclasses.
+ */
+public class FiveCardTable {
+	/**
+	 * The default location of the table file.
+	 */
+	public static final String DEFAULT_FILE = "src/data/fivecard.tbl";
+	/**
+	 * The name of the system property holding the location of the table file.
+	 */
+	public static final String FILE_PROPERTY = "bigtwo.fivecard.file";
+	/**
+	 * The number of five-card combinations in a deck.
+	 */
+	public static final int SIZE = 2598960;
+	private static final int MAGIC = 0x42325435; // "B2T5"
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 16; // magic, version, size, CRC-32
+	// BINOMIAL[n][k] = C(n, k) for n <= 52 and k <= 5
+	private static final int[][] BINOMIAL = new int[CardSet.DECK_SIZE + 1][6];
+	private static FiveCardTable instance = null;
+
+	static {
+		for (int n = 0; n <= CardSet.DECK_SIZE; n++) {
+			BINOMIAL[n][0] = 1;
+			for (int k = 1; k <= 5 && k <= n; k++)
+				BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + (k <= n - 1 ? BINOMIAL[n - 1][k] : 0);
+		}
+	}
+
+	private final ByteBuffer buffer;
+
+	/**
+	 * a constructor for building a table on top of the specified buffer, which
+	 * holds the header followed by the slots.
+	 *
+	 * @param buffer buffer holding the table
+	 */
+	private FiveCardTable(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	/**
+	 * a method for getting the location of the table file, which is the value of
+	 * the system property FILE_PROPERTY if it is set, or DEFAULT_FILE.
+	 *
+	 * @return the table file
+	 */
+	public static File getFile() {
+		return new File(System.getProperty(FILE_PROPERTY, DEFAULT_FILE));
+	}
+
+	/**
+	 * a method for retrieving the shared table. The table is memory-mapped from
+	 * getFile(); if the file is missing or damaged, the table is generated and
+	 * saved there for the next start. If the file cannot be written, the
+	 * generated table is kept in memory only. As this may take a while, servers
+	 * and clients call it once on startup rather than on the first five-card
+	 * hand.
+	 *
+	 * @return the shared table
+	 */
+	public static synchronized FiveCardTable getInstance() {
+		if (instance == null) {
+			File file = getFile();
+			try {
+				instance = load(file);
+			} catch (IOException e) {
+				instance = build();
+				try {
+					instance.save(file);
+				} catch (IOException e2) {
+					// keep the table in memory only
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * a method for memory-mapping a table from the specified file.
+	 *
+	 * @param file file written by save()
+	 * @return the table mapped from the file
+	 * @throws IOException if the file cannot be read or is not a valid table
+	 */
+	public static FiveCardTable load(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			if (channel.size() != HEADER_SIZE + 2L * SIZE)
+				throw new IOException("Wrong size for a five-card table: " + file);
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != SIZE)
+				throw new IOException("Not a five-card table: " + file);
+			if (buffer.getInt(12) != checksum(buffer))
+				throw new IOException("Damaged five-card table: " + file);
+			return new FiveCardTable(buffer);
+		}
+	}
+
+	/**
+	 * a method for generating a table in memory with HandClassifier.
+	 *
+	 * @return the generated table
+	 */
+	public static FiveCardTable build() {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(HEADER_SIZE + 2 * SIZE);
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, VERSION);
+		buffer.putInt(8, SIZE);
+		for (long a = CardSet.FULL_DECK; a != 0; a &= a - 1) {
+			long ma = a & -a;
+			for (long b = a & (a - 1); b != 0; b &= b - 1) {
+				long mb = ma | (b & -b);
+				for (long c = b & (b - 1); c != 0; c &= c - 1) {
+					long mc = mb | (c & -c);
+					for (long d = c & (c - 1); d != 0; d &= d - 1) {
+						long md = mc | (d & -d);
+						for (long e = d & (d - 1); e != 0; e &= e - 1) {
+							long mask = md | (e & -e);
+							buffer.putShort(HEADER_SIZE + 2 * indexOf(mask), (short) HandClassifier.classify(mask));
+						}
+					}
+				}
+			}
+		}
+		buffer.putInt(12, checksum(buffer));
+		return new FiveCardTable(buffer);
+	}
+
+	/**
+	 * a method for computing the CRC-32 of the slots of a table.
+	 *
+	 * @param buffer buffer holding the header followed by the slots
+	 * @return the CRC-32 of the slots
+	 */
+	private static int checksum(ByteBuffer buffer) {
+		ByteBuffer slots = buffer.duplicate();
+		slots.clear().position(HEADER_SIZE);
+		CRC32 crc = new CRC32();
+		crc.update(slots);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * a method for saving this table to the specified file.
+	 *
+	 * @param file file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(File file) throws IOException {
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null)
+			dir.mkdirs();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+			channel.truncate(0);
+			ByteBuffer src = buffer.duplicate();
+			src.clear();
+			while (src.hasRemaining())
+				channel.write(src);
+		}
+	}
+
+	/**
+	 * a method for getting the slot of a five-card mask.
+	 *
+	 * @param mask CardSet mask holding exactly five cards
+	 * @return the slot of the combination, between 0 and SIZE - 1
+	 */
+	public static int indexOf(long mask) {
+		int index = 0;
+		for (int k = 1; k <= 5; k++) {
+			index += BINOMIAL[Long.numberOfTrailingZeros(mask)][k];
+			mask &= mask - 1;
+		}
+		return index;
+	}
+
+	/**
+	 * a method for looking up the strength key of a five-card mask.
+	 *
+	 * @param mask CardSet mask holding exactly five cards
+	 * @return the strength key of the hand, or HandClassifier.INVALID
+	 */
+	public int getStrength(long mask) {
+		return buffer.getShort(HEADER_SIZE + 2 * indexOf(mask));
+	}
+
+	/**
+	 * a method for classifying the specified CardSet mask like
+	 * HandClassifier.classify(), looking five-card masks up in the shared table.
+	 *
+	 * @param mask mask of the cards to classify
+	 * @return the strength key of the hand, or HandClassifier.INVALID
+	 */
+	public static int classify(long mask) {
+		return Long.bitCount(mask) == 5 ? getInstance().getStrength(mask) : HandClassifier.classify(mask);
+	}
+
+	/**
+	 * a method for comparing two five-card masks.
+	 *
+	 * @param a CardSet mask holding exactly five cards
+	 * @param b CardSet mask holding exactly five cards
+	 * @return a negative integer, zero, or a positive integer when the first hand
+	 *         is weaker than, as strong as, or stronger than the second; an
+	 *         invalid hand is weaker than any valid one
+	 */
+	public int compare(long a, long b) {
+		return Integer.compare(getStrength(a), getStrength(b));
+	}
+
+	/**
+	 * a method for checking every slot of this table against the Hand subclasses,
+	 * trying them in the same order as BigTwo.composeHand() did before
+	 * HandClassifier was introduced.
+	 *
+	 * @return the number of slots that disagree with the Hand subclasses
+	 */
+	public int verify() {
+		int errors = 0;
+		CardList cards = new CardList();
+		for (int c4 = 4; c4 < CardSet.DECK_SIZE; c4++)
+			for (int c3 = 3; c3 < c4; c3++)
+				for (int c2 = 2; c2 < c3; c2++)
+					for (int c1 = 1; c1 < c2; c1++)
+						for (int c0 = 0; c0 < c1; c0++) {
+							cards.removeAllCards();
+							cards.addCard(CardSet.getCard(c0));
+							cards.addCard(CardSet.getCard(c1));
+							cards.addCard(CardSet.getCard(c2));
+							cards.addCard(CardSet.getCard(c3));
+							cards.addCard(CardSet.getCard(c4));
+							if (getStrength(cards.getMask()) != expectedStrength(cards))
+								errors++;
+						}
+		return errors;
+	}
+
+	/**
+	 * a method for computing the strength key of five cards with the Hand
+	 * subclasses.
+	 *
+	 * @param cards five cards in Big Two order
+	 * @return the strength key of the hand, or HandClassifier.INVALID
+	 */
+	private static int expectedStrength(CardList cards) {
+		Hand[] hands = { new StraightFlush(null, cards), new Quad(null, cards), new FullHouse(null, cards),
+				new Flush(null, cards), new Straight(null, cards) };
+		int[] types = { HandClassifier.STRAIGHT_FLUSH, HandClassifier.QUAD, HandClassifier.FULL_HOUSE,
+				HandClassifier.FLUSH, HandClassifier.STRAIGHT };
+		for (int i = 0; i < hands.length; i++)
+			if (hands[i].isValid())
+				return HandClassifier.key(types[i], CardSet.indexOf(hands[i].getTopCard()));
+		return HandClassifier.INVALID;
+	}
+
+	/**
+	 * a method for rebuilding or verifying the table file.
+	 *
+	 * @param args "rebuild" or "verify", optionally followed by the path of the
+	 *             table file (getFile() if omitted)
+	 */
+	public static void main(String[] args) throws IOException {
+		String mode = args.length > 0 ? args[0] : "verify";
+		File file = args.length > 1 ? new File(args[1]) : getFile();
+		if (mode.equals("rebuild")) {
+			long start = System.nanoTime();
+			FiveCardTable table = build();
+			table.save(file);
+			System.out.println("Wrote " + file + " in " + (System.nanoTime() - start) / 1000000 + " ms.");
+		} else if (mode.equals("verify")) {
+			long start = System.nanoTime();
+			FiveCardTable table = load(file);
+			System.out.println("Mapped " + file + " in " + (System.nanoTime() - start) / 1000 + " us.");
+			int errors = table.verify();
+			System.out.println(errors == 0 ? "All " + SIZE + " combinations match the Hand subclasses."
+					: errors + " combinations do not match the Hand subclasses.");
+			if (errors != 0)
+				System.exit(1);
+		} else {
+			System.out.println("Usage: java FiveCardTable rebuild|verify [file]");
+		}
+	}
+}
@@ -15,6 +15,17 @@ public class Flush extends Hand {
 		super(player, cards);
 	}
 
+	/**
+	 * a constructor for building a flush with the specified player and set of
+	 * cards.
+	 * 
+	 * @param player player who played the hand
+	 * @param cards  cards the player played
+	 */
+	public Flush(CardGamePlayer player, CardSet cards) {
+		super(player, cards);
+	}
+
 	/**
 	 * a method for checking if this is a valid flush
 	 * 
@@ -43,4 +54,14 @@ public class Flush extends Hand {
 	public String getType() {
 		return "Flush";
 	}
+
+	/**
+	 * a method for returning the type of this hand i.e. flush.
+	 * 
+	 * @return the type of this hand i.e. HandType.FLUSH
+	 */
+	@Override
+	public HandType getHandType() {
+		return HandType.FLUSH;
+	}
 }
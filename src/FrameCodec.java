@@ -0,0 +1,182 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * This class is used to encode and decode the messages of a card game as
+ * frames. A frame is a 4-byte big-endian length followed by that many bytes of
+ * a self-contained serialization stream holding one message. Unlike one
+ * endless ObjectOutputStream per connection, frames can be read by a
+ * non-blocking server a few bytes at a time: it waits until a whole frame has
+ * arrived and only then decodes it.
+ * <p>
+ * A server using frames writes a frame first, whose first byte is 0 for any
+ * frame shorter than 16 MB, while a classic server writes the magic number
+ * 0xACED of a serialization stream. This lets a client find out which one it
+ * is talking to (see isStreamHeader()).
+ * <p>
+ * A frame body is either a serialization stream or a message in the compact
+ * format of BinaryCodec, told apart by its first byte. A client that supports
+ * the binary format sends all its messages in it, and the server answers each
+ * connection in the format that the client speaks.
+ */
+public class FrameCodec {
+	/**
+	 * The size of the length field of a frame.
+	 */
+	public static final int HEADER_SIZE = 4;
+	/**
+	 * The largest accepted frame body. A longer frame is treated as a protocol
+	 * error, so that a client cannot make the server buffer unlimited data.
+	 */
+	public static final int MAX_FRAME_SIZE = 64 * 1024;
+
+	private FrameCodec() {
+	}
+
+	/**
+	 * Encodes the specified message as a frame in the specified format. A
+	 * message that the binary format cannot hold is serialized instead.
+	 *
+	 * @param message
+	 *            the message to be encoded
+	 * @param binary
+	 *            true for the format of BinaryCodec; false for serialization
+	 * @return the frame, including its length field
+	 * @throws IOException
+	 *             if the message cannot be serialized or is too long
+	 */
+	public static byte[] encode(GameMessage message, boolean binary)
+			throws IOException {
+		if (binary) {
+			byte[] frame = BinaryCodec.encode(message);
+			if (frame != null) {
+				if (frame.length - HEADER_SIZE > MAX_FRAME_SIZE)
+					throw new IOException("Message too long: "
+							+ (frame.length - HEADER_SIZE) + " bytes");
+				return frame;
+			}
+		}
+		return encode(message);
+	}
+
+	/**
+	 * Encodes the specified message as a frame holding a serialization stream.
+	 *
+	 * @param message
+	 *            the message to be encoded
+	 * @return the frame, including its length field
+	 * @throws IOException
+	 *             if the message cannot be serialized or is too long
+	 */
+	public static byte[] encode(GameMessage message) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		bytes.write(new byte[HEADER_SIZE]);
+		try (ObjectOutputStream oostream = new ObjectOutputStream(bytes)) {
+			oostream.writeObject(message);
+		}
+		byte[] frame = bytes.toByteArray();
+		int length = frame.length - HEADER_SIZE;
+		if (length > MAX_FRAME_SIZE)
+			throw new IOException("Message too long: " + length + " bytes");
+		frame[0] = (byte) (length >>> 24);
+		frame[1] = (byte) (length >>> 16);
+		frame[2] = (byte) (length >>> 8);
+		frame[3] = (byte) length;
+		return frame;
+	}
+
+	/**
+	 * Decodes the message in the specified frame body.
+	 *
+	 * @param buffer
+	 *            the array holding the frame body
+	 * @param offset
+	 *            the offset of the frame body in the array
+	 * @param length
+	 *            the length of the frame body
+	 * @return the decoded message
+	 * @throws IOException
+	 *             if the body is not a valid message
+	 */
+	public static CardGameMessage decode(byte[] buffer, int offset, int length)
+			throws IOException {
+		if (BinaryCodec.isBinary(buffer, offset, length))
+			return BinaryCodec.decode(buffer, offset, length);
+		try (ObjectInputStream oistream = new ObjectInputStream(
+				new ByteArrayInputStream(buffer, offset, length))) {
+			Object object = oistream.readObject();
+			if (!(object instanceof CardGameMessage))
+				throw new IOException("Not a CardGameMessage: " + object);
+			return (CardGameMessage) object;
+		} catch (ClassNotFoundException ex) {
+			throw new IOException(ex);
+		}
+	}
+
+	/**
+	 * Checks whether the specified length field is acceptable.
+	 *
+	 * @param length
+	 *            the length field of a frame
+	 * @return true if the length is between 1 and MAX_FRAME_SIZE
+	 */
+	public static boolean isValidLength(int length) {
+		return length > 0 && length <= MAX_FRAME_SIZE;
+	}
+
+	/**
+	 * Checks whether the first two bytes received from a server are the magic
+	 * number of a serialization stream, i.e. whether the server is a classic
+	 * server rather than one sending frames.
+	 *
+	 * @param b0
+	 *            the first byte
+	 * @param b1
+	 *            the second byte
+	 * @return true for a classic server
+	 */
+	public static boolean isStreamHeader(int b0, int b1) {
+		return b0 == 0xAC && b1 == 0xED;
+	}
+
+	/**
+	 * Writes the specified message as a frame and flushes the stream.
+	 *
+	 * @param out
+	 *            the stream to write to
+	 * @param message
+	 *            the message to be written
+	 * @param binary
+	 *            true for the format of BinaryCodec; false for serialization
+	 * @throws IOException
+	 *             if the message cannot be written
+	 */
+	public static void write(OutputStream out, GameMessage message,
+			boolean binary) throws IOException {
+		out.write(encode(message, binary));
+		out.flush();
+	}
+
+	/**
+	 * Reads a frame and decodes its message, blocking until it has arrived.
+	 *
+	 * @param in
+	 *            the stream to read from
+	 * @return the decoded message
+	 * @throws IOException
+	 *             if the stream ends or the frame is invalid
+	 */
+	public static CardGameMessage read(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (!isValidLength(length))
+			throw new IOException("Invalid frame length: " + length);
+		byte[] body = new byte[length];
+		in.readFully(body);
+		return decode(body, 0, length);
+	}
+}
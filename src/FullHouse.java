@@ -15,6 +15,17 @@ public class FullHouse extends Hand {
 		super(player, cards);
 	}
 
+	/**
+	 * a constructor for building a full house with the specified player and set of
+	 * cards.
+	 * 
+	 * @param player player who played the hand
+	 * @param cards  cards the player played
+	 */
+	public FullHouse(CardGamePlayer player, CardSet cards) {
+		super(player, cards);
+	}
+
 	/**
 	 * a method for checking if this is a valid full house
 	 * 
@@ -37,6 +48,20 @@ public class FullHouse extends Hand {
 		return false;
 	}
 
+	/**
+	 * a method for retrieving the top card of this full house, i.e. the largest
+	 * card of the three cards of the same rank.
+	 * 
+	 * @return the top card of this hand
+	 */
+	@Override
+	public Card getTopCard() {
+		if (getCard(2).getRank() != getCard(3).getRank())
+			return getCard(2);
+		else
+			return getCard(4);
+	}
+
 	/**
 	 * a method for returning a string specifying the type of this hand i.e. full
 	 * house.
@@ -48,4 +73,14 @@ public class FullHouse extends Hand {
 		return "FullHouse";
 	}
 
+	/**
+	 * a method for returning the type of this hand i.e. full house.
+	 * 
+	 * @return the type of this hand i.e. HandType.FULL_HOUSE
+	 */
+	@Override
+	public HandType getHandType() {
+		return HandType.FULL_HOUSE;
+	}
+
 }
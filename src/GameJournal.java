@@ -0,0 +1,142 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is used to model the journal of a card game server: a directory
+ * holding a TableJournal file per live table, and a thread that commits the
+ * journals to the disk in groups. A table appends its records to the mapped
+ * file of its journal and goes on at once; the commit thread wakes up once
+ * records are pending, waits COMMIT_INTERVAL for more to gather, and forces
+ * every journal that changed in the meantime. One force per journal then
+ * covers all the moves of that interval, at all tables.
+ */
+public class GameJournal implements Runnable {
+	/**
+	 * The time in milliseconds records gather before they are committed.
+	 */
+	public static final long COMMIT_INTERVAL = 10;
+	private static final String PREFIX = "table-";
+	private static final String SUFFIX = ".journal";
+	private final CardGameServer server;
+	private final File directory;
+	private final ConcurrentLinkedQueue<TableJournal> dirty = new ConcurrentLinkedQueue<TableJournal>();
+	private final LongAdder commits = new LongAdder();
+	private final Object signal = new Object();
+	private Thread thread = null;
+
+	/**
+	 * Creates and returns an instance of the GameJournal class.
+	 *
+	 * @param server
+	 *            the server whose tables are journaled
+	 * @param directory
+	 *            the directory of the journal files
+	 * @throws IOException
+	 *             if the directory cannot be created
+	 */
+	public GameJournal(CardGameServer server, File directory)
+			throws IOException {
+		this.server = server;
+		this.directory = directory;
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Cannot create " + directory);
+	}
+
+	/**
+	 * Starts the commit thread.
+	 */
+	public synchronized void start() {
+		if (thread == null) {
+			thread = new Thread(this, "journal");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Returns the journal of the specified table. The file is created when
+	 * the first record is appended.
+	 *
+	 * @param tableId
+	 *            the id of the table
+	 * @return the journal of the table
+	 */
+	public TableJournal getTableJournal(int tableId) {
+		return new TableJournal(this, new File(directory, PREFIX + tableId
+				+ SUFFIX));
+	}
+
+	/**
+	 * Returns the ids of the tables that have a journal, e.g. after a crash.
+	 *
+	 * @return the ids of the journaled tables
+	 */
+	public int[] getJournaledTables() {
+		String[] names = directory.list();
+		ArrayList<Integer> ids = new ArrayList<Integer>();
+		for (String name : names == null ? new String[0] : names) {
+			if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+				try {
+					ids.add(Integer.parseInt(name.substring(PREFIX.length(),
+							name.length() - SUFFIX.length())));
+				} catch (NumberFormatException ex) {
+					// not a journal of this server
+				}
+			}
+		}
+		int[] result = new int[ids.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = ids.get(i);
+		Arrays.sort(result);
+		return result;
+	}
+
+	/**
+	 * Returns the number of group commits so far.
+	 *
+	 * @return the number of commits
+	 */
+	public long getCommits() {
+		return commits.sum();
+	}
+
+	/**
+	 * Schedules the specified journal for the next group commit.
+	 *
+	 * @param journal
+	 *            a journal with records not yet on the disk
+	 */
+	void commitLater(TableJournal journal) {
+		dirty.add(journal);
+		synchronized (signal) {
+			signal.notify();
+		}
+	}
+
+	// implementation of method from the Runnable interface
+	public void run() {
+		while (true) {
+			try {
+				synchronized (signal) {
+					while (dirty.isEmpty())
+						signal.wait();
+				}
+				// lets more records gather for the same commit
+				Thread.sleep(COMMIT_INTERVAL);
+				TableJournal journal;
+				while ((journal = dirty.poll()) != null)
+					journal.force();
+				commits.increment();
+			} catch (InterruptedException ex) {
+				return;
+			} catch (Exception ex) {
+				server.println("Error in committing the journal: " + ex);
+				if (!server.silentMode) ex.printStackTrace();
+			}
+		}
+	} // run
+}
@@ -0,0 +1,46 @@
+/**
+ * This interface is used to model the rules of a card game as checked by the
+ * server. A table with a referee keeps the state of its game, checks each MOVE
+ * message against it and broadcasts only the legal moves, as RESULT messages;
+ * an illegal move is answered with an ILLEGAL message to its sender alone. The
+ * server is thus the only judge of the moves, and the clients apply the
+ * results without checking them again.
+ * <p>
+ * The methods of a referee are called by its table, under the lock of the
+ * table.
+ */
+public interface GameReferee {
+	/**
+	 * Starts a new game with the specified deck, as sent to the clients.
+	 *
+	 * @param deck
+	 *            the shuffled deck; must not be modified
+	 */
+	public void start(Deck deck);
+
+	/**
+	 * Checks the specified move and applies it if it is legal.
+	 *
+	 * @param playerID
+	 *            the player who makes the move
+	 * @param data
+	 *            the data of the MOVE message
+	 * @return the data of the RESULT message to be broadcast, or null if the
+	 *         move is not legal
+	 */
+	public Object checkMove(int playerID, Object data);
+
+	/**
+	 * Returns the state of the current game as the data of a SNAPSHOT message,
+	 * from which a client that has lost its connection resumes the game.
+	 *
+	 * @return the state of the current game, or null if no game is in
+	 *         progress
+	 */
+	public Object getSnapshot();
+
+	/**
+	 * Stops the current game, e.g. when a player leaves the table.
+	 */
+	public void stop();
+}
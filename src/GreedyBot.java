@@ -0,0 +1,47 @@
+import java.util.SplittableRandom;
+
+/**
+ * The GreedyBot class implements the BigTwoBot interface. When leading, it
+ * plays the hand that sheds the most cards, breaking ties by playing the
+ * weakest one; when following, it plays the weakest hand that beats the table
+ * and passes only if it has none.
+ */
+public class GreedyBot implements BigTwoBot {
+
+	/**
+	 * a method for returning the name of this bot.
+	 * 
+	 * @return "greedy"
+	 */
+	@Override
+	public String getName() {
+		return "greedy";
+	}
+
+	/**
+	 * a method for choosing the largest, then weakest, legal hand.
+	 * 
+	 * @param game      the game to move in
+	 * @param playerIdx the index of the player to move
+	 * @param random    not used
+	 * @return the CardSet mask of the cards to play, or 0 to pass
+	 */
+	@Override
+	public long chooseMove(BigTwoEngine game, int playerIdx, SplittableRandom random) {
+		// best[0] = cards, best[1] = size, best[2] = strength
+		final long[] best = { 0L, 0L, Long.MAX_VALUE };
+		game.generateMoves(new MoveVisitor() {
+			@Override
+			public boolean visit(long cards, int strength) {
+				int size = Long.bitCount(cards);
+				if (size > best[1] || (size == best[1] && strength < best[2])) {
+					best[0] = cards;
+					best[1] = size;
+					best[2] = strength;
+				}
+				return true;
+			}
+		});
+		return best[0];
+	}
+}
@@ -1,5 +1,3 @@
-import java.util.Arrays;
-
 /**
  * The Hand class is a subclass of the CardList class and is used to model a
  * hand of cards. It has a private instance variable for storing the player who
@@ -9,6 +7,9 @@ import java.util.Arrays;
  */
 public abstract class Hand extends CardList {
 	private CardGamePlayer player;
+	// strength key of this hand, computed on first use and forgotten whenever
+	// the cards change (-1 until then)
+	private int strength = -1;
 
 	/**
 	 * a constructor for building a hand with the specified player and list of
@@ -19,9 +20,29 @@ public abstract class Hand extends CardList {
 	 */
 	public Hand(CardGamePlayer player, CardList cards) {
 		this.player = player;
-		for (int i = 0; i < cards.size(); i++)
-			this.addCard(cards.getCard(i));
-		this.sort();
+		boolean sorted = true;
+		for (int i = 0; i < cards.size(); i++) {
+			Card card = cards.getCard(i);
+			if (sorted && i > 0 && card.compareTo(cards.getCard(i - 1)) < 0)
+				sorted = false;
+			this.addCard(card);
+		}
+		// lists taken from a sorted hand are usually in order already
+		if (!sorted)
+			this.sort();
+	}
+
+	/**
+	 * a constructor for building a hand with the specified player and set of
+	 * cards. The cards are added in Big Two order, so no sorting is needed.
+	 * 
+	 * @param player player who played the hand
+	 * @param cards  cards the player played
+	 */
+	public Hand(CardGamePlayer player, CardSet cards) {
+		this.player = player;
+		for (long m = cards.getMask(); m != 0; m &= m - 1)
+			this.addCard(CardSet.getCard(Long.numberOfTrailingZeros(m)));
 	}
 
 	/**
@@ -34,43 +55,39 @@ public abstract class Hand extends CardList {
 	}
 
 	/**
-	 * a method for retrieving the top card of this hand.
+	 * a method for retrieving the top card of this hand, i.e. the card that
+	 * decides between two hands of the same type. It is the largest card of the
+	 * hand; Quad and FullHouse override it.
 	 * 
-	 * @return a method for retrieving the top card of this hand.
+	 * @return the top card of this hand
 	 */
 	public Card getTopCard() {
-		if (getType() == "Single" || getType() == "Pair" || getType() == "Triple" || getType() == "Straight"
-				|| getType() == "Flush" || getType() == "StraightFlush")
-			return this.getCard(this.size() - 1);
-		else if (getType() == "Quad") {
-			if (getCard(3).getRank() != getCard(4).getRank())
-				return getCard(3);
-			else
-				return getCard(4);
-		} else if (getType() == "FullHouse") {
-			if (getCard(2).getRank() != getCard(3).getRank())
-				return getCard(2);
-			else
-				return getCard(4);
-		}
-		return null;
+		return this.getCard(this.size() - 1);
 	}
 
 	/**
-	 * a method for checking if this hand beats a specified hand.
+	 * a method for retrieving the strength key of this hand. It holds the type of
+	 * this hand and the position of its top card in Big Two order (see
+	 * HandClassifier), so that among hands of the same size a larger key means a
+	 * stronger hand.
+	 * 
+	 * @return the strength key of this hand
+	 */
+	public int getStrength() {
+		if (strength < 0)
+			strength = HandClassifier.key(getHandType().getCode(), CardSet.indexOf(getTopCard()));
+		return strength;
+	}
+
+	/**
+	 * a method for checking if this hand beats a specified hand. A hand can only
+	 * beat a hand of the same size.
 	 * 
 	 * @param hand hand to check against
 	 * @return a boolean representing whether this hand beats the specified hand
 	 */
 	public boolean beats(Hand hand) {
-		String[] patternRank = new String[] { "Straight", "Flush", "FullHouse", "Quad", "StraightFlush" };
-		if (this.size() == 5 && hand.size() == 5) {
-			if (Arrays.asList(patternRank).indexOf(this.getType()) > Arrays.asList(patternRank).indexOf(hand.getType()))
-				return true;
-			else
-				return this.getTopCard().compareTo(hand.getTopCard()) > 0;
-		} else
-			return this.getTopCard().compareTo(hand.getTopCard()) > 0;
+		return this.size() == hand.size() && this.getStrength() > hand.getStrength();
 	}
 
 	/**
@@ -86,4 +103,62 @@ public abstract class Hand extends CardList {
 	 * @return the type of this hand
 	 */
 	public abstract String getType();
+
+	/**
+	 * a method for returning the type of this hand.
+	 * 
+	 * @return the type of this hand
+	 */
+	public abstract HandType getHandType();
+
+	// the mutators of CardList forget the strength key, which depends on the
+	// cards and on their order (see getTopCard())
+
+	@Override
+	public void addCard(Card card) {
+		super.addCard(card);
+		strength = -1;
+	}
+
+	@Override
+	public Card removeCard(int i) {
+		strength = -1;
+		return super.removeCard(i);
+	}
+
+	@Override
+	public boolean removeCard(Card card) {
+		strength = -1;
+		return super.removeCard(card);
+	}
+
+	@Override
+	public int removeCards(long remove) {
+		strength = -1;
+		return super.removeCards(remove);
+	}
+
+	@Override
+	public void removeAllCards() {
+		super.removeAllCards();
+		strength = -1;
+	}
+
+	@Override
+	public Card setCard(int i, Card card) {
+		strength = -1;
+		return super.setCard(i, card);
+	}
+
+	@Override
+	public void swapCards(int i, int j) {
+		super.swapCards(i, j);
+		strength = -1;
+	}
+
+	@Override
+	public void sort() {
+		super.sort();
+		strength = -1;
+	}
 }
@@ -0,0 +1,162 @@
+/**
+ * The HandClassifier class is used to classify a selection of Big Two cards in
+ * a single pass without building any Hand objects. A selection is turned into
+ * a CardSet mask, and the rank and suit histograms of the mask are read off
+ * with a few bit operations to find the type of the hand and its top card.
+ * <p>
+ * The result is a strength key: the type of the hand in the upper bits and the
+ * CardSet index of its top card in the lower six bits. Keys of hands with the
+ * same number of cards compare the same way as the hands do, i.e. first by
+ * type (Straight &lt; Flush &lt; FullHouse &lt; Quad &lt; StraightFlush) and
+ * then by top card in Big Two order. A key of {@link #INVALID} means the cards
+ * do not form a valid hand.
+ */
+public class HandClassifier {
+	/**
+	 * The strength key of a selection that does not form a valid hand.
+	 */
+	public static final int INVALID = 0;
+	/**
+	 * The type code of a Single.
+	 */
+	public static final int SINGLE = 1;
+	/**
+	 * The type code of a Pair.
+	 */
+	public static final int PAIR = 2;
+	/**
+	 * The type code of a Triple.
+	 */
+	public static final int TRIPLE = 3;
+	/**
+	 * The type code of a Straight.
+	 */
+	public static final int STRAIGHT = 4;
+	/**
+	 * The type code of a Flush.
+	 */
+	public static final int FLUSH = 5;
+	/**
+	 * The type code of a Full House.
+	 */
+	public static final int FULL_HOUSE = 6;
+	/**
+	 * The type code of a Quad.
+	 */
+	public static final int QUAD = 7;
+	/**
+	 * The type code of a Straight Flush.
+	 */
+	public static final int STRAIGHT_FLUSH = 8;
+	// the number of bits holding the index of the top card
+	private static final int TYPE_SHIFT = 6;
+	// the lowest bit of each rank in a CardSet mask
+	private static final long RANK_BITS = CardSet.suitMask(0);
+
+	/**
+	 * a method for classifying the specified list of cards. A list that holds the
+	 * same card more than once is not a valid hand.
+	 *
+	 * @param cards list of cards to classify
+	 * @return the strength key of the hand, or INVALID
+	 */
+	public static int classify(CardList cards) {
+		long mask = cards.getMask();
+		if (Long.bitCount(mask) != cards.size())
+			return INVALID;
+		return classify(mask);
+	}
+
+	/**
+	 * a method for classifying the specified CardSet mask.
+	 *
+	 * @param mask mask of the cards to classify
+	 * @return the strength key of the hand, or INVALID
+	 */
+	public static int classify(long mask) {
+		int low = Long.numberOfTrailingZeros(mask);
+		int high = 63 - Long.numberOfLeadingZeros(mask);
+		switch (Long.bitCount(mask)) {
+		case 1:
+			return key(SINGLE, high);
+		case 2:
+			return low >>> 2 == high >>> 2 ? key(PAIR, high) : INVALID;
+		case 3:
+			return low >>> 2 == high >>> 2 ? key(TRIPLE, high) : INVALID;
+		case 5:
+			return classifyFive(mask, low, high);
+		default:
+			return INVALID;
+		}
+	}
+
+	/**
+	 * a method for classifying a mask of five cards.
+	 *
+	 * @param mask mask of five cards
+	 * @param low  index of the smallest card
+	 * @param high index of the largest card
+	 * @return the strength key of the hand, or INVALID
+	 */
+	private static int classifyFive(long mask, int low, int high) {
+		// rank histogram folded to one bit per rank present
+		long ranks = (mask | mask >>> 1 | mask >>> 2 | mask >>> 3) & RANK_BITS;
+		int lowRank = low >>> 2;
+		int highRank = high >>> 2;
+		switch (Long.bitCount(ranks)) {
+		case 5: {
+			boolean flush = (mask & ~CardSet.suitMask(low & 3)) == 0;
+			boolean straight = highRank - lowRank == 4;
+			if (straight && flush)
+				return key(STRAIGHT_FLUSH, high);
+			if (flush)
+				return key(FLUSH, high);
+			if (straight)
+				return key(STRAIGHT, high);
+			return INVALID;
+		}
+		case 2: {
+			// the two ranks hold 4+1 or 3+2 cards
+			int lowCount = CardSet.countRank(mask, lowRank);
+			int bigRank = lowCount >= 3 ? lowRank : highRank;
+			int top = 63 - Long.numberOfLeadingZeros(mask & CardSet.rankMask(bigRank));
+			if (lowCount == 1 || lowCount == 4)
+				return key(QUAD, top);
+			return key(FULL_HOUSE, top);
+		}
+		default:
+			return INVALID;
+		}
+	}
+
+	/**
+	 * a method for getting the type code from a strength key.
+	 *
+	 * @param strength strength key returned by classify()
+	 * @return the type code, or INVALID
+	 */
+	public static int getType(int strength) {
+		return strength >>> TYPE_SHIFT;
+	}
+
+	/**
+	 * a method for getting the CardSet index of the top card from a strength key.
+	 *
+	 * @param strength strength key returned by classify()
+	 * @return the CardSet index of the top card
+	 */
+	public static int getTopCardIndex(int strength) {
+		return strength & ((1 << TYPE_SHIFT) - 1);
+	}
+
+	/**
+	 * a method for building a strength key.
+	 *
+	 * @param type type code of the hand
+	 * @param top  CardSet index of the top card
+	 * @return the strength key
+	 */
+	static int key(int type, int top) {
+		return type << TYPE_SHIFT | top;
+	}
+}
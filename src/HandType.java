@@ -0,0 +1,153 @@
+/**
+ * The HandType enum lists the types of hands in a Big Two card game, in the
+ * order of their strength. Among five-card hands a Straight is the weakest and
+ * a Straight Flush the strongest. The code of each type is the type code used
+ * in the strength keys of HandClassifier.
+ */
+public enum HandType {
+	/**
+	 * One card.
+	 */
+	SINGLE("Single"),
+	/**
+	 * Two cards of the same rank.
+	 */
+	PAIR("Pair"),
+	/**
+	 * Three cards of the same rank.
+	 */
+	TRIPLE("Triple"),
+	/**
+	 * Five cards of consecutive ranks.
+	 */
+	STRAIGHT("Straight"),
+	/**
+	 * Five cards of the same suit.
+	 */
+	FLUSH("Flush"),
+	/**
+	 * Three cards of one rank and two cards of another rank.
+	 */
+	FULL_HOUSE("FullHouse"),
+	/**
+	 * Four cards of one rank and one other card.
+	 */
+	QUAD("Quad"),
+	/**
+	 * Five cards of consecutive ranks and the same suit.
+	 */
+	STRAIGHT_FLUSH("StraightFlush");
+
+	// the types indexed by their code; values() would copy the array every call
+	private static final HandType[] BY_CODE = { null, SINGLE, PAIR, TRIPLE, STRAIGHT, FLUSH, FULL_HOUSE, QUAD,
+			STRAIGHT_FLUSH };
+
+	private final String name;
+
+	/**
+	 * a constructor for building a hand type with the specified name.
+	 *
+	 * @param name name returned by Hand.getType()
+	 */
+	private HandType(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * a method for retrieving the name of this type, as returned by
+	 * Hand.getType().
+	 *
+	 * @return the name of this type
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * a method for retrieving the type code of this type in the strength keys of
+	 * HandClassifier.
+	 *
+	 * @return the type code of this type
+	 */
+	public int getCode() {
+		return ordinal() + 1;
+	}
+
+	/**
+	 * a method for building a hand of this type with the specified player and
+	 * list of cards.
+	 *
+	 * @param player player who played the hand
+	 * @param cards  cards the player played
+	 * @return a hand of this type
+	 */
+	public Hand newHand(CardGamePlayer player, CardList cards) {
+		switch (this) {
+		case SINGLE:
+			return new Single(player, cards);
+		case PAIR:
+			return new Pair(player, cards);
+		case TRIPLE:
+			return new Triple(player, cards);
+		case STRAIGHT:
+			return new Straight(player, cards);
+		case FLUSH:
+			return new Flush(player, cards);
+		case FULL_HOUSE:
+			return new FullHouse(player, cards);
+		case QUAD:
+			return new Quad(player, cards);
+		default:
+			return new StraightFlush(player, cards);
+		}
+	}
+
+	/**
+	 * a method for building a hand of this type with the specified player and set
+	 * of cards.
+	 *
+	 * @param player player who played the hand
+	 * @param cards  cards the player played
+	 * @return a hand of this type
+	 */
+	public Hand newHand(CardGamePlayer player, CardSet cards) {
+		switch (this) {
+		case SINGLE:
+			return new Single(player, cards);
+		case PAIR:
+			return new Pair(player, cards);
+		case TRIPLE:
+			return new Triple(player, cards);
+		case STRAIGHT:
+			return new Straight(player, cards);
+		case FLUSH:
+			return new Flush(player, cards);
+		case FULL_HOUSE:
+			return new FullHouse(player, cards);
+		case QUAD:
+			return new Quad(player, cards);
+		default:
+			return new StraightFlush(player, cards);
+		}
+	}
+
+	/**
+	 * a method for looking up the type with the specified type code.
+	 *
+	 * @param code type code of HandClassifier
+	 * @return the type with the code, or null for HandClassifier.INVALID
+	 */
+	public static HandType fromCode(int code) {
+		return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+	}
+
+	/**
+	 * a method for looking up the type of a strength key.
+	 *
+	 * @param strength strength key of HandClassifier
+	 * @return the type of the key, or null for HandClassifier.INVALID
+	 */
+	public static HandType fromStrength(int strength) {
+		return fromCode(HandClassifier.getType(strength));
+	}
+}
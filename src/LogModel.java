@@ -0,0 +1,87 @@
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.AbstractListModel;
+
+/**
+ * The LogModel class is used to hold the last lines of a log, e.g. the
+ * messages or the chat of a game, as the model of a list (see LogView). The
+ * lines are kept in a ring buffer of a fixed capacity: once it is full, each
+ * new line takes the place of the oldest one, so the memory of a long session
+ * does not grow. Like any Swing model, it must only be used on the event
+ * dispatch thread.
+ */
+public class LogModel extends AbstractListModel<String> {
+	private static final long serialVersionUID = 1L;
+	private final String[] lines;
+	private int first = 0; // the index in lines of the oldest line
+	private int size = 0;
+
+	/**
+	 * a constructor for creating an empty log holding up to the specified number
+	 * of lines.
+	 *
+	 * @param capacity the number of lines kept
+	 */
+	public LogModel(int capacity) {
+		lines = new String[Math.max(1, capacity)];
+	}
+
+	/**
+	 * a method for getting the number of lines the log keeps.
+	 *
+	 * @return the capacity of the log
+	 */
+	public int getCapacity() {
+		return lines.length;
+	}
+
+	/**
+	 * a method for appending the specified lines, dropping the oldest lines if the
+	 * log is full. The listeners are told of the whole batch at once: one event
+	 * for the lines dropped and one for the lines added.
+	 *
+	 * @param newLines the lines to append, oldest first
+	 */
+	public void append(List<String> newLines) {
+		int n = newLines.size();
+		if (n == 0)
+			return;
+		// lines that would be dropped right away are never stored
+		int skip = Math.max(0, n - lines.length);
+		int dropped = Math.max(0, size + n - skip - lines.length);
+		if (dropped > 0) {
+			for (int i = 0; i < dropped; i++)
+				lines[(first + i) % lines.length] = null;
+			first = (first + dropped) % lines.length;
+			size -= dropped;
+			fireIntervalRemoved(this, 0, dropped - 1);
+		}
+		for (int i = skip; i < n; i++)
+			lines[(first + size++) % lines.length] = newLines.get(i);
+		fireIntervalAdded(this, size - (n - skip), size - 1);
+	}
+
+	/**
+	 * a method for removing all lines.
+	 */
+	public void clear() {
+		if (size == 0)
+			return;
+		int removed = size;
+		Arrays.fill(lines, null);
+		first = 0;
+		size = 0;
+		fireIntervalRemoved(this, 0, removed - 1);
+	}
+
+	@Override
+	public int getSize() {
+		return size;
+	}
+
+	@Override
+	public String getElementAt(int index) {
+		return lines[(first + index) % lines.length];
+	}
+}
@@ -0,0 +1,133 @@
+import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JList;
+import javax.swing.JScrollBar;
+import javax.swing.JScrollPane;
+import javax.swing.ListCellRenderer;
+import javax.swing.ScrollPaneConstants;
+
+/**
+ * The LogView class is used to show a log held by a LogModel, in place of a
+ * text area. The lines are shown by a list whose rows all have the same size,
+ * so the list only lays out and paints the lines that are visible, however
+ * many lines the log holds; a batch of lines is appended with one change of
+ * the model. The view follows the end of the log unless it has been scrolled
+ * up. Lines are not wrapped: a line wider than the view can be scrolled to,
+ * and the selected lines can be copied.
+ */
+public class LogView extends JScrollPane {
+	private static final long serialVersionUID = 1L;
+	/**
+	 * The number of lines kept by default.
+	 */
+	public static final int DEFAULT_CAPACITY = 1000;
+	private final LogModel model;
+	private final JList<String> list;
+	private final FontMetrics metrics;
+	private final int padding; // the width of a row without its text
+	private int columns;
+	private int textWidth = 0; // the width of the longest line since the last clear
+
+	/**
+	 * a constructor for creating a view of an empty log.
+	 *
+	 * @param capacity the number of lines kept
+	 * @param rows     the number of rows shown
+	 * @param columns  the number of columns shown
+	 */
+	public LogView(int capacity, int rows, int columns) {
+		model = new LogModel(capacity);
+		list = new JList<String>(model) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Dimension getPreferredScrollableViewportSize() {
+				return new Dimension(LogView.this.columns * metrics.charWidth('m'),
+						getVisibleRowCount() * getFixedCellHeight());
+			}
+		};
+		metrics = list.getFontMetrics(list.getFont());
+		@SuppressWarnings("unchecked")
+		ListCellRenderer<String> renderer = (ListCellRenderer<String>) list.getCellRenderer();
+		Dimension row = renderer.getListCellRendererComponent(list, " ", 0, false, false).getPreferredSize();
+		padding = row.width - metrics.stringWidth(" ");
+		list.setFixedCellHeight(row.height);
+		list.setFixedCellWidth(padding);
+		list.setVisibleRowCount(rows);
+		this.columns = columns;
+		setViewportView(list);
+		setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED);
+		setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+	}
+
+	/**
+	 * a method for getting the model holding the lines of this view.
+	 *
+	 * @return the model of this view
+	 */
+	public LogModel getModel() {
+		return model;
+	}
+
+	/**
+	 * a method for setting the number of columns shown, which sets the preferred
+	 * width of this view as for a text area.
+	 *
+	 * @param columns the number of columns
+	 */
+	public void setColumns(int columns) {
+		if (columns != this.columns) {
+			this.columns = columns;
+			revalidate();
+		}
+	}
+
+	/**
+	 * a method for appending the specified messages, each of which may hold several
+	 * lines, and scrolling to the end if the view was at the end.
+	 *
+	 * @param messages the messages to append, oldest first
+	 */
+	public void append(List<String> messages) {
+		if (messages.isEmpty())
+			return;
+		List<String> lines = new ArrayList<String>(messages.size());
+		int width = textWidth;
+		for (String msg : messages) {
+			int start = 0;
+			for (int end; (end = msg.indexOf('\n', start)) >= 0; start = end + 1)
+				lines.add(msg.substring(start, end));
+			lines.add(start == 0 ? msg : msg.substring(start));
+		}
+		for (String line : lines)
+			width = Math.max(width, metrics.stringWidth(line));
+		boolean atEnd = isAtEnd();
+		model.append(lines);
+		if (width != textWidth) {
+			textWidth = width;
+			list.setFixedCellWidth(padding + width);
+		}
+		if (atEnd) {
+			// the new size of the list is needed to scroll to its end
+			validate();
+			list.ensureIndexIsVisible(model.getSize() - 1);
+		}
+	}
+
+	/**
+	 * a method for removing all lines.
+	 */
+	public void clear() {
+		model.clear();
+		textWidth = 0;
+		list.setFixedCellWidth(padding);
+	}
+
+	private boolean isAtEnd() {
+		JScrollBar bar = getVerticalScrollBar();
+		return bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - list.getFixedCellHeight();
+	}
+}
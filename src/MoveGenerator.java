@@ -0,0 +1,203 @@
+import java.util.ArrayList;
+
+/**
+ * The MoveGenerator class is used to list the legal moves of a player in a Big
+ * Two card game, i.e. every Single, Pair, Triple and five-card hand in the
+ * player's cards that may be played on the current table. Moves are streamed
+ * to a MoveVisitor as CardSet masks with their strength keys, so listing moves
+ * creates no objects and the caller can stop at any time.
+ * <p>
+ * Moves are listed by size (Singles, Pairs, Triples, then five-card hands).
+ * Singles, Pairs and Triples are listed from the weakest to the strongest;
+ * five-card hands are listed in the order of their cards, not their strength.
+ * Passing is not listed; see canPass().
+ */
+public class MoveGenerator {
+	// a visitor that stops at the first move
+	private static final MoveVisitor STOP = new MoveVisitor() {
+		@Override
+		public boolean visit(long cards, int strength) {
+			return false;
+		}
+	};
+
+	/**
+	 * a method for listing the moves in the specified cards that may be played on
+	 * a table. A table size of 0 means the player leads, i.e. the table is empty
+	 * or the last hand on it was played by the same player, and any valid hand may
+	 * be played. Otherwise only hands of the same size that beat the table are
+	 * listed.
+	 * 
+	 * @param cards         CardSet mask of the player's cards
+	 * @param tableSize     size of the hand to beat, or 0 if the player leads
+	 * @param tableStrength strength key of the hand to beat (ignored if the player
+	 *                      leads)
+	 * @param visitor       visitor receiving the moves
+	 * @return false if the visitor stopped the generator, true otherwise
+	 */
+	public static boolean generate(long cards, int tableSize, int tableStrength, MoveVisitor visitor) {
+		if (tableSize == 0)
+			tableStrength = HandClassifier.INVALID;
+		if ((tableSize == 0 || tableSize == 1) && !generateSingles(cards, tableStrength, visitor))
+			return false;
+		if ((tableSize == 0 || tableSize == 2) && !generateSets(cards, 2, tableStrength, visitor))
+			return false;
+		if ((tableSize == 0 || tableSize == 3) && !generateSets(cards, 3, tableStrength, visitor))
+			return false;
+		if ((tableSize == 0 || tableSize == 5) && !generateFives(cards, tableStrength, visitor))
+			return false;
+		return true;
+	}
+
+	/**
+	 * a method for listing the legal moves of a player given the hands played on
+	 * the table.
+	 * 
+	 * @param player       player to move
+	 * @param handsOnTable list of hands played on the table
+	 * @param visitor      visitor receiving the moves
+	 * @return false if the visitor stopped the generator, true otherwise
+	 */
+	public static boolean generate(CardGamePlayer player, ArrayList<Hand> handsOnTable, MoveVisitor visitor) {
+		Hand lastHand = getHandToBeat(player, handsOnTable);
+		if (lastHand == null)
+			return generate(player.getCardMask(), 0, HandClassifier.INVALID, visitor);
+		return generate(player.getCardMask(), lastHand.size(), lastHand.getStrength(), visitor);
+	}
+
+	/**
+	 * a method for building the legal moves of a player as Hand objects, e.g. for
+	 * showing hints. Use the MoveVisitor form where speed matters.
+	 * 
+	 * @param player       player to move
+	 * @param handsOnTable list of hands played on the table
+	 * @return a list of the hands the player may play
+	 */
+	public static ArrayList<Hand> getLegalMoves(final CardGamePlayer player, ArrayList<Hand> handsOnTable) {
+		final ArrayList<Hand> moves = new ArrayList<Hand>();
+		generate(player, handsOnTable, new MoveVisitor() {
+			@Override
+			public boolean visit(long cards, int strength) {
+				moves.add(HandType.fromStrength(strength).newHand(player, new CardSet(cards)));
+				return true;
+			}
+		});
+		return moves;
+	}
+
+	/**
+	 * a method for checking if a player has any legal move other than passing.
+	 * 
+	 * @param player       player to move
+	 * @param handsOnTable list of hands played on the table
+	 * @return true if the player can play a hand
+	 */
+	public static boolean hasLegalMove(CardGamePlayer player, ArrayList<Hand> handsOnTable) {
+		return !generate(player, handsOnTable, STOP);
+	}
+
+	/**
+	 * a method for checking if a player may pass, i.e. there is a hand on the
+	 * table that was played by another player.
+	 * 
+	 * @param player       player to move
+	 * @param handsOnTable list of hands played on the table
+	 * @return true if the player may pass
+	 */
+	public static boolean canPass(CardGamePlayer player, ArrayList<Hand> handsOnTable) {
+		return getHandToBeat(player, handsOnTable) != null;
+	}
+
+	/**
+	 * a method for retrieving the hand a player has to beat.
+	 * 
+	 * @param player       player to move
+	 * @param handsOnTable list of hands played on the table
+	 * @return the last hand on the table, or null if the player leads
+	 */
+	private static Hand getHandToBeat(CardGamePlayer player, ArrayList<Hand> handsOnTable) {
+		if (handsOnTable.isEmpty())
+			return null;
+		Hand lastHand = handsOnTable.get(handsOnTable.size() - 1);
+		return lastHand.getPlayer() == player ? null : lastHand;
+	}
+
+	/**
+	 * a method for listing the Singles stronger than the specified key.
+	 */
+	private static boolean generateSingles(long cards, int tableStrength, MoveVisitor visitor) {
+		if (tableStrength != HandClassifier.INVALID)
+			cards &= -2L << HandClassifier.getTopCardIndex(tableStrength);
+		for (; cards != 0; cards &= cards - 1) {
+			int i = Long.numberOfTrailingZeros(cards);
+			if (!visitor.visit(1L << i, HandClassifier.key(HandClassifier.SINGLE, i)))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * a method for listing the Pairs (size 2) or Triples (size 3) stronger than
+	 * the specified key. Within a rank, the sets are listed by their top card.
+	 */
+	private static boolean generateSets(long cards, int size, int tableStrength, MoveVisitor visitor) {
+		int type = size == 2 ? HandClassifier.PAIR : HandClassifier.TRIPLE;
+		int firstRank = tableStrength == HandClassifier.INVALID ? 0
+				: CardSet.rankOf(HandClassifier.getTopCardIndex(tableStrength));
+		for (int rank = firstRank; rank < 13; rank++) {
+			long inRank = cards & CardSet.rankMask(rank);
+			if (Long.bitCount(inRank) < size)
+				continue;
+			// the top card is the largest card of the set; the other cards are
+			// chosen among the smaller cards of the rank
+			for (long tops = inRank; tops != 0; tops &= tops - 1) {
+				long top = tops & -tops;
+				int strength = HandClassifier.key(type, Long.numberOfTrailingZeros(top));
+				if (strength <= tableStrength)
+					continue;
+				long below = inRank & (top - 1);
+				if (size == 2) {
+					for (long b = below; b != 0; b &= b - 1)
+						if (!visitor.visit(top | (b & -b), strength))
+							return false;
+				} else {
+					for (long b = below; b != 0; b &= b - 1)
+						for (long c = b & (b - 1); c != 0; c &= c - 1)
+							if (!visitor.visit(top | (b & -b) | (c & -c), strength))
+								return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * a method for listing the five-card hands stronger than the specified key by
+	 * walking every combination of five cards and looking each one up in the
+	 * FiveCardTable.
+	 */
+	private static boolean generateFives(long cards, int tableStrength, MoveVisitor visitor) {
+		if (Long.bitCount(cards) < 5)
+			return true;
+		FiveCardTable table = FiveCardTable.getInstance();
+		for (long a = cards; a != 0; a &= a - 1) {
+			long ma = a & -a;
+			for (long b = a & (a - 1); b != 0; b &= b - 1) {
+				long mb = ma | (b & -b);
+				for (long c = b & (b - 1); c != 0; c &= c - 1) {
+					long mc = mb | (c & -c);
+					for (long d = c & (c - 1); d != 0; d &= d - 1) {
+						long md = mc | (d & -d);
+						for (long e = d & (d - 1); e != 0; e &= e - 1) {
+							long mask = md | (e & -e);
+							int strength = table.getStrength(mask);
+							if (strength > tableStrength && !visitor.visit(mask, strength))
+								return false;
+						}
+					}
+				}
+			}
+		}
+		return true;
+	}
+}
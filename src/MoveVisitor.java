@@ -0,0 +1,16 @@
+/**
+ * An interface for receiving the moves listed by MoveGenerator one at a time.
+ * Returning false from visit() stops the generator, so callers that only need
+ * the first few moves (or only need to know whether a move exists) do not pay
+ * for the rest.
+ */
+public interface MoveVisitor {
+	/**
+	 * a method for receiving a legal move.
+	 * 
+	 * @param cards    CardSet mask of the cards of the move
+	 * @param strength strength key of the move (see HandClassifier)
+	 * @return true to continue with the next move, false to stop
+	 */
+	public boolean visit(long cards, int strength);
+}
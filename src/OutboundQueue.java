@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * This class is used to model the bounded queue of messages waiting to be
+ * written to a client. Senders add encoded messages and return at once; the
+ * writer of the connection (a thread, or an event loop) takes them in order,
+ * so a client with a full TCP send buffer only holds up its own writer and
+ * never the table.
+ * <p>
+ * A queue holds at most capacity messages. A message for a full queue is
+ * handled according to the OverflowPolicy of the queue. A queue that
+ * overflows is closed, and the connection is expected to close as well.
+ * <p>
+ * Under the BLOCK policy, a sender never waits in add(), where it may hold
+ * the table: the message is taken over the capacity (up to twice the
+ * capacity), and the sender waits for room later with awaitRoom(), once it
+ * holds no lock.
+ */
+public class OutboundQueue {
+	/**
+	 * The time in milliseconds a sender waits for room in a full queue under
+	 * the BLOCK policy before the client is disconnected.
+	 */
+	public static final long BLOCK_TIMEOUT = 5000;
+	private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<ByteBuffer>();
+	private final int capacity;
+	private final OverflowPolicy policy;
+	private final QueueMetrics metrics;
+	private boolean closed = false;
+
+	/**
+	 * Creates and returns an instance of the OutboundQueue class.
+	 *
+	 * @param capacity
+	 *            the maximum number of messages in the queue
+	 * @param policy
+	 *            what to do with a message for a full queue
+	 * @param metrics
+	 *            the metrics to be updated by the queue
+	 */
+	public OutboundQueue(int capacity, OverflowPolicy policy,
+			QueueMetrics metrics) {
+		this.capacity = Math.max(1, capacity);
+		this.policy = policy;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Adds an encoded message to the queue, applying the overflow policy if
+	 * the queue is full.
+	 *
+	 * @param buffer
+	 *            the encoded message; the queue takes it over
+	 * @param chat
+	 *            whether the message is a user message, which may be dropped
+	 * @param mayBlock
+	 *            whether the caller will wait for room in the queue with
+	 *            awaitRoom() if the message is taken over the capacity; false
+	 *            for the threads of the event loops, which must never wait
+	 * @return true if the message is queued; false if it is dropped
+	 * @throws IOException
+	 *             if the queue is closed, or has overflowed and the client
+	 *             must be disconnected
+	 */
+	public synchronized boolean add(ByteBuffer buffer, boolean chat,
+			boolean mayBlock) throws IOException {
+		if (closed)
+			throw new IOException("Connection closed");
+		if (buffers.size() >= capacity) {
+			if (policy == OverflowPolicy.DROP_CHAT && chat) {
+				metrics.droppedChat();
+				return false;
+			}
+			if (policy != OverflowPolicy.BLOCK || !mayBlock
+					|| buffers.size() >= 2 * capacity)
+				throw overflow();
+		}
+		buffers.add(buffer);
+		metrics.added(buffers.size());
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Checks whether the queue holds more messages than its capacity, i.e.
+	 * whether a sender has to wait for room with awaitRoom().
+	 *
+	 * @return true if the queue is over its capacity
+	 */
+	public synchronized boolean isOverCapacity() {
+		return buffers.size() > capacity;
+	}
+
+	/**
+	 * Waits until the queue is back within its capacity, it is closed or
+	 * BLOCK_TIMEOUT passes. It must not be called while holding the table of
+	 * the client.
+	 *
+	 * @throws IOException
+	 *             if the queue is still over its capacity after BLOCK_TIMEOUT,
+	 *             in which case it overflows and the client must be
+	 *             disconnected
+	 */
+	public synchronized void awaitRoom() throws IOException {
+		if (closed || buffers.size() <= capacity)
+			return;
+		long start = System.nanoTime();
+		long deadline = start + BLOCK_TIMEOUT * 1000000L;
+		try {
+			while (!closed && buffers.size() > capacity) {
+				long left = deadline - System.nanoTime();
+				if (left <= 0)
+					break;
+				wait(left / 1000000L + 1);
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		} finally {
+			metrics.blocked(System.nanoTime() - start);
+		}
+		if (!closed && buffers.size() > capacity)
+			throw overflow();
+	}
+
+	private IOException overflow() {
+		close();
+		metrics.disconnected();
+		return new IOException("Outbound queue full (" + capacity
+				+ " messages)");
+	}
+
+	/**
+	 * Returns the first message of the queue without removing it, so that it
+	 * counts as waiting until it is completely written.
+	 *
+	 * @return the first message, or null if the queue is empty
+	 */
+	public synchronized ByteBuffer peek() {
+		return buffers.peek();
+	}
+
+	/**
+	 * Waits for a message and returns it without removing it.
+	 *
+	 * @return the first message, or null if the queue is closed
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting
+	 */
+	public synchronized ByteBuffer take() throws InterruptedException {
+		while (!closed && buffers.isEmpty())
+			wait();
+		return closed ? null : buffers.peek();
+	}
+
+	/**
+	 * Removes the first message of the queue once it has been written.
+	 */
+	public synchronized void remove() {
+		if (buffers.poll() != null) {
+			metrics.removed(1);
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Returns the number of messages waiting in the queue.
+	 *
+	 * @return the depth of the queue
+	 */
+	public synchronized int size() {
+		return buffers.size();
+	}
+
+	/**
+	 * Checks whether the queue is closed.
+	 *
+	 * @return true if the queue is closed
+	 */
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Closes the queue, discarding the waiting messages and waking up the
+	 * threads waiting on the queue.
+	 */
+	public synchronized void close() {
+		if (closed)
+			return;
+		closed = true;
+		metrics.removed(buffers.size());
+		buffers.clear();
+		notifyAll();
+	}
+}
@@ -0,0 +1,38 @@
+/**
+ * The OverflowPolicy enum lists what a card game server does with a message
+ * for a client whose outbound queue (see OutboundQueue) is full, i.e. a client
+ * that does not read its messages as fast as the table produces them.
+ */
+public enum OverflowPolicy {
+	/**
+	 * Drops user messages (chat) for the client; a game message, which the
+	 * client cannot do without, disconnects the client.
+	 */
+	DROP_CHAT,
+	/**
+	 * Disconnects the client.
+	 */
+	DISCONNECT,
+	/**
+	 * Makes the sender wait for room in the queue once it has left the table
+	 * (see OutboundQueue.awaitRoom()), which holds up the sender but never
+	 * the table. The client is disconnected if no room is made within
+	 * OutboundQueue.BLOCK_TIMEOUT, if the queue reaches twice its capacity,
+	 * or at once if the sender is an event loop, which must never wait.
+	 */
+	BLOCK;
+
+	/**
+	 * Returns the policy with the specified name, ignoring case and accepting
+	 * '-' for '_', e.g. "drop-chat".
+	 *
+	 * @param name
+	 *            the name of a policy
+	 * @return the policy
+	 * @throws IllegalArgumentException
+	 *             if there is no policy with the specified name
+	 */
+	public static OverflowPolicy parse(String name) {
+		return valueOf(name.trim().replace('-', '_').toUpperCase());
+	}
+}
@@ -15,6 +15,17 @@ public class Pair extends Hand {
 		super(player, cards);
 	}
 
+	/**
+	 * a constructor for building a pair with the specified player and set of
+	 * cards.
+	 * 
+	 * @param player player who played the hand
+	 * @param cards  cards the player played
+	 */
+	public Pair(CardGamePlayer player, CardSet cards) {
+		super(player, cards);
+	}
+
 	/**
 	 * a method for checking if this is a valid pair
 	 * 
@@ -40,4 +51,14 @@ public class Pair extends Hand {
 	public String getType() {
 		return "Pair";
 	}
+
+	/**
+	 * a method for returning the type of this hand i.e. pair.
+	 * 
+	 * @return the type of this hand i.e. HandType.PAIR
+	 */
+	@Override
+	public HandType getHandType() {
+		return HandType.PAIR;
+	}
 }
@@ -15,6 +15,17 @@ public class Quad extends Hand {
 		super(player, cards);
 	}
 
+	/**
+	 * a constructor for building a quad with the specified player and set of
+	 * cards.
+	 * 
+	 * @param player player who played the hand
+	 * @param cards  cards the player played
+	 */
+	public Quad(CardGamePlayer player, CardSet cards) {
+		super(player, cards);
+	}
+
 	/**
 	 * a method for checking if this is a valid quad
 	 * 
@@ -37,6 +48,20 @@ public class Quad extends Hand {
 		return false;
 	}
 
+	/**
+	 * a method for retrieving the top card of this quad, i.e. the largest card of
+	 * the four cards of the same rank.
+	 * 
+	 * @return the top card of this hand
+	 */
+	@Override
+	public Card getTopCard() {
+		if (getCard(3).getRank() != getCard(4).getRank())
+			return getCard(3);
+		else
+			return getCard(4);
+	}
+
 	/**
 	 * a method for returning a string specifying the type of this hand i.e. quad.
 	 * 
@@ -47,4 +72,14 @@ public class Quad extends Hand {
 		return "Quad";
 	}
 
+	/**
+	 * a method for returning the type of this hand i.e. quad.
+	 * 
+	 * @return the type of this hand i.e. HandType.QUAD
+	 */
+	@Override
+	public HandType getHandType() {
+		return HandType.QUAD;
+	}
+
 }
@@ -0,0 +1,114 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is used to collect the metrics of the outbound queues of a card
+ * game server: how many messages wait to be written, the deepest any single
+ * queue has been, and what the overflow policy has done so far. The counters
+ * are updated by the queues without locking and may be read at any time.
+ */
+public class QueueMetrics {
+	private final LongAdder queued = new LongAdder();
+	private final AtomicLong depth = new AtomicLong();
+	private final AtomicInteger maxDepth = new AtomicInteger();
+	private final LongAdder droppedChats = new LongAdder();
+	private final LongAdder disconnects = new LongAdder();
+	private final LongAdder blocks = new LongAdder();
+	private final LongAdder blockedNanos = new LongAdder();
+
+	/**
+	 * Returns the number of messages queued since the server started.
+	 *
+	 * @return the number of messages queued
+	 */
+	public long getQueued() {
+		return queued.sum();
+	}
+
+	/**
+	 * Returns the number of messages waiting in all the queues.
+	 *
+	 * @return the total depth of the queues
+	 */
+	public long getDepth() {
+		return depth.get();
+	}
+
+	/**
+	 * Returns the largest number of messages that have waited in one queue.
+	 *
+	 * @return the maximum depth of a queue
+	 */
+	public int getMaxDepth() {
+		return maxDepth.get();
+	}
+
+	/**
+	 * Returns the number of user messages dropped because of a full queue.
+	 *
+	 * @return the number of dropped user messages
+	 */
+	public long getDroppedChats() {
+		return droppedChats.sum();
+	}
+
+	/**
+	 * Returns the number of clients disconnected because of a full queue.
+	 *
+	 * @return the number of disconnected clients
+	 */
+	public long getDisconnects() {
+		return disconnects.sum();
+	}
+
+	/**
+	 * Returns the number of times a sender has waited for room in a queue.
+	 *
+	 * @return the number of waits
+	 */
+	public long getBlocks() {
+		return blocks.sum();
+	}
+
+	/**
+	 * Returns the total time senders have waited for room in a queue.
+	 *
+	 * @return the time blocked in nanoseconds
+	 */
+	public long getBlockedNanos() {
+		return blockedNanos.sum();
+	}
+
+	void added(int queueDepth) {
+		queued.increment();
+		depth.incrementAndGet();
+		maxDepth.accumulateAndGet(queueDepth, Math::max);
+	}
+
+	void removed(int count) {
+		depth.addAndGet(-count);
+	}
+
+	void droppedChat() {
+		droppedChats.increment();
+	}
+
+	void disconnected() {
+		disconnects.increment();
+	}
+
+	void blocked(long nanos) {
+		blocks.increment();
+		blockedNanos.add(nanos);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Outbound queues: %d messages queued, %d waiting "
+				+ "(at most %d in one queue), %d chats dropped, %d clients "
+				+ "disconnected, %d waits for %.1f ms", getQueued(), getDepth(),
+				getMaxDepth(), getDroppedChats(), getDisconnects(), getBlocks(),
+				getBlockedNanos() / 1e6);
+	}
+}
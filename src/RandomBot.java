@@ -0,0 +1,45 @@
+import java.util.SplittableRandom;
+
+/**
+ * The RandomBot class implements the BigTwoBot interface. It picks one of the
+ * legal moves uniformly at random, counting a pass as one of the moves when
+ * passing is allowed.
+ */
+public class RandomBot implements BigTwoBot {
+
+	/**
+	 * a method for returning the name of this bot.
+	 * 
+	 * @return "random"
+	 */
+	@Override
+	public String getName() {
+		return "random";
+	}
+
+	/**
+	 * a method for choosing a random legal move, by reservoir sampling over the
+	 * moves listed by the engine.
+	 * 
+	 * @param game      the game to move in
+	 * @param playerIdx the index of the player to move
+	 * @param random    the random number generator to use for this game
+	 * @return the CardSet mask of the cards to play, or 0 to pass
+	 */
+	@Override
+	public long chooseMove(BigTwoEngine game, final int playerIdx, final SplittableRandom random) {
+		final long[] choice = { 0L };
+		final int[] count = {
+				MoveGenerator.canPass(game.getPlayerList().get(playerIdx), game.getHandsOnTable()) ? 1 : 0 };
+		game.generateMoves(new MoveVisitor() {
+			@Override
+			public boolean visit(long cards, int strength) {
+				count[0]++;
+				if (random.nextInt(count[0]) == 0)
+					choice[0] = cards;
+				return true;
+			}
+		});
+		return choice[0];
+	}
+}
@@ -0,0 +1,130 @@
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JFrame;
+import javax.swing.JMenu;
+import javax.swing.JMenuBar;
+import javax.swing.JMenuItem;
+
+/**
+ * This class is used to model the console of a card game server: a window
+ * showing the log of the server. The console is a listener of the ServerLog,
+ * so the threads of the server never touch Swing; the messages logged are
+ * appended to a LogView at most once per frame (see EventBridge). The view
+ * keeps the last CAPACITY lines only, and the whole log is in the log files.
+ */
+public class ServerConsole implements ServerLog.Listener, Runnable {
+	/**
+	 * The number of lines kept by the console.
+	 */
+	public static final int CAPACITY = 10000;
+	// the server shown by this console
+	private final CardGameServer server;
+	// the main frame of the server
+	private JFrame frame = null;
+	// view for displaying server states
+	private LogView logView = null;
+	// the messages not shown yet, guarded by this
+	private List<String> pending = new ArrayList<String>();
+	private final EventBridge bridge = new EventBridge(this);
+
+	/**
+	 * Creates and returns an instance of the ServerConsole class, and shows
+	 * its window.
+	 *
+	 * @param server
+	 *            the server shown by this console
+	 * @param title
+	 *            the title of the window
+	 */
+	public ServerConsole(CardGameServer server, String title) {
+		this.server = server;
+		buildGUI(title);
+	}
+
+	/**
+	 * Builds the GUI for the server
+	 */
+	private void buildGUI(String title) {
+		// build a GUI
+		frame = new JFrame(title);
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		logView = new LogView(CAPACITY, 20, 40);
+		frame.add(logView);
+
+		// build the menu bar
+		JMenuItem clearMenuItem = new JMenuItem("Clear console");
+		clearMenuItem.addActionListener(new ClearMenuItemListener());
+		JMenuItem queuesMenuItem = new JMenuItem("Queue statistics");
+		queuesMenuItem.addActionListener(new QueuesMenuItemListener());
+		JMenuItem quitMenuItem = new JMenuItem("Quit");
+		quitMenuItem.addActionListener(new QuitMenuItemListener());
+		JMenu menu = new JMenu("Option");
+		menu.add(clearMenuItem);
+		menu.add(queuesMenuItem);
+		menu.add(quitMenuItem);
+		JMenuBar menuBar = new JMenuBar();
+		menuBar.add(menu);
+		frame.setJMenuBar(menuBar);
+
+		frame.pack();
+		frame.setVisible(true);
+	} // buildGUI
+
+	// implementation of method from the ServerLog.Listener interface
+	public void logged(List<String> messages) {
+		synchronized (this) {
+			pending.addAll(messages);
+			// lines that the view would drop at once are not kept
+			if (pending.size() > CAPACITY)
+				pending.subList(0, pending.size() - CAPACITY).clear();
+		}
+		bridge.request();
+	}
+
+	/**
+	 * Shows the messages logged since the last call; called by the bridge on the
+	 * event dispatch thread.
+	 */
+	public void run() {
+		List<String> messages;
+		synchronized (this) {
+			messages = pending;
+			pending = new ArrayList<String>();
+		}
+		logView.append(messages);
+	} // run
+
+	/**
+	 * This inner class is used for handling the Clear menu
+	 *
+	 */
+	private class ClearMenuItemListener implements ActionListener {
+		public void actionPerformed(ActionEvent e) {
+			logView.clear();
+		}
+	} // ClearMenuItemListener
+
+	/**
+	 * This inner class is used for handling the Queue statistics menu
+	 *
+	 */
+	private class QueuesMenuItemListener implements ActionListener {
+		public void actionPerformed(ActionEvent e) {
+			server.println(server.getQueueMetrics().toString());
+		}
+	} // QueuesMenuItemListener
+
+	/**
+	 * This inner class is used for handling the Quit menu
+	 *
+	 */
+	private class QuitMenuItemListener implements ActionListener {
+		public void actionPerformed(ActionEvent e) {
+			frame.dispose();
+			System.exit(0);
+		}
+	} // QuitMenuItemListener
+}
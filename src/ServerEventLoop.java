@@ -0,0 +1,301 @@
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * This class is used to model an event loop of the non-blocking card game
+ * server. Each loop runs on its own thread and owns a Selector; it accepts
+ * connections (if it holds the server channel), and reads from and writes to
+ * all the ChannelConnections registered with it. A few loops serve any number
+ * of clients, so a burst of connections or a client that sends a message one
+ * byte at a time does not tie up a thread.
+ * <p>
+ * Other threads hand work to a loop with execute() or schedule(); the tasks
+ * run on the loop thread, which is the only thread touching its selector and
+ * its connections' channels.
+ */
+public class ServerEventLoop implements Runnable {
+	// how often connections are checked for stalled frames
+	private static final long SWEEP_INTERVAL = 1000;
+	// the loop running on the current thread, if any
+	private static final ThreadLocal<ServerEventLoop> current =
+			new ThreadLocal<ServerEventLoop>();
+	private final CardGameServer server;
+	private final Selector selector;
+	private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+	// timers, only touched by the loop thread
+	private final PriorityQueue<Timer> timers = new PriorityQueue<Timer>();
+	private ServerEventLoop[] loops; // loops sharing the accepted connections
+	private int nextLoop = 0;
+	private long nextSweep = 0;
+	private volatile boolean running = true;
+	private Thread thread;
+
+	/**
+	 * Creates and returns an instance of the ServerEventLoop class.
+	 *
+	 * @param server
+	 *            the server receiving the messages of the connections
+	 * @throws IOException
+	 *             if the selector cannot be opened
+	 */
+	public ServerEventLoop(CardGameServer server) throws IOException {
+		this.server = server;
+		this.selector = Selector.open();
+	}
+
+	/**
+	 * Starts the thread of this loop.
+	 *
+	 * @param name
+	 *            the name of the thread
+	 */
+	public void start(String name) {
+		thread = new Thread(this, name);
+		thread.start();
+	}
+
+	/**
+	 * Stops this loop, closing all its connections.
+	 */
+	public void shutdown() {
+		running = false;
+		selector.wakeup();
+	}
+
+	/**
+	 * Makes this loop accept the connections of the specified server channel
+	 * and spread them over the specified loops.
+	 *
+	 * @param serverChannel
+	 *            a bound server channel
+	 * @param loops
+	 *            the loops serving the accepted connections
+	 */
+	public void listen(final ServerSocketChannel serverChannel,
+			ServerEventLoop[] loops) {
+		this.loops = loops.clone();
+		execute(new Runnable() {
+			public void run() {
+				try {
+					serverChannel.configureBlocking(false);
+					serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+				} catch (IOException ex) {
+					server.println("Error in listening for connections");
+					if (!server.silentMode) ex.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Runs the specified task on the loop thread.
+	 *
+	 * @param task
+	 *            the task to run
+	 */
+	public void execute(Runnable task) {
+		tasks.add(task);
+		if (Thread.currentThread() != thread)
+			selector.wakeup();
+	}
+
+	/**
+	 * Runs the specified task on the loop thread after the specified delay.
+	 *
+	 * @param millis
+	 *            the delay in milliseconds
+	 * @param task
+	 *            the task to run
+	 */
+	public void schedule(long millis, final Runnable task) {
+		final long deadline = System.currentTimeMillis() + millis;
+		execute(new Runnable() {
+			public void run() {
+				timers.add(new Timer(deadline, task));
+			}
+		});
+	}
+
+	/**
+	 * Checks whether the calling thread is the thread of this loop.
+	 *
+	 * @return true if called on the loop thread
+	 */
+	public boolean inLoop() {
+		return Thread.currentThread() == thread;
+	}
+
+	/**
+	 * Checks whether the calling thread is the thread of any loop, which must
+	 * never wait for another thread.
+	 *
+	 * @return true if called on a loop thread
+	 */
+	public static boolean inAnyLoop() {
+		return current.get() != null;
+	}
+
+	// implementation of method from the Runnable interface
+	public void run() {
+		current.set(this);
+		while (running) {
+			try {
+				long now = System.currentTimeMillis();
+				long timeout = nextSweep - now;
+				if (!timers.isEmpty())
+					timeout = Math.min(timeout, timers.peek().deadline - now);
+				if (!tasks.isEmpty())
+					selector.selectNow();
+				else
+					selector.select(Math.max(1, timeout));
+				Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+				while (it.hasNext()) {
+					SelectionKey key = it.next();
+					it.remove();
+					handle(key);
+				}
+				Runnable task;
+				while ((task = tasks.poll()) != null)
+					task.run();
+				now = System.currentTimeMillis();
+				while (!timers.isEmpty() && timers.peek().deadline <= now)
+					timers.poll().task.run();
+				if (now >= nextSweep) {
+					sweep(now);
+					nextSweep = now + SWEEP_INTERVAL;
+				}
+			} catch (Exception ex) {
+				// a failing connection must not stop the other connections
+				server.println("Error in the event loop: " + ex);
+				if (!server.silentMode) ex.printStackTrace();
+			}
+		}
+		for (SelectionKey key : selector.keys()) {
+			if (key.attachment() instanceof ChannelConnection)
+				((ChannelConnection) key.attachment()).close();
+			else
+				closeQuietly(key);
+		}
+		try {
+			selector.close();
+		} catch (IOException ex) {
+			if (!server.silentMode) ex.printStackTrace();
+		}
+	} // run
+
+	/**
+	 * Handles a key selected by the selector.
+	 *
+	 * @param key
+	 *            the selected key
+	 */
+	private void handle(SelectionKey key) {
+		if (!key.isValid())
+			return;
+		if (key.isAcceptable()) {
+			accept((ServerSocketChannel) key.channel());
+			return;
+		}
+		ChannelConnection connection = (ChannelConnection) key.attachment();
+		if (key.isReadable())
+			connection.read();
+		if (key.isValid() && key.isWritable())
+			connection.flush();
+	}
+
+	/**
+	 * Accepts the pending connections of the server channel and hands each to
+	 * the next loop.
+	 *
+	 * @param serverChannel
+	 *            the server channel
+	 */
+	private void accept(ServerSocketChannel serverChannel) {
+		SocketChannel channel;
+		try {
+			while ((channel = serverChannel.accept()) != null) {
+				ServerEventLoop loop = loops[nextLoop];
+				nextLoop = (nextLoop + 1) % loops.length;
+				loop.register(channel);
+			}
+		} catch (IOException ex) {
+			server.println("Error in accepting a connection");
+			if (!server.silentMode) ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Registers the specified channel with this loop and adds it to the server.
+	 *
+	 * @param channel
+	 *            a newly accepted channel
+	 */
+	private void register(final SocketChannel channel) {
+		execute(new Runnable() {
+			public void run() {
+				try {
+					channel.configureBlocking(false);
+					channel.socket().setTcpNoDelay(true);
+					SelectionKey key = channel.register(selector,
+							SelectionKey.OP_READ);
+					ChannelConnection connection = new ChannelConnection(
+							ServerEventLoop.this, server, channel, key);
+					key.attach(connection);
+					server.addConnection(connection);
+				} catch (IOException ex) {
+					server.println("Error in registering a connection");
+					if (!server.silentMode) ex.printStackTrace();
+					try {
+						channel.close();
+					} catch (IOException ex2) {
+						if (!server.silentMode) ex2.printStackTrace();
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Closes the connections that stopped in the middle of a frame.
+	 *
+	 * @param now
+	 *            the current time in milliseconds
+	 */
+	private void sweep(long now) {
+		for (SelectionKey key : selector.keys()) {
+			if (key.isValid() && key.attachment() instanceof ChannelConnection)
+				((ChannelConnection) key.attachment()).checkStalled(now);
+		}
+	}
+
+	private void closeQuietly(SelectionKey key) {
+		try {
+			key.channel().close();
+		} catch (IOException ex) {
+			if (!server.silentMode) ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * This inner class is used to model a task scheduled for a given time.
+	 */
+	private static class Timer implements Comparable<Timer> {
+		private final long deadline;
+		private final Runnable task;
+
+		public Timer(long deadline, Runnable task) {
+			this.deadline = deadline;
+			this.task = task;
+		}
+
+		public int compareTo(Timer other) {
+			return Long.compare(deadline, other.deadline);
+		}
+	} // Timer
+}
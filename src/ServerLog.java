@@ -0,0 +1,311 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class is used to model the log of a card game server. A thread that
+ * logs a message only claims a slot of a ring buffer with a compare-and-set
+ * and stores the message in it; it never waits for a lock, a disk or the GUI.
+ * If the buffer is full the message is dropped and counted. A background
+ * thread drains the buffer every DRAIN_INTERVAL into the rotating log files
+ * of the log directory, if any, the output stream, if any, and the listeners,
+ * e.g. the console of the server (see ServerConsole), each of which gets the
+ * messages of a drain in one call.
+ * <p>
+ * A log file is renamed when it exceeds MAX_FILE_SIZE bytes (server.log to
+ * server.log.1, server.log.1 to server.log.2 and so on), and the oldest of
+ * MAX_FILES files is deleted.
+ */
+public class ServerLog implements Runnable {
+	/**
+	 * The default number of messages the buffer holds.
+	 */
+	public static final int DEFAULT_CAPACITY = 8192;
+	/**
+	 * The time in milliseconds the drain thread waits when the buffer is
+	 * empty.
+	 */
+	public static final long DRAIN_INTERVAL = 10;
+	/**
+	 * The size in bytes above which a log file is rotated.
+	 */
+	public static final long MAX_FILE_SIZE = 10 * 1024 * 1024;
+	/**
+	 * The number of log files kept, including the current one.
+	 */
+	public static final int MAX_FILES = 5;
+	private static final String FILE_NAME = "server.log";
+
+	/**
+	 * This interface is used to receive the messages of the log, e.g. to show
+	 * them in a window.
+	 */
+	public interface Listener {
+		/**
+		 * Called by the drain thread with the messages logged since the last
+		 * call, oldest first.
+		 *
+		 * @param messages
+		 *            the messages, without time stamps
+		 */
+		public void logged(List<String> messages);
+	}
+
+	private final AtomicReferenceArray<String> slots;
+	private final long[] times; // published by the write of the slot
+	private final int mask;
+	private final AtomicLong tail = new AtomicLong(); // next slot to claim
+	private volatile long head = 0; // next slot to drain
+	private final LongAdder dropped = new LongAdder();
+	private long droppedReported = 0;
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+	private final SimpleDateFormat format = new SimpleDateFormat(
+			"yyyy-MM-dd HH:mm:ss.SSS ");
+	private final Date date = new Date();
+	private long stampTime = -1; // the time of stamp
+	private String stamp = null; // the formatted time of the last line
+	private volatile PrintStream out = null;
+	private File directory = null;
+	private Writer file = null;
+	private long fileSize = 0;
+	private Thread thread = null;
+
+	/**
+	 * Creates and returns an instance of the ServerLog class.
+	 *
+	 * @param capacity
+	 *            the number of messages the buffer holds, rounded up to a
+	 *            power of two
+	 */
+	public ServerLog(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		slots = new AtomicReferenceArray<String>(size);
+		times = new long[size];
+		mask = size - 1;
+	}
+
+	/**
+	 * Logs the specified message. Never blocks; the message is dropped if the
+	 * buffer is full.
+	 *
+	 * @param msg
+	 *            the message to be logged
+	 */
+	public void log(String msg) {
+		long t;
+		do {
+			t = tail.get();
+			if (t - head > mask) {
+				dropped.increment();
+				return;
+			}
+		} while (!tail.compareAndSet(t, t + 1));
+		int i = (int) (t & mask);
+		times[i] = System.currentTimeMillis();
+		slots.set(i, msg == null ? "null" : msg);
+	}
+
+	/**
+	 * Makes the log write rotating log files in the specified directory.
+	 *
+	 * @param directory
+	 *            the directory of the log files
+	 * @throws IOException
+	 *             if the directory cannot be created
+	 */
+	public synchronized void setDirectory(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Cannot create " + directory);
+		closeFile();
+		this.directory = directory;
+	}
+
+	/**
+	 * Makes the log write the messages with time stamps to the specified
+	 * stream, e.g. System.out for a server without a GUI.
+	 *
+	 * @param out
+	 *            the stream, or null for none
+	 */
+	public void setOutput(PrintStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Adds a listener of the messages logged from now on.
+	 *
+	 * @param listener
+	 *            the listener to be added
+	 */
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes the specified listener.
+	 *
+	 * @param listener
+	 *            the listener to be removed
+	 */
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Returns the number of messages dropped because the buffer was full.
+	 *
+	 * @return the number of dropped messages
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * Starts the drain thread, which also drains the buffer when the virtual
+	 * machine shuts down.
+	 */
+	public synchronized void start() {
+		if (thread != null)
+			return;
+		thread = new Thread(this, "server-log");
+		thread.setDaemon(true);
+		thread.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			public void run() {
+				drain();
+			}
+		}, "server-log-shutdown"));
+	}
+
+	// implementation of method from the Runnable interface
+	public void run() {
+		while (true) {
+			if (!drain())
+				LockSupport.parkNanos(DRAIN_INTERVAL * 1000000);
+		}
+	} // run
+
+	/**
+	 * Writes the messages in the buffer to the files, the stream and the
+	 * listeners.
+	 *
+	 * @return true if there were messages
+	 */
+	synchronized boolean drain() {
+		List<String> messages = new ArrayList<String>();
+		StringBuilder lines = new StringBuilder();
+		long h = head;
+		long t = tail.get();
+		while (h < t) {
+			int i = (int) (h & mask);
+			String msg = slots.get(i);
+			if (msg == null)
+				break; // claimed but not stored yet
+			lines.append(getStamp(times[i])).append(msg).append('\n');
+			messages.add(msg);
+			slots.set(i, null);
+			head = ++h;
+		}
+		long lost = dropped.sum();
+		if (lost != droppedReported) {
+			String msg = (lost - droppedReported)
+					+ " log messages dropped: the log is full";
+			droppedReported = lost;
+			lines.append(getStamp(System.currentTimeMillis())).append(msg)
+					.append('\n');
+			messages.add(msg);
+		}
+		if (messages.isEmpty())
+			return false;
+
+		write(lines);
+		PrintStream o = out;
+		if (o != null)
+			o.print(lines);
+		for (Listener listener : listeners) {
+			try {
+				listener.logged(messages);
+			} catch (RuntimeException ex) {
+				ex.printStackTrace();
+			}
+		}
+		return true;
+	} // drain
+
+	/**
+	 * Returns the time stamp of a line logged at the specified time, which is
+	 * formatted once for all the lines of the same millisecond.
+	 */
+	private String getStamp(long time) {
+		if (time != stampTime) {
+			date.setTime(time);
+			stamp = format.format(date);
+			stampTime = time;
+		}
+		return stamp;
+	}
+
+	/**
+	 * Writes the specified lines to the current log file, rotating the files
+	 * when it is full.
+	 */
+	private void write(CharSequence lines) {
+		if (directory == null)
+			return;
+		try {
+			if (file == null || fileSize > MAX_FILE_SIZE) {
+				if (file != null)
+					rotate();
+				File f = new File(directory, FILE_NAME);
+				fileSize = f.length();
+				file = new BufferedWriter(new OutputStreamWriter(
+						new FileOutputStream(f, true), StandardCharsets.UTF_8));
+			}
+			file.append(lines);
+			file.flush();
+			fileSize += lines.length();
+		} catch (IOException ex) {
+			System.err.println("Error in writing the log: " + ex.getMessage());
+			closeFile();
+		}
+	}
+
+	/**
+	 * Closes the current log file and shifts the names of the log files.
+	 */
+	private void rotate() {
+		closeFile();
+		new File(directory, FILE_NAME + "." + (MAX_FILES - 1)).delete();
+		for (int n = MAX_FILES - 2; n >= 0; n--) {
+			File from = new File(directory, n == 0 ? FILE_NAME : FILE_NAME
+					+ "." + n);
+			if (from.exists())
+				from.renameTo(new File(directory, FILE_NAME + "." + (n + 1)));
+		}
+	}
+
+	private void closeFile() {
+		if (file != null) {
+			try {
+				file.close();
+			} catch (IOException ex) {
+				// nothing more can be logged
+			}
+			file = null;
+		}
+	}
+}
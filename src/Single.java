@@ -15,6 +15,17 @@ public class Single extends Hand {
 		super(player, cards);
 	}
 
+	/**
+	 * a constructor for building a single with the specified player and set of
+	 * cards.
+	 * 
+	 * @param player player who played the hand
+	 * @param cards  cards the player played
+	 */
+	public Single(CardGamePlayer player, CardSet cards) {
+		super(player, cards);
+	}
+
 	/**
 	 * a method for checking if this is a valid single
 	 * 
@@ -39,4 +50,14 @@ public class Single extends Hand {
 	public String getType() {
 		return "Single";
 	}
+
+	/**
+	 * a method for returning the type of this hand i.e. single.
+	 * 
+	 * @return the type of this hand i.e. HandType.SINGLE
+	 */
+	@Override
+	public HandType getHandType() {
+		return HandType.SINGLE;
+	}
 }
@@ -15,6 +15,17 @@ public class Straight extends Hand {
 		super(player, cards);
 	}
 
+	/**
+	 * a constructor for building a straight with the specified player and set of
+	 * cards.
+	 * 
+	 * @param player player who played the hand
+	 * @param cards  cards the player played
+	 */
+	public Straight(CardGamePlayer player, CardSet cards) {
+		super(player, cards);
+	}
+
 	/**
 	 * a method for checking if this is a valid straight
 	 * 
@@ -46,4 +57,14 @@ public class Straight extends Hand {
 		return "Straight";
 	}
 
+	/**
+	 * a method for returning the type of this hand i.e. straight.
+	 * 
+	 * @return the type of this hand i.e. HandType.STRAIGHT
+	 */
+	@Override
+	public HandType getHandType() {
+		return HandType.STRAIGHT;
+	}
+
 }
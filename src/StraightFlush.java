@@ -15,6 +15,17 @@ public class StraightFlush extends Hand {
 		super(player, cards);
 	}
 
+	/**
+	 * a constructor for building a straight flush with the specified player and set of
+	 * cards.
+	 * 
+	 * @param player player who played the hand
+	 * @param cards  cards the player played
+	 */
+	public StraightFlush(CardGamePlayer player, CardSet cards) {
+		super(player, cards);
+	}
+
 	/**
 	 * a method for checking if this is a valid straight flush
 	 * 
@@ -48,4 +59,14 @@ public class StraightFlush extends Hand {
 	public String getType() {
 		return "StraightFlush";
 	}
+
+	/**
+	 * a method for returning the type of this hand i.e. straight flush.
+	 * 
+	 * @return the type of this hand i.e. HandType.STRAIGHT_FLUSH
+	 */
+	@Override
+	public HandType getHandType() {
+		return HandType.STRAIGHT_FLUSH;
+	}
 }
@@ -0,0 +1,391 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * This class is used to model the journal of a table of a card game server: an
+ * append-only file recording the players joining and leaving the table with
+ * their session tokens, the deal seed of each game and the moves accepted by the referee. After a crash
+ * the server replays the journal to rebuild the table (see recover()).
+ * <p>
+ * The file is written through a memory-mapped buffer, so appending a record is
+ * a memory copy that survives a crash of the server process as soon as it is
+ * done. The records reach the disk when the GameJournal forces the buffers of
+ * all dirty journals together (group commit).
+ * <p>
+ * A record is the length of its body, the CRC32 of its body and the body; the
+ * length is written last, so a record cut short by a crash reads as the end of
+ * the journal. The file is mapped CHUNK_SIZE bytes at a time; a length of -1
+ * skips to the next chunk. The journal is rewritten from scratch at the start
+ * of every game (see start()), so it only holds the current game.
+ * <p>
+ * A journal is used under the lock of its table.
+ */
+public class TableJournal {
+	/**
+	 * The number of bytes of the file mapped at a time.
+	 */
+	public static final int CHUNK_SIZE = 16 * 1024;
+	// the maximum number of bytes of a name or a session token in a record
+	private static final int MAX_NAME_SIZE = 1024;
+	private static final int RECORD_HEADER_SIZE = 8;
+	private static final int SKIP = -1;
+	private static final byte JOIN = 1;
+	private static final byte QUIT = 2;
+	private static final byte START = 3;
+	private static final byte MOVE = 4;
+	private final GameJournal journal;
+	private final File file;
+	private File mappedFile = null; // the file open in channel
+	private FileChannel channel = null;
+	private volatile MappedByteBuffer buffer = null;
+	private long chunkStart = 0; // position of the mapped chunk in the file
+	private int position = 0; // write position in the mapped chunk
+	private final AtomicBoolean dirty = new AtomicBoolean(false);
+	private final CRC32 crc = new CRC32();
+	private byte[] body = new byte[64];
+	private int bodySize = 0;
+
+	/**
+	 * Creates and returns an instance of the TableJournal class. The file is
+	 * not created before the first record is appended.
+	 *
+	 * @param journal
+	 *            the journal of the server
+	 * @param file
+	 *            the file of this journal
+	 */
+	public TableJournal(GameJournal journal, File file) {
+		this.journal = journal;
+		this.file = file;
+	}
+
+	/**
+	 * Records that a player joined or resumed the specified seat.
+	 *
+	 * @param seat
+	 *            the seat of the player
+	 * @param name
+	 *            the name of the player
+	 * @param session
+	 *            the session token of the player
+	 * @throws IOException
+	 *             if the record cannot be written
+	 */
+	public void join(int seat, String name, String session) throws IOException {
+		beginRecord(JOIN);
+		writeInt(seat);
+		writeString(name);
+		writeString(session);
+		append();
+	}
+
+	/**
+	 * Records that the player at the specified seat left.
+	 *
+	 * @param seat
+	 *            the seat of the player
+	 * @throws IOException
+	 *             if the record cannot be written
+	 */
+	public void quit(int seat) throws IOException {
+		beginRecord(QUIT);
+		writeInt(seat);
+		append();
+	}
+
+	/**
+	 * Starts the journal of a new game, replacing the journal of the previous
+	 * game with the seated players and the deal seed of the new game. The new
+	 * file is forced to the disk before it replaces the old one.
+	 *
+	 * @param names
+	 *            the names of the players by seat, null for an empty seat
+	 * @param sessions
+	 *            the session tokens of the players by seat
+	 * @param seed
+	 *            the seed the deck was shuffled with
+	 * @throws IOException
+	 *             if the journal cannot be written
+	 */
+	public void start(String[] names, String[] sessions, long seed)
+			throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		close();
+		tmp.delete();
+		map(tmp, 0);
+		for (int i = 0; i < names.length; i++) {
+			if (names[i] != null)
+				join(i, names[i], sessions[i]);
+		}
+		beginRecord(START);
+		writeLong(seed);
+		append();
+		buffer.force();
+		long endChunk = chunkStart;
+		int end = position;
+		close();
+		if (!tmp.renameTo(file))
+			throw new IOException("Cannot rename " + tmp + " to " + file);
+		map(file, endChunk);
+		position = end;
+	}
+
+	/**
+	 * Records a move accepted by the referee.
+	 *
+	 * @param seat
+	 *            the seat of the player who made the move
+	 * @param cardIdx
+	 *            the data of the MOVE message, or null for a pass
+	 * @throws IOException
+	 *             if the record cannot be written
+	 */
+	public void move(int seat, int[] cardIdx) throws IOException {
+		beginRecord(MOVE);
+		writeInt(seat);
+		if (cardIdx == null) {
+			writeInt(-1);
+		} else {
+			writeInt(cardIdx.length);
+			for (int idx : cardIdx)
+				writeInt(idx);
+		}
+		append();
+	}
+
+	/**
+	 * Deletes the journal, e.g. when its table is closed. A later record
+	 * starts a new file.
+	 */
+	public void delete() {
+		close();
+		file.delete();
+	}
+
+	/**
+	 * Replays the journal into the specified table, and makes the journal
+	 * append after the last complete record.
+	 *
+	 * @param table
+	 *            the table to be rebuilt
+	 * @throws IOException
+	 *             if the journal cannot be read
+	 */
+	public void recover(CardGameTable table) throws IOException {
+		close();
+		long length = file.length();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			MappedByteBuffer in = raf.getChannel().map(
+					FileChannel.MapMode.READ_ONLY, 0, length);
+			long start = 0;
+			int pos = 0;
+			while (start + pos + RECORD_HEADER_SIZE <= length) {
+				// append() moves to the next chunk whenever a record header
+				// does not fit, and only marks it with SKIP if 4 bytes are left
+				if (pos + RECORD_HEADER_SIZE > CHUNK_SIZE) {
+					start += CHUNK_SIZE;
+					pos = 0;
+					continue;
+				}
+				int size = in.getInt((int) (start + pos));
+				if (size == SKIP) {
+					start += CHUNK_SIZE;
+					pos = 0;
+					continue;
+				}
+				if (size <= 0 || pos + RECORD_HEADER_SIZE + size > CHUNK_SIZE
+						|| start + pos + RECORD_HEADER_SIZE + size > length)
+					break;
+				byte[] record = new byte[size];
+				in.position((int) (start + pos + RECORD_HEADER_SIZE));
+				in.get(record);
+				crc.reset();
+				crc.update(record, 0, size);
+				if ((int) crc.getValue() != in.getInt((int) (start + pos + 4)))
+					break;
+				replay(record, table);
+				pos += RECORD_HEADER_SIZE + size;
+			}
+			map(file, start);
+			position = pos;
+		}
+	}
+
+	/**
+	 * Forces the records appended so far to the disk. Called by the
+	 * GameJournal.
+	 */
+	void force() {
+		dirty.set(false);
+		MappedByteBuffer b = buffer;
+		if (b != null)
+			b.force();
+	}
+
+	private void replay(byte[] record, CardGameTable table) throws IOException {
+		Reader in = new Reader(record);
+		switch (in.readByte()) {
+		case JOIN:
+			table.recoverJoin(in.readSeat(), in.readString(), in.readString());
+			break;
+		case QUIT:
+			table.recoverQuit(in.readSeat());
+			break;
+		case START:
+			table.recoverStart(in.readLong());
+			break;
+		case MOVE:
+			int seat = in.readSeat();
+			int count = in.readInt();
+			int[] cardIdx = null;
+			if (count >= 0) {
+				if (count > record.length / 4)
+					throw new IOException("Invalid move in " + file);
+				cardIdx = new int[count];
+				for (int i = 0; i < count; i++)
+					cardIdx[i] = in.readInt();
+			}
+			table.recoverMove(seat, cardIdx);
+			break;
+		default:
+			throw new IOException("Unknown record in " + file);
+		}
+	}
+
+	private void beginRecord(byte type) {
+		bodySize = 0;
+		ensure(1);
+		body[bodySize++] = type;
+	}
+
+	private void writeInt(int v) {
+		ensure(4);
+		body[bodySize++] = (byte) (v >>> 24);
+		body[bodySize++] = (byte) (v >>> 16);
+		body[bodySize++] = (byte) (v >>> 8);
+		body[bodySize++] = (byte) v;
+	}
+
+	private void writeLong(long v) {
+		writeInt((int) (v >>> 32));
+		writeInt((int) v);
+	}
+
+	private void writeString(String s) {
+		byte[] bytes = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+		int length = Math.min(bytes.length, MAX_NAME_SIZE);
+		writeInt(length);
+		ensure(length);
+		System.arraycopy(bytes, 0, body, bodySize, length);
+		bodySize += length;
+	}
+
+	private void ensure(int extra) {
+		if (bodySize + extra > body.length) {
+			byte[] bigger = new byte[Math.max(body.length * 2, bodySize + extra)];
+			System.arraycopy(body, 0, bigger, 0, bodySize);
+			body = bigger;
+		}
+	}
+
+	/**
+	 * Appends the record in body to the mapped file, moving to the next chunk
+	 * if it does not fit the current one.
+	 */
+	private void append() throws IOException {
+		if (buffer == null)
+			map(file, 0);
+		if (position + RECORD_HEADER_SIZE + bodySize > CHUNK_SIZE) {
+			if (position + 4 <= CHUNK_SIZE)
+				buffer.putInt(position, SKIP);
+			buffer.force();
+			map(file, chunkStart + CHUNK_SIZE);
+		}
+		crc.reset();
+		crc.update(body, 0, bodySize);
+		for (int i = 0; i < bodySize; i++)
+			buffer.put(position + RECORD_HEADER_SIZE + i, body[i]);
+		buffer.putInt(position + 4, (int) crc.getValue());
+		// the length makes the record visible, so it goes last
+		buffer.putInt(position, bodySize);
+		position += RECORD_HEADER_SIZE + bodySize;
+		if (dirty.compareAndSet(false, true))
+			journal.commitLater(this);
+	}
+
+	/**
+	 * Maps the chunk of the specified file at the specified position.
+	 */
+	private void map(File f, long start) throws IOException {
+		if (channel == null || !f.equals(mappedFile)) {
+			close();
+			channel = new RandomAccessFile(f, "rw").getChannel();
+			mappedFile = f;
+		}
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, start, CHUNK_SIZE);
+		chunkStart = start;
+		position = 0;
+	}
+
+	private void close() {
+		buffer = null;
+		mappedFile = null;
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException ex) {
+				// the mapping stays valid; nothing else to release
+			}
+			channel = null;
+		}
+	}
+
+	/**
+	 * This inner class is used to read the body of a record.
+	 */
+	private class Reader {
+		private final byte[] record;
+		private int pos = 0;
+
+		public Reader(byte[] record) {
+			this.record = record;
+		}
+
+		public int readByte() throws IOException {
+			if (pos >= record.length)
+				throw new IOException("Truncated record in " + file);
+			return record[pos++] & 0xFF;
+		}
+
+		public int readInt() throws IOException {
+			return (readByte() << 24) | (readByte() << 16) | (readByte() << 8)
+					| readByte();
+		}
+
+		public long readLong() throws IOException {
+			return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+		}
+
+		public int readSeat() throws IOException {
+			int seat = readInt();
+			if (seat < 0 || seat >= 64)
+				throw new IOException("Invalid seat in " + file);
+			return seat;
+		}
+
+		public String readString() throws IOException {
+			int length = readInt();
+			if (length < 0 || length > record.length - pos)
+				throw new IOException("Invalid string in " + file);
+			String s = new String(record, pos, length, StandardCharsets.UTF_8);
+			pos += length;
+			return s;
+		}
+	} // Reader
+}
@@ -0,0 +1,160 @@
+import java.util.ArrayList;
+
+/**
+ * The TableView class is used to hold what the table of a Big Two game shows
+ * at one moment: the names and the cards of the players, the last hand played,
+ * the local player and the active player. A TableView never changes once it
+ * is taken, so the thread applying the messages from the server can hand it to
+ * the event dispatch thread, which draws it (see BigTwoGUI.TablePainter)
+ * without reading the game while the game is being changed.
+ */
+public final class TableView {
+	private final int numOfPlayers;
+	private final String[] names = new String[BigTwo.MAX_PLAYER_NUM];
+	private final Card[][] cards = new Card[BigTwo.MAX_PLAYER_NUM][];
+	private final long[] cardMasks = new long[BigTwo.MAX_PLAYER_NUM];
+	private final String lastHandPlayer;
+	private final Card[] lastHand;
+	private final long lastHandMask;
+	private final int playerID;
+	private final int activePlayer;
+
+	/**
+	 * a constructor for taking a view of the specified game. It must be called by
+	 * the thread that changes the game.
+	 *
+	 * @param game         game to take a view of
+	 * @param playerID     index of the local player, or -1 if there is none
+	 * @param activePlayer index of the active player, or -1 if there is none
+	 */
+	public TableView(CardGame game, int playerID, int activePlayer) {
+		ArrayList<CardGamePlayer> playerList = game.getPlayerList();
+		for (int i = 0; i < BigTwo.MAX_PLAYER_NUM; i++) {
+			CardGamePlayer player = playerList.get(i);
+			names[i] = player.getName();
+			cards[i] = toArray(player.getCardsInHand());
+			cardMasks[i] = player.getCardMask();
+		}
+		numOfPlayers = game.getNumOfPlayers();
+		ArrayList<Hand> handsOnTable = game.getHandsOnTable();
+		Hand hand = handsOnTable.isEmpty() ? null : handsOnTable.get(handsOnTable.size() - 1);
+		lastHandPlayer = hand == null ? null : hand.getPlayer().getName();
+		lastHand = hand == null ? new Card[0] : toArray(hand);
+		lastHandMask = hand == null ? 0 : hand.getMask();
+		this.playerID = playerID;
+		this.activePlayer = activePlayer;
+	}
+
+	/**
+	 * a method for getting the number of players who have joined.
+	 *
+	 * @return number of players
+	 */
+	public int getNumOfPlayers() {
+		return numOfPlayers;
+	}
+
+	/**
+	 * a method for getting the name of a player.
+	 *
+	 * @param playerIdx index of the player
+	 * @return name of the player, or null if the seat is empty
+	 */
+	public String getName(int playerIdx) {
+		return names[playerIdx];
+	}
+
+	/**
+	 * a method for getting the number of cards held by a player.
+	 *
+	 * @param playerIdx index of the player
+	 * @return number of cards
+	 */
+	public int getNumOfCards(int playerIdx) {
+		return cards[playerIdx].length;
+	}
+
+	/**
+	 * a method for getting a card held by a player, in the order of the hand.
+	 *
+	 * @param playerIdx index of the player
+	 * @param i         index of the card
+	 * @return the card
+	 */
+	public Card getCard(int playerIdx, int i) {
+		return cards[playerIdx][i];
+	}
+
+	/**
+	 * a method for getting the cards held by a player as a CardSet mask.
+	 *
+	 * @param playerIdx index of the player
+	 * @return mask of the cards
+	 */
+	public long getCardMask(int playerIdx) {
+		return cardMasks[playerIdx];
+	}
+
+	/**
+	 * a method for getting the name of the player of the last hand on the table.
+	 *
+	 * @return name of the player, or null if the table is empty
+	 */
+	public String getLastHandPlayer() {
+		return lastHandPlayer;
+	}
+
+	/**
+	 * a method for getting the number of cards of the last hand on the table.
+	 *
+	 * @return number of cards, 0 if the table is empty
+	 */
+	public int getLastHandSize() {
+		return lastHand.length;
+	}
+
+	/**
+	 * a method for getting a card of the last hand on the table.
+	 *
+	 * @param i index of the card
+	 * @return the card
+	 */
+	public Card getLastHandCard(int i) {
+		return lastHand[i];
+	}
+
+	/**
+	 * a method for getting the cards of the last hand on the table as a CardSet
+	 * mask.
+	 *
+	 * @return mask of the cards, 0 if the table is empty
+	 */
+	public long getLastHandMask() {
+		return lastHandMask;
+	}
+
+	/**
+	 * a method for getting the index of the local player, whose cards are face up.
+	 *
+	 * @return index of the local player, or -1 if there is none
+	 */
+	public int getPlayerID() {
+		return playerID;
+	}
+
+	/**
+	 * a method for getting the index of the active player.
+	 *
+	 * @return index of the active player, or -1 if there is none
+	 */
+	public int getActivePlayer() {
+		return activePlayer;
+	}
+
+	private static Card[] toArray(CardList list) {
+		Card[] array = new Card[list.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = list.getCard(i);
+		return array;
+	}
+}
@@ -15,6 +15,17 @@ public class Triple extends Hand {
 		super(player, cards);
 	}
 
+	/**
+	 * a constructor for building a triple with the specified player and set of
+	 * cards.
+	 * 
+	 * @param player player who played the hand
+	 * @param cards  cards the player played
+	 */
+	public Triple(CardGamePlayer player, CardSet cards) {
+		super(player, cards);
+	}
+
 	/**
 	 * a method for checking if this is a valid triple
 	 * 
@@ -41,4 +52,14 @@ public class Triple extends Hand {
 	public String getType() {
 		return "Triple";
 	}
+
+	/**
+	 * a method for returning the type of this hand i.e. triple.
+	 * 
+	 * @return the type of this hand i.e. HandType.TRIPLE
+	 */
+	@Override
+	public HandType getHandType() {
+		return HandType.TRIPLE;
+	}
 }